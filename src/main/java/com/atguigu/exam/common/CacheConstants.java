@@ -35,16 +35,66 @@ public class CacheConstants {
      * 试卷详情缓存key前缀
      */
     public static final String PAPER_DETAIL_KEY = "paper:detail:";
+
+    /**
+     * 试卷详情本地缓存失效广播频道（消息为试卷id）
+     */
+    public static final String PAPER_DETAIL_EVICT_CHANNEL = "paper:detail:evict";
+
+    /**
+     * 已编译的试卷答案本地缓存失效广播频道（消息为试卷id）
+     */
+    public static final String ANSWER_KEY_EVICT_CHANNEL = "paper:answer_key:evict";
+
+    /**
+     * 题目详情缓存失效通知频道（消息内容为题目id）
+     */
+    public static final String QUESTION_DETAIL_EVICT_CHANNEL = "question:detail:evict";
+
+    /**
+     * 空值缓存标记（查询结果不存在时缓存该值，防止缓存穿透）
+     */
+    public static final String NULL_VALUE = "__NULL__";
+
+    /**
+     * 学生版试卷预压缩JSON缓存key前缀
+     */
+    public static final String PAPER_PAYLOAD_KEY = "paper:payload:";
     
     /**
      * 考试记录详情缓存key前缀
      */
     public static final String EXAM_RECORD_DETAIL_KEY = "exam_record:detail:";
+
+    /**
+     * 进行中考试的截止时间索引key（zset，value为考试记录id，score为截止时间戳）
+     */
+    public static final String EXAM_RECORD_DEADLINE_KEY = "exam_record:deadline";
+
+    /**
+     * AI批阅结果缓存key前缀
+     */
+    public static final String GRADING_RESULT_KEY = "grading:result:";
+
+    /**
+     * 题目评分标准版本key（hash，field为题目id）
+     */
+    public static final String GRADING_VERSION_KEY = "grading:version";
     
     /**
-     * 热门题目缓存key
+     * 热门排行key前缀（小时计数桶 trending:{type}:h:{小时}，合并后的排行 trending:{type}:window）
+     */
+    public static final String TRENDING_KEY_PREFIX = "trending:";
+
+    /**
+     * 热门排行类型：题目
+     */
+    public static final String TRENDING_QUESTION = "question";
+
+    /**
+     * 热门排行类型：视频
      */
-    public static final String POPULAR_QUESTIONS_KEY = "question:popular";
+    public static final String TRENDING_VIDEO = "video";
     
     /**
      * 题目访问计数key
@@ -60,6 +110,11 @@ public class CacheConstants {
      * 缓存过期时间（秒）
      */
     public static final long DEFAULT_EXPIRE_SECONDS = 1800; // 30分钟
+
+    /**
+     * 游标分页列表总数的本地缓存时间（秒），总数是近似值
+     */
+    public static final long LIST_COUNT_CACHE_SECONDS = 60;
     
     /**
      * 热点数据缓存过期时间（秒）
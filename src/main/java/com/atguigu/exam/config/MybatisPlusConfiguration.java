@@ -1,6 +1,7 @@
 package com.atguigu.exam.config;
 
 import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.annotation.FieldFill;
 import com.baomidou.mybatisplus.core.injector.AbstractMethod;
 import com.baomidou.mybatisplus.core.injector.DefaultSqlInjector;
 import com.baomidou.mybatisplus.core.metadata.TableInfo;
@@ -31,7 +32,8 @@ public class MybatisPlusConfiguration {
             public List<AbstractMethod> getMethodList(Class<?> mapperClass, TableInfo tableInfo) {
                 List<AbstractMethod> methods = super.getMethodList(mapperClass, tableInfo);
                 // 注册批量插入方法（默认方法名为insertBatchSomeColumn）
-                methods.add(new InsertBatchSomeColumn());
+                // 排除逻辑删除字段和更新填充字段，让is_deleted走数据库默认值0，否则批量插入的数据会被逻辑删除条件过滤掉
+                methods.add(new InsertBatchSomeColumn(field -> !field.isLogicDelete() && field.getFieldFill() != FieldFill.UPDATE));
                 return methods;
             }
         };
@@ -0,0 +1,54 @@
+package com.atguigu.exam.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 考试流程相关配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "exam")
+public class ExamProperties {
+
+    /**
+     * 试卷未设置时长时使用的默认考试时长（分钟）
+     */
+    private Integer defaultDurationMinutes = 120;
+
+    /**
+     * 截止时间之后仍允许交卷的宽限时间（秒），用于抵消网络延迟
+     */
+    private Integer submitGraceSeconds = 30;
+
+    /**
+     * 考试会话在redis中的额外保留时间（分钟），超过截止时间+该值后自动过期
+     */
+    private Integer sessionExtraTtlMinutes = 60;
+
+    /**
+     * 超时未交卷扫描间隔（毫秒）
+     */
+    private Long timeoutScanIntervalMs = 5000L;
+
+    /**
+     * 答题记录批量插入时每条insert语句的最大行数
+     */
+    private Integer answerBatchSize = 500;
+
+    /**
+     * 答题记录写入队列的最长等待时间（毫秒），用于把多场交卷合并成一个批次
+     */
+    private Long answerBatchLingerMs = 50L;
+
+    /**
+     * 答题记录写入队列容量（按交卷次数计），队列满时由交卷线程直接同步写入
+     */
+    private Integer answerQueueCapacity = 10000;
+
+    /**
+     * 考试记录导出时每次查询的记录数（按id游标分页）
+     */
+    private Integer exportPageSize = 2000;
+}
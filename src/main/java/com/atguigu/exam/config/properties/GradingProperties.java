@@ -0,0 +1,94 @@
+package com.atguigu.exam.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * AI判卷相关配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "grading")
+public class GradingProperties {
+
+    /**
+     * 同时在途的kimi批阅请求数上限
+     */
+    private Integer concurrency = 8;
+
+    /**
+     * 同时处理的考试记录数，多场考试同一道题的答案才能合并到一个批次
+     */
+    private Integer jobConcurrency = 64;
+
+    /**
+     * 等待AI批阅的考试记录队列容量
+     */
+    private Integer queueCapacity = 10000;
+
+    /**
+     * 一次请求最多批阅的同一道题的答案数，实际大小还受kimi.api.max-tokens限制，1表示关闭批量
+     */
+    private Integer batchSize = 10;
+
+    /**
+     * 批次攒够batchSize之前的最长等待时间（毫秒）
+     */
+    private Long batchLingerMs = 500L;
+
+    /**
+     * 预估每份答案的批阅结果占用的输出token数，用于按max-tokens计算批次大小
+     */
+    private Integer tokensPerAnswer = 150;
+
+    /**
+     * 是否开启简答题关键词预评分
+     */
+    private Boolean preScoreEnabled = true;
+
+    /**
+     * 关键词覆盖率不高于该值时直接按覆盖率给分（基本没答到点）
+     */
+    private Double preScoreLow = 0.2;
+
+    /**
+     * 关键词覆盖率不低于该值时直接按覆盖率给分（基本答全），两者之间交给AI批阅
+     */
+    private Double preScoreHigh = 0.9;
+
+    /**
+     * 已编译的关键词本地缓存最大题目数
+     */
+    private Integer keywordCacheSize = 10000;
+
+    /**
+     * 已编译的关键词本地缓存过期时间（分钟），删除的题目过期后释放
+     */
+    private Integer keywordCacheMinutes = 60;
+
+    /**
+     * 是否开启AI批阅结果缓存
+     */
+    private Boolean resultCacheEnabled = true;
+
+    /**
+     * 批阅结果本地缓存（L1）最大条数
+     */
+    private Integer resultCacheL1Size = 10000;
+
+    /**
+     * 批阅结果本地缓存（L1）过期时间（分钟）
+     */
+    private Integer resultCacheL1Minutes = 10;
+
+    /**
+     * 批阅结果redis缓存（L2）过期时间（小时）
+     */
+    private Integer resultCacheTtlHours = 168;
+
+    /**
+     * 评分标准版本号的本地缓存时间（秒），其他实例升级版本后最多延迟这么久生效
+     */
+    private Integer versionCacheSeconds = 30;
+}
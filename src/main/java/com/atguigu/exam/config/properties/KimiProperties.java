@@ -12,4 +12,33 @@ public class KimiProperties {
     private String apiKey;
     private Integer maxTokens;
     private Double temperature;
+
+    /**
+     * 每秒允许发起的请求数（令牌桶填充速率）
+     */
+    private Double ratePerSecond = 3.0;
+    /**
+     * 令牌桶容量，允许的瞬时突发请求数
+     */
+    private Integer burst = 5;
+    /**
+     * 失败重试次数
+     */
+    private Integer maxRetries = 3;
+    /**
+     * 第一次重试前的等待时间（毫秒），之后指数退避
+     */
+    private Long retryBackoffMs = 1000L;
+    /**
+     * 单次请求超时时间（秒）
+     */
+    private Long timeoutSeconds = 100L;
+    /**
+     * AI生成题目时单个请求最多生成的题目数，超过后拆分成多个子请求
+     */
+    private Integer generateChunkSize = 10;
+    /**
+     * AI生成题目时同时执行的子请求数
+     */
+    private Integer generateConcurrency = 4;
 }
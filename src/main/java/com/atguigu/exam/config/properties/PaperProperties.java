@@ -0,0 +1,75 @@
+package com.atguigu.exam.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 试卷模块相关配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "paper")
+public class PaperProperties {
+
+    /**
+     * 试卷详情本地缓存的最大试卷数
+     */
+    private Integer detailCacheL1Size = 500;
+
+    /**
+     * 试卷详情本地缓存过期时间（分钟）
+     */
+    private Integer detailCacheL1Minutes = 10;
+
+    /**
+     * 试卷详情redis缓存过期时间（秒）
+     */
+    private Long detailCacheTtlSeconds = 1800L;
+
+    /**
+     * 已编译的试卷答案本地缓存的最大试卷数
+     */
+    private Integer answerKeyCacheSize = 1000;
+
+    /**
+     * 已编译的试卷答案本地缓存过期时间（分钟），兜底其他实例漏收失效通知的情况
+     */
+    private Integer answerKeyCacheMinutes = 30;
+
+    /**
+     * 是否按考试记录打乱题目和选项顺序（前端需要按开始考试返回的打乱索引展示试卷）
+     * 开关只影响之后开始的考试，每场考试是否打乱记录在考试记录中，判卷时按考试记录映射选项字母
+     */
+    private Boolean shuffleEnabled = false;
+
+    /**
+     * 约束组卷的并行求解线程数，0表示CPU核数
+     */
+    private Integer assembleThreads = 0;
+
+    /**
+     * 单个约束组卷请求最多使用的求解线程数，0表示全部线程
+     */
+    private Integer assembleThreadsPerRequest = 2;
+
+    /**
+     * 约束组卷线程池排队的求解任务数上限，队列满时拒绝请求
+     */
+    private Integer assembleQueueCapacity = 64;
+
+    /**
+     * 约束组卷请求在求解时间之外最多等待排队的时间（毫秒），超过后取消还没开始的求解任务
+     */
+    private Integer assembleQueueWaitMs = 1000;
+
+    /**
+     * 约束组卷默认的求解时间上限（毫秒），到时返回找到的最优试卷
+     */
+    private Integer assembleTimeBudgetMs = 500;
+
+    /**
+     * 约束组卷请求允许指定的最大求解时间（毫秒）
+     */
+    private Integer assembleMaxTimeBudgetMs = 5000;
+}
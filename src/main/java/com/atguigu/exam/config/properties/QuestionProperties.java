@@ -0,0 +1,129 @@
+package com.atguigu.exam.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 题目模块相关配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "question")
+public class QuestionProperties {
+
+    /**
+     * 批量导入时每个批次的题目数（一次查重查询 + 一个事务）
+     */
+    private Integer importChunkSize = 1000;
+
+    /**
+     * Excel预览默认返回的题目数（其余行只计数不返回）
+     */
+    private Integer previewRows = 100;
+
+    /**
+     * Excel预览单次请求允许的最大题目数
+     */
+    private Integer previewMaxRows = 1000;
+
+    /**
+     * 同时执行的Excel导入任务数，超过的任务排队
+     */
+    private Integer importJobConcurrency = 2;
+
+    /**
+     * 导入任务阶段之间队列的容量（解析 -> 校验 -> 写入）
+     */
+    private Integer importQueueCapacity = 2000;
+
+    /**
+     * 导入任务结束后保留进度和错误报告的时间
+     */
+    private Integer importJobRetentionMinutes = 60;
+
+    /**
+     * 题目导出时每次查询的题目数（按id游标分页）
+     */
+    private Integer exportPageSize = 1000;
+
+    /**
+     * 题目详情本地缓存的最大题目数
+     */
+    private Integer detailCacheL1Size = 5000;
+
+    /**
+     * 题目详情本地缓存过期时间（分钟）
+     */
+    private Integer detailCacheL1Minutes = 5;
+
+    /**
+     * 题目详情redis缓存过期时间（秒），实际过期时间再加上随机抖动
+     */
+    private Long detailCacheTtlSeconds = 1800L;
+
+    /**
+     * 题目详情redis缓存过期时间的随机抖动上限（秒），避免同一批缓存同时过期
+     */
+    private Long detailCacheTtlJitterSeconds = 300L;
+
+    /**
+     * 不存在的题目id空值缓存时间（秒）
+     */
+    private Long detailNullTtlSeconds = 60L;
+
+    /**
+     * 题目、视频浏览次数写入redis的间隔（毫秒）
+     */
+    private Long viewFlushIntervalMs = 1000L;
+
+    /**
+     * 本地缓冲的最大题目（视频）数，超过后立即写入redis
+     */
+    private Integer viewBufferMaxSize = 10000;
+
+    /**
+     * 组装好的热门题目缓存时间（秒）
+     */
+    private Long popularCacheSeconds = 5L;
+
+    /**
+     * 热门题目单次最多返回的题目数
+     */
+    private Integer popularMaxSize = 100;
+
+    /**
+     * 是否启用题目全文索引（关闭时关键字检索使用 like 查询）
+     */
+    private Boolean searchIndexEnabled = true;
+
+    /**
+     * 重建题目内存索引（全文检索、相似题目、随机抽样）时每次查询的题目数（按id游标分页）
+     */
+    private Integer searchRebuildPageSize = 5000;
+
+    /**
+     * 全文索引中标记删除的文档（修改和删除的题目）占比超过该值时压缩索引
+     */
+    private Double searchCompactDeletedRatio = 0.2;
+
+    /**
+     * 检查全文索引是否需要压缩的间隔（毫秒）
+     */
+    private Long searchCompactIntervalMs = 60000L;
+
+    /**
+     * 是否启用相似题目检测（导入和AI生成时拒绝和题库中相似的题目）
+     */
+    private Boolean duplicateCheckEnabled = true;
+
+    /**
+     * 相似题目的指纹最大海明距离（0表示只检测归一化后完全相同的题目，最大3）
+     */
+    private Integer duplicateMaxDistance = 3;
+
+    /**
+     * 随机抽题单次最多返回的题目数
+     */
+    private Integer randomMaxSize = 100;
+}
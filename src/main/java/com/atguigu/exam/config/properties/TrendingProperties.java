@@ -0,0 +1,39 @@
+package com.atguigu.exam.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 热门排行（题目、视频）相关配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "trending")
+public class TrendingProperties {
+
+    /**
+     * 排行统计的时间窗口（小时），每小时一个计数桶，超出窗口的桶自动过期
+     */
+    private Integer windowHours = 24;
+
+    /**
+     * 每早一小时的计数桶的权重衰减系数（当前小时权重为1，前一小时为decay，再前一小时为decay^2...）
+     */
+    private Double decay = 0.9;
+
+    /**
+     * 合并窗口内计数桶生成排行的间隔（毫秒）
+     */
+    private Long rebuildIntervalMs = 60000L;
+
+    /**
+     * 合并后的排行最多保留的元素数
+     */
+    private Integer maxSize = 1000;
+
+    /**
+     * 排行不足时用于补充的总观看次数排行的本地缓存时间（秒），避免每次请求都全表排序
+     */
+    private Long fallbackCacheSeconds = 300L;
+}
@@ -3,25 +3,53 @@ package com.atguigu.exam.controller;
 
 import com.atguigu.exam.common.Result;
 import com.atguigu.exam.entity.ExamRecord;
+import com.atguigu.exam.entity.Paper;
+import com.atguigu.exam.service.ExamGradingService;
+import com.atguigu.exam.service.ExamService;
+import com.atguigu.exam.service.GradingCacheService;
+import com.atguigu.exam.service.PaperService;
+import com.atguigu.exam.utils.PrecompressedJson;
+import com.atguigu.exam.vo.PaperShuffleVo;
 import com.atguigu.exam.vo.StartExamVo;
 import com.atguigu.exam.vo.SubmitAnswerVo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
  * 考试控制器 - 处理考试流程相关的HTTP请求
  * 包括开始考试、提交答案、AI批阅、成绩查询等功能
  */
+@Slf4j
+@RequiredArgsConstructor
 @RestController  // REST控制器，返回JSON数据
 @RequestMapping("/api/exams")  // 考试API路径前缀
 @CrossOrigin(origins = "*")  // 允许跨域访问
 @Tag(name = "考试管理", description = "考试流程相关操作，包括开始考试、答题提交、AI批阅、成绩查询等功能")  // Swagger API分组
 public class ExamController {
 
+    private final ExamService examService;
+    private final ExamGradingService examGradingService;
+    private final GradingCacheService gradingCacheService;
+    private final PaperService paperService;
+    private final ObjectMapper objectMapper;
 
     /**
      * 开始考试 - 创建新的考试记录
@@ -29,10 +57,88 @@ public class ExamController {
      * @return 考试记录
      */
     @PostMapping("/start")  // 处理POST请求
-    @Operation(summary = "开始考试", description = "学生开始考试，创建考试记录并返回试卷内容")  // API描述
-    public Result<ExamRecord> startExam(@RequestBody StartExamVo startExamVo) {
+    @Operation(summary = "开始考试", description = "学生开始考试，创建考试记录并返回试卷内容（试卷为发布时预先生成的压缩JSON）")  // API描述
+    @ApiResponse(responseCode = "200", description = "考试记录，paper字段为学生版试卷",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ExamRecordResult.class)))
+    public void startExam(@RequestBody @Validated StartExamVo startExamVo,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
         // TODO: 从SecurityContext获取当前登录用户ID  // 暂时使用固定用户ID
-        return Result.success(null, "考试开始成功");
+        ExamRecord examRecord = examService.customStartExam(startExamVo);
+        PrecompressedJson paperJson = paperService.customStudentPaperPayload(Long.valueOf(startExamVo.getPaperId()));
+        log.info("开始考试接口调用成功！考试记录id：{}",examRecord.getId());
+        //只序列化外层Result和考试记录，试卷位置直接写入预先压缩好的字节
+        examRecord.setPaper(null);
+        ObjectNode root = objectMapper.valueToTree(Result.success(examRecord, "考试开始成功"));
+        ObjectNode data = (ObjectNode) root.remove("data");
+        data.remove("paper");
+        String prefix = openField(root, "data") + openField(data, "paper");
+        writePrecompressed(request, response, paperJson, prefix, "}}");
+    }
+
+    /**
+     * 获取学生版试卷 - 不含答案，支持ETag协商缓存
+     * @param paperId 试卷ID
+     */
+    @GetMapping("/papers/{paperId}")  // 处理GET请求
+    @Operation(summary = "获取考试试卷", description = "获取学生版试卷内容（不含答案），试卷未变化时返回304")  // API描述
+    @ApiResponse(responseCode = "200", description = "学生版试卷",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = StudentPaperResult.class)))
+    @ApiResponse(responseCode = "304", description = "试卷未变化")
+    public void getStudentPaper(
+            @Parameter(description = "试卷ID") @PathVariable Integer paperId,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        PrecompressedJson paperJson = paperService.customStudentPaperPayload(Long.valueOf(paperId));
+        //gzip和原始数据使用不同的ETag，协商缓存只和本次响应的编码比较
+        String etag = paperJson.etag(acceptsGzip(request));
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        ObjectNode root = objectMapper.valueToTree(Result.success("操作成功"));
+        root.remove("data");
+        writePrecompressed(request, response, paperJson, openField(root, "data"), "}");
+    }
+
+    /**
+     * 保存单题答案 - 考试过程中的自动保存，只写入考试会话，交卷时统一落库
+     * @param examRecordId 考试记录ID
+     * @param answer 单题答案
+     */
+    @PutMapping("/{examRecordId}/answers")  // 处理PUT请求
+    @Operation(summary = "保存单题答案", description = "考试过程中增量保存单题答案，交卷或超时后统一写入数据库")  // API描述
+    public Result<Void> saveAnswer(
+            @Parameter(description = "考试记录ID") @PathVariable Integer examRecordId,
+            @RequestBody @Validated SubmitAnswerVo answer) {
+        examService.customSaveAnswer(Long.valueOf(examRecordId), answer);
+        return Result.success("答案保存成功");
+    }
+
+    /**
+     * 记录切屏 - 考试过程中学生离开考试窗口时调用
+     * @param examRecordId 考试记录ID
+     * @return 当前累计切屏次数
+     */
+    @PostMapping("/{examRecordId}/window-switch")  // 处理POST请求
+    @Operation(summary = "记录切屏", description = "记录考试过程中的窗口切换次数，返回累计次数")  // API描述
+    public Result<Long> recordWindowSwitch(
+            @Parameter(description = "考试记录ID") @PathVariable Integer examRecordId) {
+        Long windowSwitches = examService.customRecordWindowSwitch(Long.valueOf(examRecordId));
+        return Result.success(windowSwitches);
+    }
+
+    /**
+     * 获取试卷打乱索引 - 考试过程中刷新页面后按开始考试时的顺序展示题目和选项
+     * @param examRecordId 考试记录ID
+     * @return 打乱索引，没有打乱时为空
+     */
+    @GetMapping("/{examRecordId}/shuffle")  // 处理GET请求
+    @Operation(summary = "获取试卷打乱索引", description = "获取进行中考试的题目和选项展示顺序，和开始考试时返回的相同，没有打乱时返回空")  // API描述
+    public Result<PaperShuffleVo> getShuffle(
+            @Parameter(description = "考试记录ID") @PathVariable Integer examRecordId) {
+        return Result.success(examService.customGetShuffle(Long.valueOf(examRecordId)));
     }
 
     /**
@@ -45,6 +151,8 @@ public class ExamController {
     public Result<Void> submitAnswers(
             @Parameter(description = "考试记录ID") @PathVariable Integer examRecordId, 
             @RequestBody List<SubmitAnswerVo> answers) {
+        examService.customSubmitAnswers(Long.valueOf(examRecordId), answers);
+        log.info("考试记录：{} 交卷成功！本次提交答案数：{}",examRecordId,answers == null ? 0 : answers.size());
         return Result.success("答案提交成功");
     }
 
@@ -56,8 +164,51 @@ public class ExamController {
     @Operation(summary = "AI自动批阅", description = "使用AI技术自动批阅试卷，特别是简答题的智能评分")  // API描述
     public Result<ExamRecord> gradeExam(
             @Parameter(description = "考试记录ID") @PathVariable Integer examRecordId) {
+        ExamRecord examRecord = examGradingService.customGradeExam(Long.valueOf(examRecordId));
+        return Result.success(examRecord, "已批阅".equals(examRecord.getStatus()) ? "试卷批阅完成" : "客观题批阅完成，简答题已提交AI批阅");
+    }
+
+    /**
+     * 使试卷的AI批阅缓存失效 - 调整评分标准后重新批阅之前调用
+     * @param paperId 试卷ID
+     */
+    @PostMapping("/papers/{paperId}/grading-version")  // 处理POST请求
+    @Operation(summary = "AI批阅缓存失效", description = "升级试卷中所有题目的评分标准版本，之后的批阅不再复用旧的AI批阅结果")  // API描述
+    public Result<Void> bumpGradingVersion(
+            @Parameter(description = "试卷ID") @PathVariable Integer paperId) {
+        gradingCacheService.bumpPaperVersion(Long.valueOf(paperId));
+        return Result.success("AI批阅缓存已失效");
+    }
+
+    /**
+     * 对象JSON去掉结尾的 } 并追加字段名，后面紧接着写入字段值
+     *   {"code":200,"message":"操作成功"} -> {"code":200,"message":"操作成功","data":
+     */
+    private String openField(ObjectNode node, String field) throws IOException {
+        String json = objectMapper.writeValueAsString(node);
+        return json.substring(0, json.length() - 1) + (node.isEmpty() ? "" : ",") + "\"" + field + "\":";
+    }
 
-        return Result.success(null, "试卷批阅完成");
+    /**
+     * 写入 prefix + 预压缩JSON + suffix
+     *   客户端支持gzip时直接拼接压缩好的字节（Content-Encoding: gzip），否则写入原始JSON
+     */
+    private void writePrecompressed(HttpServletRequest request, HttpServletResponse response,
+                                    PrecompressedJson paperJson, String prefix, String suffix) throws IOException {
+        boolean gzip = acceptsGzip(request);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        paperJson.writeTo(response.getOutputStream(), prefix.getBytes(StandardCharsets.UTF_8),
+                suffix.getBytes(StandardCharsets.UTF_8), gzip);
+    }
+
+    private boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
     }
 
     /**
@@ -78,4 +229,15 @@ public class ExamController {
     public Result<List<ExamRecord>> getMyRecords() {
         return Result.success(null);
     }
-} 
\ No newline at end of file
+
+    /**
+     * 直接写入响应的接口没有返回值，以下类型只用于生成接口文档
+     */
+    @Schema(name = "ResultExamRecord", description = "开始考试返回结果")
+    private static class ExamRecordResult extends Result<ExamRecord> {
+    }
+
+    @Schema(name = "ResultPaper", description = "学生版试卷返回结果")
+    private static class StudentPaperResult extends Result<Paper> {
+    }
+}
@@ -2,15 +2,20 @@ package com.atguigu.exam.controller;
 
 import com.atguigu.exam.common.Result;
 import com.atguigu.exam.entity.ExamRecord;
+import com.atguigu.exam.service.ExamRecordService;
+import com.atguigu.exam.vo.CursorPageResult;
 import com.atguigu.exam.vo.ExamRankingVO;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -24,7 +29,8 @@ import java.util.List;
 @Tag(name = "考试记录管理", description = "考试记录相关操作，包括记录查询、成绩管理、排行榜展示等功能")  // Swagger API分组
 public class ExamRecordController {
 
-
+    @Autowired
+    private ExamRecordService examRecordService;
 
     /**
      * 分页查询考试记录
@@ -40,8 +46,27 @@ public class ExamRecordController {
             @Parameter(description = "开始日期，格式：yyyy-MM-dd") @RequestParam(required = false) String startDate,
             @Parameter(description = "结束日期，格式：yyyy-MM-dd") @RequestParam(required = false) String endDate
     ) {
+        Page<ExamRecord> pageBean = examRecordService.customPageExamRecords(new Page<>(page, size), studentName, status, startDate, endDate);
+        return Result.success(pageBean);
+    }
 
-        return Result.success(null);
+    /**
+     * 游标分页查询考试记录 - 深分页场景使用，不使用offset，第N页和第1页一样快
+     */
+    @GetMapping("/list/cursor")  // 处理GET请求
+    @Operation(summary = "游标分页查询考试记录", description = "按创建时间倒序的游标分页，不使用offset，需要总数时返回缓存的近似值")  // API描述
+    public Result<CursorPageResult<ExamRecord>> getExamRecordsByCursor(
+            @Parameter(description = "上一页返回的游标，第一页不传") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页显示数量，最多100", example = "20") @RequestParam(defaultValue = "20") Integer size,
+            @Parameter(description = "学生姓名筛选条件") @RequestParam(required = false) String studentName,
+            @Parameter(description = "考试状态，0-进行中，1-已完成，2-已批阅") @RequestParam(required = false) Integer status,
+            @Parameter(description = "开始日期，格式：yyyy-MM-dd") @RequestParam(required = false) String startDate,
+            @Parameter(description = "结束日期，格式：yyyy-MM-dd") @RequestParam(required = false) String endDate,
+            @Parameter(description = "是否返回总数（近似值）") @RequestParam(defaultValue = "false") Boolean withTotal
+    ) {
+        CursorPageResult<ExamRecord> result = examRecordService.customCursorPageExamRecords(cursor, size, studentName, status,
+                startDate, endDate, withTotal);
+        return Result.success(result);
     }
 
     /**
@@ -84,4 +109,24 @@ public class ExamRecordController {
 
         return Result.success(null);
     }
-} 
\ No newline at end of file
+
+    /**
+     * 导出考试记录到Excel
+     * 按id游标分页查询，SXSSF流式写入响应输出流，导出行数再多堆内存也不变
+     */
+    @GetMapping("/export")  // 处理GET请求
+    @Operation(summary = "导出考试记录", description = "按筛选条件导出考试记录和成绩到Excel，支持按试卷、姓名、状态、时间范围筛选")  // API描述
+    public void exportExamRecords(
+            @Parameter(description = "试卷ID筛选条件") @RequestParam(required = false) Integer paperId,
+            @Parameter(description = "学生姓名筛选条件") @RequestParam(required = false) String studentName,
+            @Parameter(description = "考试状态，0-进行中，1-已完成，2-已批阅") @RequestParam(required = false) Integer status,
+            @Parameter(description = "开始日期，格式：yyyy-MM-dd") @RequestParam(required = false) String startDate,
+            @Parameter(description = "结束日期，格式：yyyy-MM-dd") @RequestParam(required = false) String endDate,
+            HttpServletResponse response) throws IOException {
+        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=exam_records_export.xlsx");
+        //先提交响应头，浏览器立即开始下载
+        response.flushBuffer();
+        examRecordService.customExportExamRecords(paperId, studentName, status, startDate, endDate, response.getOutputStream());
+    }
+}
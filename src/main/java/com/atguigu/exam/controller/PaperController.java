@@ -4,6 +4,8 @@ import com.atguigu.exam.common.Result;
 import com.atguigu.exam.entity.Paper;
 import com.atguigu.exam.service.PaperService;
 import com.atguigu.exam.vo.AiPaperVo;
+import com.atguigu.exam.vo.PaperAssembleResultVo;
+import com.atguigu.exam.vo.PaperAssembleVo;
 import com.atguigu.exam.vo.PaperVo;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
@@ -72,9 +74,9 @@ public class PaperController {
     public Result<Paper> updatePaper(
             @Parameter(description = "试卷ID") @PathVariable Integer id, 
             @RequestBody PaperVo paperVo) {
-        Paper paper =  paperService.customPaperDetailById(Long.valueOf(id));
-        log.info("查询试卷详情接口成功！试卷信息为:{}",paper);
-        return Result.success(paper);
+        Paper paper = paperService.customUpdatePaper(Long.valueOf(id), paperVo);
+        log.info("更新试卷接口成功！试卷信息为:{}",paper);
+        return Result.success(paper, "试卷更新成功");
     }
 
     /**
@@ -85,7 +87,22 @@ public class PaperController {
     @PostMapping("/ai")  // 处理POST请求
     @Operation(summary = "AI智能组卷", description = "基于设定的规则（题型分布、难度配比等）使用AI自动生成试卷")  // API描述
     public Result<Paper> createPaperWithAI(@RequestBody AiPaperVo aiPaperVo) {
-        return Result.success(null, "AI智能组卷成功");
+        Paper paper = paperService.customCreatePaperWithAi(aiPaperVo);
+        log.info("AI智能组卷接口成功！试卷信息为:{}", paper);
+        return Result.success(paper, "AI智能组卷成功");
+    }
+
+    /**
+     * 约束组卷：按目标总分、题型数量、难度分布、分类覆盖自动选题
+     * @param paperAssembleVo 试卷信息和组卷目标
+     * @return 创建好的试卷和各项目标的完成情况
+     */
+    @PostMapping("/assemble")  // 处理POST请求
+    @Operation(summary = "约束组卷", description = "按目标总分、题型数量、难度分布和分类覆盖，在时间上限内并行搜索最优的一组题目并创建试卷")  // API描述
+    public Result<PaperAssembleResultVo> assemblePaper(@RequestBody PaperAssembleVo paperAssembleVo) {
+        PaperAssembleResultVo result = paperService.customAssemblePaper(paperAssembleVo);
+        log.info("约束组卷接口成功！试卷信息为:{}，满足全部目标：{}", result.getPaper(), result.getExact());
+        return Result.success(result, result.getExact() ? "约束组卷成功" : "约束组卷成功，部分目标未能满足");
     }
 
     /**
@@ -94,7 +111,9 @@ public class PaperController {
     @GetMapping("/{id}")  // 处理GET请求
     @Operation(summary = "获取试卷详情", description = "获取试卷的详细信息，包括试卷基本信息和包含的所有题目")  // API描述
     public Result<Paper> getPaperById(@Parameter(description = "试卷ID") @PathVariable Integer id) {
-        return Result.success(null);
+        Paper paper = paperService.customPaperDetailById(Long.valueOf(id));
+        log.info("查询试卷详情接口成功！试卷id为:{}",id);
+        return Result.success(paper);
     }
 
     /**
@@ -104,10 +123,11 @@ public class PaperController {
      * @return 操作结果
      */
     @PostMapping("/{id}/status")  // 处理POST请求
-    @Operation(summary = "更新试卷状态", description = "修改试卷状态：发布试卷供学生考试或停止试卷禁止考试")  // API描述
+    @Operation(summary = "更新试卷状态", description = "修改试卷状态：发布试卷供学生考试或停止试卷禁止考试，发布时预先生成学生版试卷")  // API描述
     public Result<Void> updatePaperStatus(
             @Parameter(description = "试卷ID") @PathVariable Integer id, 
             @Parameter(description = "新的状态，可选值：PUBLISHED/STOPPED") @RequestParam String status) {
+        paperService.customUpdatePaperStatus(Long.valueOf(id), status);
         return Result.success(null, "状态更新成功");
     }
 
@@ -3,9 +3,14 @@ package com.atguigu.exam.controller;
 
 import com.atguigu.exam.common.Result;
 import com.atguigu.exam.service.KimiAiService;
+import com.atguigu.exam.service.QuestionImportJobService;
 import com.atguigu.exam.service.QuestionService;
 import com.atguigu.exam.utils.ExcelUtil;
+import com.atguigu.exam.utils.QuestionImportValidator;
+import com.atguigu.exam.vo.AiGenerateProgressVo;
 import com.atguigu.exam.vo.AiGenerateRequestVo;
+import com.atguigu.exam.vo.ExcelPreviewVo;
+import com.atguigu.exam.vo.QuestionImportJobVo;
 import com.atguigu.exam.vo.QuestionImportVo;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -16,12 +21,17 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 题目批量管理控制器 - 处理题目批量操作相关的HTTP请求
@@ -36,6 +46,7 @@ import java.util.List;
 public class QuestionBatchController {
     private final QuestionService questionService;
     private final KimiAiService kimiAiService;
+    private final QuestionImportJobService questionImportJobService;
 
     /**
      * 下载Excel导入模板
@@ -61,27 +72,61 @@ public class QuestionBatchController {
     /**
      * 预览Excel文件内容（不入库）
      * @param file Excel文件
-     * @return 解析出的题目列表
+     * @param limit 返回的题目数
+     * @return 前limit道题目和题目总数
      */
     @PostMapping("/preview-excel")  // 处理POST请求
-    @Operation(summary = "预览Excel文件内容", description = "解析并预览Excel文件中的题目内容，不会导入到数据库")  // API描述
-    public Result<List<QuestionImportVo>> previewExcel(
-            @Parameter(description = "Excel文件，支持.xls和.xlsx格式") @RequestParam("file") MultipartFile file) throws IOException {
-        List<QuestionImportVo> questionImportVoList = questionService.preViewExcel(file);
-        log.info("预览解析execl接口调用成功！题目数量：{},数据为：{}",questionImportVoList.size(),questionImportVoList);
-        return Result.success(questionImportVoList);
+    @Operation(summary = "预览Excel文件内容", description = "流式解析Excel文件，返回前N道题目和题目总数，不会导入到数据库")  // API描述
+    public Result<ExcelPreviewVo> previewExcel(
+            @Parameter(description = "Excel文件，支持.xls和.xlsx格式") @RequestParam("file") MultipartFile file,
+            @Parameter(description = "返回的题目数，默认100") @RequestParam(required = false) Integer limit) throws IOException {
+        ExcelPreviewVo excelPreviewVo = questionService.preViewExcel(file, limit);
+        log.info("预览解析execl接口调用成功！题目总数：{}，预览数量：{}", excelPreviewVo.getTotal(), excelPreviewVo.getRows().size());
+        return Result.success(excelPreviewVo);
     }
     
     /**
      * 从Excel文件批量导入题目
+     *   提交后台导入任务后立即返回任务id，通过任务进度接口查询导入结果
      * @param file Excel文件
-     * @return 导入结果
+     * @return 导入任务id
      */
     @PostMapping("/import-excel")  // 处理POST请求
-    @Operation(summary = "从Excel文件批量导入题目", description = "解析Excel文件并将题目批量导入到数据库")  // API描述
+    @Operation(summary = "从Excel文件批量导入题目", description = "提交Excel后台导入任务，流水线解析、校验并批量导入到数据库，返回任务id")  // API描述
     public Result<String> importFromExcel(
-            @Parameter(description = "Excel文件，包含题目数据") @RequestParam("file") MultipartFile file) {
-      return null;
+            @Parameter(description = "Excel文件，包含题目数据") @RequestParam("file") MultipartFile file) throws IOException {
+        String jobId = questionImportJobService.submitExcelImport(file);
+        log.info("Excel导入任务提交成功！文件名：{}，任务id：{}", file.getOriginalFilename(), jobId);
+        return Result.success(jobId, "Excel导入任务已提交，请通过任务id查询导入进度！");
+    }
+
+    /**
+     * 查询Excel导入任务进度
+     * @param jobId 任务id
+     * @return 任务进度
+     */
+    @GetMapping("/import-jobs/{jobId}")  // 处理GET请求
+    @Operation(summary = "查询Excel导入任务进度", description = "返回导入任务已解析、校验通过、已导入和失败的题目数量")  // API描述
+    public Result<QuestionImportJobVo> getImportJob(@Parameter(description = "导入任务id") @PathVariable String jobId) {
+        QuestionImportJobVo questionImportJobVo = questionImportJobService.getJob(jobId);
+        log.debug("查询Excel导入任务进度：{}", questionImportJobVo);
+        return Result.success(questionImportJobVo);
+    }
+
+    /**
+     * 下载Excel导入任务的失败明细
+     * @param jobId 任务id
+     * @return 失败明细Excel文件
+     */
+    @SneakyThrows
+    @GetMapping("/import-jobs/{jobId}/errors")  // 处理GET请求
+    @Operation(summary = "下载Excel导入失败明细", description = "下载导入任务中校验或导入失败的题目行号和失败原因")  // API描述
+    public ResponseEntity<byte[]> downloadImportErrors(@Parameter(description = "导入任务id") @PathVariable String jobId) {
+        byte[] report = questionImportJobService.generateErrorReport(jobId);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=question_import_errors_%s.xlsx".formatted(jobId))
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(report);
     }
     
     /**
@@ -99,6 +144,39 @@ public class QuestionBatchController {
         return Result.success(questionImportVoList);
     }
     
+    /**
+     * 使用AI流式生成题目（预览，不入库）
+     *   大批量生成自动拆分成子请求并行执行
+     *   SSE推送：每生成一道题推送一个 question 事件，每个子请求结束推送一个 progress 事件，
+     *   结束时推送 done 事件（data为最终进度），失败时推送 error 事件
+     * @param request AI生成请求参数
+     * @return 题目事件流
+     */
+    @PostMapping(value = "/ai-generate/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)  // 处理POST请求，SSE响应
+    @Operation(summary = "AI智能生成题目（流式）", description = "使用AI流式生成题目，每生成一道题立即推送给前端，大批量生成时拆分并行执行并推送进度")  // API描述
+    public Flux<ServerSentEvent<Object>> generateQuestionsByAiStream(@RequestBody @Validated AiGenerateRequestVo request) {
+        AtomicReference<AiGenerateProgressVo> last = new AtomicReference<>();
+        return kimiAiService.aiGenerateQuestionsFanOut(request)
+                .doOnNext(last::set)
+                .map(progress -> progress.getQuestion() != null
+                        ? ServerSentEvent.<Object>builder(progress.getQuestion())
+                            .event("question").id(String.valueOf(progress.getGeneratedCount())).build()
+                        : ServerSentEvent.<Object>builder(progress).event("progress").build())
+                .concatWith(Mono.fromSupplier(() -> {
+                    AiGenerateProgressVo progress = last.get();
+                    if (progress != null) {
+                        progress.setQuestion(null);
+                    }
+                    log.info("使用ai流式生成：{} 为标题的题目结束！ 计划生成：{}道题，进度：{}",
+                            request.getTopic(), request.getCount(), progress);
+                    return ServerSentEvent.<Object>builder(progress == null ? "" : progress).event("done").build();
+                }))
+                .onErrorResume(e -> {
+                    log.error("使用ai流式生成：{} 为标题的题目失败！原因：{}", request.getTopic(), e.getMessage());
+                    return Mono.just(ServerSentEvent.<Object>builder(e.getMessage()).event("error").build());
+                });
+    }
+
     /**
      * 批量导入题目（通用接口，支持Excel导入或AI生成后的确认导入）
      * @param questions 题目导入DTO列表
@@ -120,54 +198,16 @@ public class QuestionBatchController {
     @PostMapping("/validate")  // 处理POST请求
     @Operation(summary = "验证题目数据", description = "验证题目数据的完整性和格式正确性，返回验证结果和错误信息")  // API描述
     public Result<String> validateQuestions(@RequestBody List<QuestionImportVo> questions) {
-
-        return Result.error("验证题目数据失败!");
-    }
-    
-    /**
-     * 验证单个题目数据
-     * @param question 题目数据
-     * @param index 题目序号
-     * @return 错误信息，如果为null表示验证通过
-     */
-    private String validateSingleQuestion(QuestionImportVo question, int index) {
-        // 验证基本字段
-        if (question.getTitle() == null || question.getTitle().trim().isEmpty()) {
-            return String.format("第%d题：题目内容不能为空", index);
-        }
-        
-        if (question.getType() == null || question.getType().trim().isEmpty()) {
-            return String.format("第%d题：题目类型不能为空", index);
-        }
-        
-        if (!"CHOICE".equals(question.getType()) && !"JUDGE".equals(question.getType()) && !"TEXT".equals(question.getType())) {
-            return String.format("第%d题：题目类型必须是CHOICE、JUDGE或TEXT", index);
-        }
-        
-        // 验证选择题特有字段
-        if ("CHOICE".equals(question.getType())) {
-            if (question.getChoices() == null || question.getChoices().isEmpty()) {
-                return String.format("第%d题：选择题必须有选项", index);
-            }
-            
-            if (question.getChoices().size() < 2) {
-                return String.format("第%d题：选择题至少需要2个选项", index);
-            }
-            
-            boolean hasCorrectAnswer = question.getChoices().stream()
-                    .anyMatch(choice -> choice.getIsCorrect() != null && choice.getIsCorrect());
-            
-            if (!hasCorrectAnswer) {
-                return String.format("第%d题：选择题必须有正确答案", index);
-            }
-        } else {
-            // 判断题和简答题需要答案
-            if (question.getAnswer() == null || question.getAnswer().trim().isEmpty()) {
-                return String.format("第%d题：%s必须有答案", index, 
-                    "JUDGE".equals(question.getType()) ? "判断题" : "简答题");
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < questions.size(); i++) {
+            String error = QuestionImportValidator.validate(questions.get(i), i + 1);
+            if (error != null) {
+                errors.add(error);
             }
         }
-        
-        return null; // 验证通过
+        if (!errors.isEmpty()) {
+            return Result.error("验证题目数据失败！" + String.join("；", errors));
+        }
+        return Result.success("验证通过！共%d道题目".formatted(questions.size()));
     }
-} 
\ No newline at end of file
+}
@@ -2,17 +2,23 @@ package com.atguigu.exam.controller;
 
 import com.atguigu.exam.common.Result;
 import com.atguigu.exam.entity.Question;
+import com.atguigu.exam.service.QuestionDuplicateService;
 import com.atguigu.exam.service.QuestionService;
+import com.atguigu.exam.vo.CursorPageResult;
+import com.atguigu.exam.vo.QuestionDuplicateClusterVo;
 import com.atguigu.exam.vo.QuestionQueryVo;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
@@ -48,6 +54,7 @@ import java.util.stream.Collectors;
 public class QuestionController {
 
     private final QuestionService questionService;
+    private final QuestionDuplicateService questionDuplicateService;
 
     /**
      * 分页查询题目列表（支持多条件筛选）
@@ -80,6 +87,30 @@ public class QuestionController {
         return Result.success(pageBean);
     }
     
+    /**
+     * 游标分页查询题目列表 - 深分页场景使用
+     * 
+     * 与 /list 的区别：
+     * - 不使用offset：按上一页最后一道题的(创建时间, id)继续查询，第N页和第1页一样快
+     * - 不统计总数：需要总数时传withTotal=true，返回按查询条件缓存的近似值
+     * 
+     * @param cursor 上一页返回的nextCursor，第一页不传
+     * @param size 每页显示数量，最多100条
+     * @param withTotal 是否返回总数
+     * @return 本页题目和下一页游标
+     */
+    @GetMapping("/list/cursor")  // 映射GET请求到/api/questions/list/cursor
+    @Operation(summary = "游标分页查询题目列表", description = "按创建时间倒序的游标分页，不使用offset，适合深分页和无限滚动")  // Swagger接口描述
+    public Result<CursorPageResult<Question>> getQuestionListByCursor(
+            @Parameter(description = "上一页返回的游标，第一页不传") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页显示数量，最多100", example = "10") @RequestParam(defaultValue = "10") Integer size,
+            @Parameter(description = "是否返回总数（近似值）") @RequestParam(defaultValue = "false") Boolean withTotal,
+            QuestionQueryVo questionQueryVo) {
+        CursorPageResult<Question> result = questionService.customCursorPageQuestions(questionQueryVo, cursor, size, withTotal);
+        log.info("游标分页查询题目成功！本页数量：{}，下一页游标：{}", result.getRecords().size(), result.getNextCursor());
+        return Result.success(result);
+    }
+    
     /**
      * 根据ID查询单个题目详情
      * 
@@ -204,9 +235,9 @@ public class QuestionController {
      * 随机获取题目 - 智能组卷核心功能
      * 
      * 算法思路：
-     * 1. 根据条件筛选候选题目池
-     * 2. 使用数据库RAND()函数或Java随机算法
-     * 3. 保证题目不重复
+     * 1. 内存抽样索引按 (分类, 题型, 难度) 分桶保存题目id，不使用数据库 ORDER BY RAND() 全表排序
+     * 2. 满足条件的桶看成一个数组随机取下标，等概率抽取
+     * 3. 保证题目不重复，再按id一次查询题目、选项和答案
      * 
      * 业务价值：
      * - 自动组卷：减少教师工作量
@@ -216,6 +247,7 @@ public class QuestionController {
      * @param count 需要的题目数量，默认10题
      * @param categoryId 限定分类，可选
      * @param difficulty 限定难度，可选
+     * @param type 限定题型，可选
      * @return 随机选择的题目列表
      */
     @GetMapping("/random")  // 处理GET请求
@@ -223,9 +255,11 @@ public class QuestionController {
     public Result<List<Question>> getRandomQuestions(
             @Parameter(description = "需要获取的题目数量", example = "10") @RequestParam(defaultValue = "10") Integer count,
             @Parameter(description = "分类ID限制条件，可选") @RequestParam(required = false) Long categoryId,
-            @Parameter(description = "难度限制条件，可选值：EASY/MEDIUM/HARD") @RequestParam(required = false) String difficulty) {
-
-        return Result.success(null);
+            @Parameter(description = "难度限制条件，可选值：EASY/MEDIUM/HARD") @RequestParam(required = false) String difficulty,
+            @Parameter(description = "题型限制条件，可选值：CHOICE/JUDGE/TEXT") @RequestParam(required = false) String type) {
+        List<Question> questionList = questionService.customRandomQuestions(count, categoryId, difficulty, type);
+        log.info("随机获取题目接口调用成功！计划数量：{}，实际数量：{}", count, questionList.size());
+        return Result.success(questionList);
     }
 
     /**
@@ -279,17 +313,67 @@ public class QuestionController {
      * - 手动干预：管理员可以强制更新热门题目排名
      * 
      * 技术实现：
-     * - 清除缓存：删除Redis中的访问计数数据
-     * - 重建缓存：为所有题目设置初始访问计数
+     * - 写入计数：本地缓冲的访问计数立即写入Redis排行
+     * - 重建排行：移除排行中已经被删除的题目
+     * - 清除缓存：删除组装好的热门题目缓存，下次查询重新组装
      * - 权限控制：仅管理员可操作（前端负责控制）
      * 
      * @return 刷新结果，包含处理的题目数量
      */
     @PostMapping("/popular/refresh")
-    @Operation(summary = "刷新热门题目缓存", description = "管理员功能，重置或初始化热门题目的访问计数")
+    @Operation(summary = "刷新热门题目缓存", description = "管理员功能，重建热门题目排行并清除热门题目缓存")
     public Result<Integer> refreshPopularQuestions() {
+        Integer count = questionService.customRefreshPopularQuestions();
+        log.info("刷新热门题目接口调用成功！排行题目数：{}", count);
+        return Result.success(count, "热门题目刷新成功");
+    }
+
+    /**
+     * 相似题目分组 - 管理员功能
+     * 
+     * 业务场景：
+     * - 清理题库：AI生成和Excel导入的题目中，标点、空白、选项顺序不同的重复题目
+     * 
+     * 技术实现：
+     * - 标题 + 选项内容的SimHash指纹保存在内存索引中，只比较同类型的题目
+     * - 相似关系传递合并成分组（A像B、B像C时ABC为一组），按分组题目数倒序
+     * 
+     * @param maxDistance 指纹最大海明距离（0~3），为空时使用配置值
+     * @param limit 最多返回的分组数
+     * @return 相似题目分组
+     */
+    @GetMapping("/duplicates")  // 处理GET请求
+    @Operation(summary = "相似题目分组", description = "管理员功能，列出题库中疑似重复的题目分组")  // API描述
+    public Result<List<QuestionDuplicateClusterVo>> getDuplicateQuestions(
+            @Parameter(description = "指纹最大海明距离（0~3），越大越宽松") @RequestParam(required = false) Integer maxDistance,
+            @Parameter(description = "最多返回的分组数", example = "100") @RequestParam(defaultValue = "100") Integer limit) {
+        if (!questionDuplicateService.isReady()) {
+            return Result.error("相似题目索引尚未构建完成，请稍后再试！");
+        }
+        List<QuestionDuplicateClusterVo> clusters = questionDuplicateService.findClusters(maxDistance, limit);
+        log.info("查询相似题目分组接口调用成功！分组数：{}", clusters.size());
+        return Result.success(clusters);
+    }
 
-        return Result.error("刷新热门题目缓存失败");
+    /**
+     * 导出题目到Excel
+     * 
+     * 技术实现：
+     * - 按id游标分页查询题目，每页的选项和答案各一次in查询
+     * - SXSSF流式写入，内存中只保留固定行数，导出10万道题目堆内存也不变
+     * - 先提交响应头，浏览器立即开始下载
+     * 
+     * @param questionQueryVo 筛选条件，和分页查询相同
+     * @param response HTTP响应
+     */
+    @GetMapping("/export")  // 处理GET请求
+    @Operation(summary = "导出题目", description = "按筛选条件导出题目（包含选项和答案）到Excel，列和导入模板一致")  // API描述
+    public void exportQuestions(QuestionQueryVo questionQueryVo, HttpServletResponse response) throws IOException {
+        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=questions_export.xlsx");
+        response.flushBuffer();
+        questionService.customExportQuestions(questionQueryVo, response.getOutputStream());
+        log.info("导出题目接口调用成功！筛选条件：{}", questionQueryVo);
     }
 
 } 
\ No newline at end of file
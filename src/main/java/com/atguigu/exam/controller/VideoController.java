@@ -3,6 +3,7 @@ package com.atguigu.exam.controller;
 import com.atguigu.exam.common.Result;
 import com.atguigu.exam.entity.Video;
 import com.atguigu.exam.service.VideoService;
+import com.atguigu.exam.vo.CursorPageResult;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -49,6 +50,28 @@ public class VideoController {
         return Result.success(result);
     }
 
+    /**
+     * 游标分页获取已发布的视频列表
+     * @param cursor 上一页返回的游标，第一页不传
+     * @param size 每页大小，默认10，最多100
+     * @param categoryId 分类ID
+     * @param keyword 搜索关键字
+     * @param withTotal 是否返回总数（近似值）
+     * @return 本页视频和下一页游标
+     */
+    @GetMapping("/cursor")
+    @Operation(summary = "游标分页获取视频列表", description = "按发布时间倒序的游标分页，不使用offset，适合深分页和无限滚动")
+    public Result<CursorPageResult<Video>> getVideosByCursor(
+            @Parameter(description = "上一页返回的游标，第一页不传") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页大小，默认10") @RequestParam(defaultValue = "10") Integer size,
+            @Parameter(description = "分类ID") @RequestParam(required = false) Long categoryId,
+            @Parameter(description = "搜索关键字") @RequestParam(required = false) String keyword,
+            @Parameter(description = "是否返回总数（近似值）") @RequestParam(defaultValue = "false") Boolean withTotal,
+            HttpServletRequest request) {
+        CursorPageResult<Video> result = videoService.getPublishedVideosByCursor(cursor, size, categoryId, keyword, withTotal, request);
+        return Result.success(result);
+    }
+
     /**
      * 获取视频详情
      * @param id 视频ID
@@ -70,7 +93,7 @@ public class VideoController {
      * @return 热门视频列表
      */
     @GetMapping("/popular")
-    @Operation(summary = "获取热门视频", description = "根据观看次数获取热门视频列表")
+    @Operation(summary = "获取热门视频", description = "根据最近一段时间的观看次数（按时间衰减）获取热门视频列表，不足时按总观看次数补充")
     public Result<List<Video>> getPopularVideos(
             @Parameter(description = "限制数量，默认10") @RequestParam(defaultValue = "10") Integer limit) {
         List<Video> videos = videoService.getPopularVideos(limit);
@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
+import com.atguigu.exam.vo.PaperShuffleVo;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Data;
@@ -55,6 +56,10 @@ public class ExamRecord extends BaseEntity {
             example = "2")
     private Integer windowSwitches; // 窗口切换次数
 
+    @Schema(description = "本次考试是否打乱了题目和选项顺序，开始考试时确定，判卷时按此把选项字母映射回原始顺序",
+            example = "false")
+    private Boolean shuffled; // 是否打乱
+
 
     @Schema(description = "详细的答题记录列表，包含每题的答案和得分情况")
     @TableField(exist = false)
@@ -64,4 +69,8 @@ public class ExamRecord extends BaseEntity {
     @TableField(exist = false)
     private Paper paper; // 试卷信息
 
+    @Schema(description = "试卷打乱索引，开启题目打乱时返回，前端按索引展示题目和选项")
+    @TableField(exist = false)
+    private PaperShuffleVo shuffle; // 试卷打乱索引
+
 } 
\ No newline at end of file
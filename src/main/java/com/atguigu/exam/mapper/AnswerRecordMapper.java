@@ -3,6 +3,8 @@ package com.atguigu.exam.mapper;
 import com.atguigu.exam.entity.AnswerRecord;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 
+import java.util.List;
+
 /**
 * @author 86158
 * @description 针对表【answer_record(答题记录表)】的数据库操作Mapper
@@ -11,4 +13,12 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 */
 public interface AnswerRecordMapper extends BaseMapper<AnswerRecord> {
 
+    /**
+     * 多行批量插入答题记录（一条insert语句）
+     * 方法名称固定 insertBatchSomeColumn，由MybatisPlusConfiguration中注册的sql注入器提供实现
+     * @param list 答题记录集合
+     * @return 插入行数
+     */
+    int insertBatchSomeColumn(List<AnswerRecord> list);
+
 } 
\ No newline at end of file
@@ -4,6 +4,16 @@ import com.atguigu.exam.entity.QuestionAnswer;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
 
+import java.util.List;
+
 @Mapper
 public interface QuestionAnswerMapper extends BaseMapper<QuestionAnswer> {
-} 
\ No newline at end of file
+
+    /**
+     * 多行批量插入（一条insert语句），自增id会回填到集合中的每个对象
+     * 方法名称固定 insertBatchSomeColumn，由MybatisPlusConfiguration中注册的sql注入器提供实现
+     * @param list 集合
+     * @return 插入行数
+     */
+    int insertBatchSomeColumn(List<QuestionAnswer> list);
+}
@@ -25,4 +25,12 @@ public interface QuestionMapper extends BaseMapper<Question> {
     Question customGetById(Long id);
 
     List<Question> customQueryQuestionListByPaperId(Long id);
-}
\ No newline at end of file
+
+    /**
+     * 多行批量插入（一条insert语句），自增id会回填到集合中的每个对象
+     * 方法名称固定 insertBatchSomeColumn，由MybatisPlusConfiguration中注册的sql注入器提供实现
+     * @param list 集合
+     * @return 插入行数
+     */
+    int insertBatchSomeColumn(List<Question> list);
+}
@@ -6,6 +6,7 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import org.apache.ibatis.annotations.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -39,6 +40,54 @@ public interface VideoMapper extends BaseMapper<Video> {
                                        @Param("categoryId") Long categoryId, 
                                        @Param("keyword") String keyword);
     
+    /**
+     * 游标分页查询已发布的视频列表（按发布时间、id倒序，不使用offset）
+     * @param categoryId 分类ID（可选）
+     * @param keyword 搜索关键字（可选）
+     * @param cursorTime 上一页最后一个视频的创建时间，第一页为null
+     * @param cursorId 上一页最后一个视频的id，第一页为null
+     * @param limit 查询数量
+     * @return 视频列表
+     */
+    @Select("<script>" +
+            "SELECT v.*, vc.name as category_name " +
+            "FROM videos v " +
+            "LEFT JOIN video_categories vc ON v.category_id = vc.id " +
+            "WHERE v.status = 1 " +
+            "<if test='categoryId != null'> AND v.category_id = #{categoryId} </if>" +
+            "<if test='keyword != null and keyword != \"\"'> " +
+            "AND (v.title LIKE CONCAT('%', #{keyword}, '%') " +
+            "OR v.tags LIKE CONCAT('%', #{keyword}, '%')) " +
+            "</if>" +
+            "<if test='cursorTime != null'> " +
+            "AND (v.created_at &lt; #{cursorTime} OR (v.created_at = #{cursorTime} AND v.id &lt; #{cursorId})) " +
+            "</if>" +
+            "ORDER BY v.created_at DESC, v.id DESC " +
+            "LIMIT #{limit}" +
+            "</script>")
+    List<Video> getPublishedVideosAfter(@Param("categoryId") Long categoryId,
+                                        @Param("keyword") String keyword,
+                                        @Param("cursorTime") LocalDateTime cursorTime,
+                                        @Param("cursorId") Long cursorId,
+                                        @Param("limit") Integer limit);
+
+    /**
+     * 统计已发布的视频数量
+     * @param categoryId 分类ID（可选）
+     * @param keyword 搜索关键字（可选）
+     * @return 视频数量
+     */
+    @Select("<script>" +
+            "SELECT COUNT(*) FROM videos v " +
+            "WHERE v.status = 1 " +
+            "<if test='categoryId != null'> AND v.category_id = #{categoryId} </if>" +
+            "<if test='keyword != null and keyword != \"\"'> " +
+            "AND (v.title LIKE CONCAT('%', #{keyword}, '%') " +
+            "OR v.tags LIKE CONCAT('%', #{keyword}, '%')) " +
+            "</if>" +
+            "</script>")
+    Long countPublishedVideos(@Param("categoryId") Long categoryId, @Param("keyword") String keyword);
+
     /**
      * 管理端分页查询视频列表（包含分类名称和审核管理员信息）
      * @param page 分页对象
@@ -79,6 +128,20 @@ public interface VideoMapper extends BaseMapper<Video> {
             "LIMIT #{limit}")
     List<Video> getPopularVideos(@Param("limit") Integer limit);
     
+    /**
+     * 根据id集合获取已发布的视频（热门排行中的视频）
+     * @param ids 视频id集合
+     * @return 视频列表（不保证顺序）
+     */
+    @Select("<script>" +
+            "SELECT v.*, vc.name as category_name " +
+            "FROM videos v " +
+            "LEFT JOIN video_categories vc ON v.category_id = vc.id " +
+            "WHERE v.status = 1 AND v.id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<Video> getPublishedVideosByIds(@Param("ids") List<Long> ids);
+
     /**
      * 获取最新视频列表
      * @param limit 限制数量
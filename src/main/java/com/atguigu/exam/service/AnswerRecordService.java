@@ -0,0 +1,29 @@
+package com.atguigu.exam.service;
+
+import com.atguigu.exam.entity.AnswerRecord;
+import com.baomidou.mybatisplus.extension.service.IService;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 答题记录服务接口
+ */
+public interface AnswerRecordService extends IService<AnswerRecord> {
+
+    /**
+     * 同步批量插入答题记录
+     *   按配置的批次大小分段，每段一条多行insert语句
+     * @param answerRecords 答题记录集合
+     */
+    void customSaveBatch(List<AnswerRecord> answerRecords);
+
+    /**
+     * 异步批量插入答题记录（写后队列）
+     *   多场考试的交卷会被合并到同一个批次中写入，减少数据库往返
+     *   队列已满时由调用线程直接同步写入
+     * @param answerRecords 一场考试的答题记录
+     * @return 写入完成（或失败）的通知
+     */
+    CompletableFuture<Void> asyncSaveBatch(List<AnswerRecord> answerRecords);
+}
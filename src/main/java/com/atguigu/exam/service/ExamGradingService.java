@@ -0,0 +1,47 @@
+package com.atguigu.exam.service;
+
+import com.atguigu.exam.entity.AnswerRecord;
+import com.atguigu.exam.entity.ExamRecord;
+
+import java.util.List;
+
+/**
+ * 判卷服务接口
+ *   选择题、判断题由本地编译后的答案进行判分，简答题交给KimiGradingService异步批阅
+ */
+public interface ExamGradingService {
+
+    /**
+     * 对一场考试的答题记录进行客观题判分（内存计算，不访问数据库）
+     *   给选择题和判断题的答题记录填充 score 和 isCorrect
+     *   简答题不处理（score和isCorrect保持为null）
+     * @param paperId 试卷id
+     * @param answerRecords 答题记录
+     * @param shuffled 这场考试是否打乱了选项（打乱时把学生选择的展示字母映射回原始选项字母）
+     * @return 客观题总得分
+     */
+    int gradeObjective(Integer paperId, List<AnswerRecord> answerRecords, boolean shuffled);
+
+    /**
+     * 判断一场考试的答题记录中是否有需要人工智能批阅的简答题
+     * @param paperId 试卷id
+     * @param answerRecords 答题记录
+     * @return true 有简答题
+     */
+    boolean hasSubjective(Integer paperId, List<AnswerRecord> answerRecords);
+
+    /**
+     * 对已交卷的考试记录进行判分并更新答题记录和考试得分
+     *   客观题同步判分，简答题提交到AI批阅队列后立即返回
+     * @param examRecordId 考试记录id
+     * @return 判分后的考试记录（包含答题记录）
+     */
+    ExamRecord customGradeExam(Long examRecordId);
+
+    /**
+     * 试卷题目或答案变化后，删除已经编译的答案（本实例和其他实例）
+     *    在事务中调用时事务提交后才删除
+     * @param paperId 试卷id
+     */
+    void evictAnswerKey(Long paperId);
+}
@@ -1,9 +1,13 @@
 package com.atguigu.exam.service;
 
 import com.atguigu.exam.entity.ExamRecord;
+import com.atguigu.exam.vo.CursorPageResult;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
 
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 /**
@@ -12,4 +16,42 @@ import java.util.List;
  */
 public interface ExamRecordService extends IService<ExamRecord> {
 
-} 
\ No newline at end of file
+    /**
+     * 导出考试记录（成绩）到Excel
+     *   按id游标分页查询，流式写入输出流
+     * @param paperId 试卷id，可选
+     * @param studentName 考生姓名（模糊匹配），可选
+     * @param status 考试状态，0-进行中，1-已完成，2-已批阅，可选
+     * @param startDate 开始日期 yyyy-MM-dd（按考试开始时间），可选
+     * @param endDate 结束日期 yyyy-MM-dd（按考试开始时间，包含当天），可选
+     * @param out 输出流
+     */
+    void customExportExamRecords(Integer paperId, String studentName, Integer status,
+                                 String startDate, String endDate, OutputStream out) throws IOException;
+
+    /**
+     * 分页查询考试记录（按创建时间倒序）
+     * @param pageBean 分页参数
+     * @param studentName 考生姓名（模糊匹配），可选
+     * @param status 考试状态，0-进行中，1-已完成，2-已批阅，可选
+     * @param startDate 开始日期 yyyy-MM-dd，可选
+     * @param endDate 结束日期 yyyy-MM-dd（包含当天），可选
+     * @return 考试记录分页结果（含试卷id和名称）
+     */
+    Page<ExamRecord> customPageExamRecords(Page<ExamRecord> pageBean, String studentName, Integer status,
+                                           String startDate, String endDate);
+
+    /**
+     * 游标分页查询考试记录（按创建时间倒序，不使用offset）
+     * @param cursor 上一页返回的游标，第一页为空
+     * @param size 每页大小
+     * @param studentName 考生姓名（模糊匹配），可选
+     * @param status 考试状态，0-进行中，1-已完成，2-已批阅，可选
+     * @param startDate 开始日期 yyyy-MM-dd，可选
+     * @param endDate 结束日期 yyyy-MM-dd（包含当天），可选
+     * @param withTotal 是否返回总数（按查询条件缓存的近似值）
+     * @return 本页考试记录（含试卷id和名称）和下一页游标
+     */
+    CursorPageResult<ExamRecord> customCursorPageExamRecords(String cursor, Integer size, String studentName, Integer status,
+                                                            String startDate, String endDate, boolean withTotal);
+}
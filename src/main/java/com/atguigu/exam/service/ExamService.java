@@ -1,6 +1,9 @@
 package com.atguigu.exam.service;
 
 import com.atguigu.exam.entity.ExamRecord;
+import com.atguigu.exam.vo.PaperShuffleVo;
+import com.atguigu.exam.vo.StartExamVo;
+import com.atguigu.exam.vo.SubmitAnswerVo;
 import com.baomidou.mybatisplus.extension.service.IService;
 
 import java.util.List;
@@ -10,5 +13,41 @@ import java.util.List;
  */
 public interface ExamService extends IService<ExamRecord> {
 
-} 
- 
\ No newline at end of file
+    /**
+     * 开始考试
+     *   1. 创建考试记录（唯一一次插入）
+     *   2. 在redis中创建考试会话（答案、切屏次数、截止时间）
+     *   3. 返回考试记录和试卷内容
+     * @param startExamVo 试卷id和考生姓名
+     * @return 考试记录
+     */
+    ExamRecord customStartExam(StartExamVo startExamVo);
+
+    /**
+     * 考试过程中保存单题答案（增量保存，只写redis，不写数据库）
+     * @param examRecordId 考试记录id
+     * @param submitAnswerVo 单题答案
+     */
+    void customSaveAnswer(Long examRecordId, SubmitAnswerVo submitAnswerVo);
+
+    /**
+     * 记录一次切屏（只写redis）
+     * @param examRecordId 考试记录id
+     * @return 当前累计切屏次数
+     */
+    Long customRecordWindowSwitch(Long examRecordId);
+
+    /**
+     * 交卷：合并最后提交的答案，并将整场考试一次性落库
+     * @param examRecordId 考试记录id
+     * @param answers 最后提交的答案（可以为空，表示以已保存的答案为准）
+     */
+    void customSubmitAnswers(Long examRecordId, List<SubmitAnswerVo> answers);
+
+    /**
+     * 重新获取进行中考试的题目和选项顺序（刷新页面后按同样的顺序展示）
+     * @param examRecordId 考试记录id
+     * @return 打乱索引，这场考试没有打乱时为null
+     */
+    PaperShuffleVo customGetShuffle(Long examRecordId);
+}
@@ -0,0 +1,36 @@
+package com.atguigu.exam.service;
+
+import com.atguigu.exam.vo.GradingResultVo;
+
+/**
+ * AI批阅结果缓存服务
+ *   key = (题目id, 评分标准版本, 满分, 归一化答案的摘要)，相同的答案直接复用之前的批阅结果
+ */
+public interface GradingCacheService {
+
+    /**
+     * 查询缓存的批阅结果
+     * @param questionId 题目id
+     * @param fullScore 满分
+     * @param userAnswer 学生答案（原文，内部归一化）
+     * @return 没有缓存返回null
+     */
+    GradingResultVo get(Long questionId, int fullScore, String userAnswer);
+
+    /**
+     * 缓存批阅结果
+     */
+    void put(Long questionId, int fullScore, String userAnswer, GradingResultVo result);
+
+    /**
+     * 题目的参考答案或关键词修改后，升级评分标准版本，旧版本的缓存不再命中（等待过期）
+     * @param questionId 题目id
+     */
+    void bumpVersion(Long questionId);
+
+    /**
+     * 升级试卷中所有题目的评分标准版本
+     * @param paperId 试卷id
+     */
+    void bumpPaperVersion(Long paperId);
+}
@@ -0,0 +1,21 @@
+package com.atguigu.exam.service;
+
+import com.atguigu.exam.entity.AnswerRecord;
+import com.atguigu.exam.entity.Question;
+
+/**
+ * 简答题关键词预评分服务
+ *   根据question_answers.keywords计算答案的关键词覆盖率，覆盖率明确（很低或很高）时直接给分，不再调用AI
+ */
+public interface KeywordGradingService {
+
+    /**
+     * 关键词预评分
+     *   覆盖率不在不确定区间时，给答题记录填充score、isCorrect、aiCorrection
+     * @param question 题目（包含关键词和试卷中的分值）
+     * @param answerRecord 答题记录
+     * @param fullScore 满分
+     * @return true 已经给分；false 题目没有关键词或者覆盖率处于不确定区间，需要交给AI批阅
+     */
+    boolean preGrade(Question question, AnswerRecord answerRecord, int fullScore);
+}
@@ -1,8 +1,11 @@
 package com.atguigu.exam.service;
 
 
+import com.atguigu.exam.vo.AiGenerateProgressVo;
 import com.atguigu.exam.vo.AiGenerateRequestVo;
 import com.atguigu.exam.vo.QuestionImportVo;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
@@ -17,4 +20,27 @@ public interface KimiAiService {
      * @return
      */
     List<QuestionImportVo> aiGenerateQuestions(AiGenerateRequestVo request) throws InterruptedException;
-}
\ No newline at end of file
+
+    /**
+     * ai题目信息流式生成，每解析完一道题就推送一道
+     * @param request
+     * @return 题目流
+     */
+    Flux<QuestionImportVo> aiGenerateQuestionsStream(AiGenerateRequestVo request);
+
+    /**
+     * ai题目信息拆分并行生成，用于大批量生成
+     *   按类型和数量拆分成多个子请求并行执行，标题在本次生成结果和题库之间去重
+     * @param request
+     * @return 每生成一道题推送一次（question不为空），每个子请求结束推送一次进度（question为空），全部子请求失败时以错误结束
+     */
+    Flux<AiGenerateProgressVo> aiGenerateQuestionsFanOut(AiGenerateRequestVo request);
+
+    /**
+     * 非阻塞调用kimi模型
+     *   所有kimi请求共用一个令牌桶限流，失败后按指数退避重试，整个过程不占用调用线程
+     * @param prompt 提示词
+     * @return 模型返回的content
+     */
+    Mono<String> callKimiAiAsync(String prompt);
+}
@@ -1,10 +1,32 @@
 package com.atguigu.exam.service;
 
 
+import com.atguigu.exam.entity.AnswerRecord;
+import com.atguigu.exam.entity.Question;
+import reactor.core.publisher.Mono;
+
 /**
  * Kimi AI判卷服务
  * 使用Kimi API进行智能批改和点评
  */
 
 public interface KimiGradingService {
-} 
\ No newline at end of file
+
+    /**
+     * 提交一场考试的简答题AI批阅任务，立即返回
+     *   后台按配置的并发数批阅，批阅完成后更新答题记录的得分、批改意见和考试记录的总分、状态
+     * @param examRecordId 考试记录id
+     * @return false 表示该考试记录已经在批阅队列中
+     */
+    boolean submitGradingJob(Long examRecordId);
+
+    /**
+     * 非阻塞批阅一道简答题
+     *   答案先放入该题目的批次，和其他考生的答案合并成一个请求批阅
+     *   给答题记录填充score、isCorrect、aiCorrection
+     * @param question 题目（包含参考答案和试卷中的分值）
+     * @param answerRecord 答题记录
+     * @return 批阅后的答题记录，批阅失败时为空
+     */
+    Mono<AnswerRecord> gradeTextAnswer(Question question, AnswerRecord answerRecord);
+}
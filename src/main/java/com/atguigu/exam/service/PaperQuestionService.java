@@ -1,13 +1,35 @@
 package com.atguigu.exam.service;
 
 import com.atguigu.exam.entity.PaperQuestion;
+import com.atguigu.exam.mapper.PaperQuestionMapper;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 
 @Service
+@RequiredArgsConstructor
 public class PaperQuestionService {
+
+    private final PaperQuestionMapper paperQuestionMapper;
+
+    /**
+     * 批量插入试卷题目（一条insert语句）
+     * @param paperQuestionList 试卷题目集合
+     */
     public void saveBatch(List<PaperQuestion> paperQuestionList) {
+        if (paperQuestionList == null || paperQuestionList.isEmpty()) {
+            return;
+        }
+        paperQuestionMapper.insertBatchSomeColumn(paperQuestionList);
+    }
 
+    /**
+     * 删除试卷的所有题目
+     * @param paperId 试卷id
+     */
+    public void removeByPaperId(Integer paperId) {
+        paperQuestionMapper.delete(new LambdaQueryWrapper<PaperQuestion>().eq(PaperQuestion::getPaperId, paperId));
     }
 }
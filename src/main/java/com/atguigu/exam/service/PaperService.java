@@ -1,6 +1,10 @@
 package com.atguigu.exam.service;
 
 import com.atguigu.exam.entity.Paper;
+import com.atguigu.exam.utils.PrecompressedJson;
+import com.atguigu.exam.vo.AiPaperVo;
+import com.atguigu.exam.vo.PaperAssembleResultVo;
+import com.atguigu.exam.vo.PaperAssembleVo;
 import com.atguigu.exam.vo.PaperVo;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -20,10 +24,69 @@ public interface PaperService extends IService<Paper> {
      */
     Paper customPaperDetailById(Long id);
 
+    /**
+     * 根据试卷id查询学生版试卷详情（考试使用）
+     *    和试卷详情相同，但题目不包含答案，选项不包含isCorrect
+     * @param id 试卷id
+     * @return 学生版试卷（缓存共享对象，不能修改）
+     */
+    Paper customStudentPaperById(Long id);
+
+    /**
+     * 查询学生版试卷的预序列化、预压缩JSON（考试开始时直接写入响应）
+     *    试卷发布时生成，缓存未命中时重新生成
+     * @param id 试卷id
+     * @return 预压缩的学生版试卷JSON和ETag
+     */
+    PrecompressedJson customStudentPaperPayload(Long id);
+
+    /**
+     * 修改试卷状态
+     *    发布（PUBLISHED）时校验试卷中有题目，事务提交后生成学生版试卷的预压缩JSON
+     * @param id 试卷id
+     * @param status 新的状态 DRAFT/PUBLISHED/STOPPED
+     */
+    void customUpdatePaperStatus(Long id, String status);
+
+    /**
+     * 修改试卷
+     *    修改名字 描述 时间，传了题目配置时重建试卷题目并重新计算总题目数和总分数
+     *    事务提交后删除试卷详情缓存
+     * @param id 试卷id
+     * @param paperVo 试卷修改数据
+     * @return 修改后的试卷（不包含题目）
+     */
+    Paper customUpdatePaper(Long id, PaperVo paperVo);
+
+    /**
+     * 删除试卷详情缓存和学生版试卷预压缩JSON（本实例L1、redis L2，并通知其他实例删除L1）
+     *    在事务中调用时事务提交后才删除
+     * @param paperId 试卷id
+     */
+    void evictPaperDetail(Long paperId);
+
     /**
      * 手动组卷
      * @param paperVo
      * @return
      */
     Paper customCreatePaper(PaperVo paperVo);
+
+    /**
+     * 按规则智能组卷
+     *    每条规则按 题型、分类、难度 从抽样索引中等概率抽取指定数量的题目，规则之间题目不重复
+     *    任意一条规则满足条件的题目不足时组卷失败
+     * @param aiPaperVo 试卷信息和组卷规则
+     * @return 创建好的试卷（草稿状态，不包含题目）
+     */
+    Paper customCreatePaperWithAi(AiPaperVo aiPaperVo);
+
+    /**
+     * 约束组卷
+     *    从抽样索引的快照中按 总分、题型数量、难度分布、分类覆盖 多线程并行搜索，时间上限内返回最优的一组题目
+     *    题目分数使用题目的默认分值，目标无法全部满足时返回最接近的试卷
+     * @param paperAssembleVo 试卷信息和组卷目标
+     * @return 创建好的试卷和各项目标的完成情况
+     */
+    PaperAssembleResultVo customAssemblePaper(PaperAssembleVo paperAssembleVo);
 }
\ No newline at end of file
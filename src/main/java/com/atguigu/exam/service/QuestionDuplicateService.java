@@ -0,0 +1,59 @@
+package com.atguigu.exam.service;
+
+import com.atguigu.exam.entity.Question;
+import com.atguigu.exam.vo.QuestionDuplicateClusterVo;
+
+import java.util.List;
+
+/**
+ * 相似题目检测服务接口
+ *   本地内存SimHash索引（标题 + 选项内容），标点、空白、全角半角、选项顺序不同的题目视为相似
+ *   启动时从数据库重建，题目新增、修改、删除后增量更新，用于导入和AI生成时的查重
+ */
+public interface QuestionDuplicateService {
+
+    /**
+     * 索引是否可用（启动重建完成前不可用，调用方只做标题完全相同的查重）
+     */
+    boolean isReady();
+
+    /**
+     * 查找题库中同类型的相似题目
+     * @param type 题目类型
+     * @param title 题目标题
+     * @param choices 选项内容，可以为空
+     * @return 最相似的题目id，没有相似题目时返回null
+     */
+    Long findDuplicate(String type, String title, List<String> choices);
+
+    /**
+     * 新增或更新题目的指纹（需要包含选项内容）
+     * @param question 题目
+     */
+    void index(Question question);
+
+    /**
+     * 批量新增或更新题目的指纹
+     * @param questions 题目集合
+     */
+    void indexBatch(List<Question> questions);
+
+    /**
+     * 删除题目的指纹
+     * @param questionId 题目id
+     */
+    void remove(Long questionId);
+
+    /**
+     * 从数据库重建索引，重建完成后替换旧索引
+     */
+    void rebuild();
+
+    /**
+     * 题库中的相似题目分组（同类型，相似关系传递：A像B、B像C时ABC为一组）
+     * @param maxDistance 指纹最大海明距离，为空时使用配置值
+     * @param limit 最多返回的分组数，按分组题目数倒序
+     * @return 相似题目分组
+     */
+    List<QuestionDuplicateClusterVo> findClusters(Integer maxDistance, Integer limit);
+}
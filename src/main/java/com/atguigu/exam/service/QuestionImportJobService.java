@@ -0,0 +1,35 @@
+package com.atguigu.exam.service;
+
+import com.atguigu.exam.vo.QuestionImportJobVo;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+/**
+ * Excel题目导入任务服务
+ *   上传后立即返回任务id，后台按 解析 -> 校验 -> 写入 三个阶段流水线导入
+ */
+public interface QuestionImportJobService {
+
+    /**
+     * 提交Excel导入任务
+     *   文件和格式校验后保存为临时文件，任务进入导入线程池排队
+     * @param file Excel文件
+     * @return 任务id
+     */
+    String submitExcelImport(MultipartFile file) throws IOException;
+
+    /**
+     * 查询导入任务进度
+     * @param jobId 任务id
+     * @return 各阶段处理数量和任务状态
+     */
+    QuestionImportJobVo getJob(String jobId);
+
+    /**
+     * 生成导入任务的失败明细Excel
+     * @param jobId 任务id
+     * @return Excel文件字节数组
+     */
+    byte[] generateErrorReport(String jobId) throws IOException;
+}
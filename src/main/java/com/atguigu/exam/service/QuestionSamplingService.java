@@ -0,0 +1,72 @@
+package com.atguigu.exam.service;
+
+import com.atguigu.exam.entity.Question;
+import com.atguigu.exam.utils.PaperAssembler;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 题目随机抽样服务接口
+ *   本地内存中按 (分类, 题型, 难度) 分桶保存题目id和分值，随机抽题、按规则组卷和约束组卷不查询数据库排序
+ *   启动时从数据库重建，题目新增、修改、删除后增量更新
+ */
+public interface QuestionSamplingService {
+
+    /**
+     * 索引是否可用（启动重建完成前不可用）
+     */
+    boolean isReady();
+
+    /**
+     * 统计满足条件的题目数
+     * @param categoryIds 分类id集合，为空时不限制分类
+     * @param type 题型，为空时不限制
+     * @param difficulty 难度，为空时不限制
+     * @return 题目数
+     */
+    int count(Collection<Long> categoryIds, String type, String difficulty);
+
+    /**
+     * 等概率不放回随机抽取题目id
+     * @param categoryIds 分类id集合，为空时不限制分类
+     * @param type 题型，为空时不限制
+     * @param difficulty 难度，为空时不限制
+     * @param count 抽取数量，题目不足时返回全部满足条件的题目
+     * @param excludeIds 不能抽取的题目id（同一试卷其他规则已经抽中的题目），可以为空
+     * @return 随机顺序的题目id
+     */
+    List<Long> sample(Collection<Long> categoryIds, String type, String difficulty, int count, Set<Long> excludeIds);
+
+    /**
+     * 满足条件的全部题目（id、分值、题型、难度、分类）的列式快照，组卷求解使用
+     * @param categoryIds 分类id集合，为空时不限制分类
+     * @param types 题型集合，为空时不限制题型
+     * @return 候选题目池（分值不大于0的题目不包含在内）
+     */
+    PaperAssembler.Pool snapshot(Collection<Long> categoryIds, Collection<String> types);
+
+    /**
+     * 新增或更新题目（分类、题型、难度、分值可能变化）
+     * @param question 题目
+     */
+    void index(Question question);
+
+    /**
+     * 批量添加新插入的题目（不检查是否已经存在）
+     * @param questions 新插入的题目集合
+     */
+    void indexBatch(List<Question> questions);
+
+    /**
+     * 删除题目
+     * @param questionId 题目id
+     */
+    void remove(Long questionId);
+
+    /**
+     * 从数据库重建索引，重建完成后替换旧索引
+     */
+    void rebuild();
+}
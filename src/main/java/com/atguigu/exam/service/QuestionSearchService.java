@@ -0,0 +1,61 @@
+package com.atguigu.exam.service;
+
+import com.atguigu.exam.entity.Question;
+
+import java.util.List;
+
+/**
+ * 题目全文检索服务接口
+ *   本地内存倒排索引，索引题目标题、解析和选项内容，替代 like '%keyword%' 全表扫描
+ *   启动时从数据库重建，题目新增、修改、删除后增量更新
+ */
+public interface QuestionSearchService {
+
+    /**
+     * 检索结果
+     * @param total 命中的题目总数
+     * @param ids 本页题目id（按相关度从高到低）
+     */
+    record SearchResult(long total, List<Long> ids) {
+    }
+
+    /**
+     * 索引是否可用（启动重建完成前不可用，调用方使用数据库查询）
+     */
+    boolean isReady();
+
+    /**
+     * 关键字检索，按相关度排序（标题命中权重最高），相关度相同时新题目在前
+     * @param keyword 关键字
+     * @param type 题型，可选
+     * @param difficulty 难度，可选
+     * @param categoryId 分类id，可选
+     * @param offset 跳过的结果数
+     * @param limit 返回的结果数
+     * @return 命中总数和本页题目id
+     */
+    SearchResult search(String keyword, String type, String difficulty, Long categoryId, long offset, int limit);
+
+    /**
+     * 新增或更新题目的索引（需要包含选项内容）
+     * @param question 题目
+     */
+    void index(Question question);
+
+    /**
+     * 批量新增或更新题目的索引
+     * @param questions 题目集合
+     */
+    void indexBatch(List<Question> questions);
+
+    /**
+     * 删除题目的索引
+     * @param questionId 题目id
+     */
+    void remove(Long questionId);
+
+    /**
+     * 从数据库重建索引，重建完成后替换旧索引
+     */
+    void rebuild();
+}
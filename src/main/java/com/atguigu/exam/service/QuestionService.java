@@ -1,6 +1,9 @@
 package com.atguigu.exam.service;
 
 import com.atguigu.exam.entity.Question;
+import com.atguigu.exam.vo.CursorPageResult;
+import com.atguigu.exam.vo.QuestionImportResultVo;
+import com.atguigu.exam.vo.ExcelPreviewVo;
 import com.atguigu.exam.vo.QuestionImportVo;
 import com.atguigu.exam.vo.QuestionQueryVo;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
@@ -8,7 +11,9 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 题目业务服务接口 - 定义题目相关的业务逻辑
@@ -42,6 +47,17 @@ public interface QuestionService extends IService<Question> {
      */
     void customPageJavaService(Page<Question> pageBean, QuestionQueryVo questionPageVo);
 
+    /**
+     * 游标分页查询题目列表（按创建时间倒序，不使用offset）
+     * @param questionQueryVo 查询条件
+     * @param cursor 上一页返回的游标，第一页为空
+     * @param size 每页大小
+     * @param withTotal 是否返回总数（按查询条件缓存的近似值）
+     * @return 本页题目（含选项和答案）和下一页游标
+     */
+    CursorPageResult<Question> customCursorPageQuestions(QuestionQueryVo questionQueryVo, String cursor,
+                                                        Integer size, boolean withTotal);
+
     /**
      * 自定义查询单个题目详情
      * @param id
@@ -89,14 +105,33 @@ public interface QuestionService extends IService<Question> {
      */
     List<Question> customFindPopularQuestions(Integer size);
 
+    /**
+     * 刷新热门题目
+     *   本地缓冲的浏览次数写入排行，移除排行中已经被删除的题目，清空组装好的热门题目缓存
+     * @return 排行中的题目数
+     */
+    Integer customRefreshPopularQuestions();
+
+    /**
+     * 随机抽取题目（等概率、不重复），包含选项和答案
+     *    从内存抽样索引中抽取题目id，再按id查询题目
+     * @param count 题目数量
+     * @param categoryId 分类id，可选
+     * @param difficulty 难度，可选
+     * @param type 题型，可选
+     * @return 随机顺序的题目集合，满足条件的题目不足时返回全部
+     */
+    List<Question> customRandomQuestions(Integer count, Long categoryId, String difficulty, String type);
+
     /**
      * 解析并预览Excel文件中的题目内容，不会导入到数据库
      *   文件和格式校验
-     *   文件解析处理
+     *   文件流式解析处理，只保留前limit道题目，其余只计数
      * @param file
-     * @return
+     * @param limit 返回的题目数，为空时使用配置的默认值
+     * @return 前limit道题目和题目总数
      */
-    List<QuestionImportVo> preViewExcel(MultipartFile file) throws IOException;
+    ExcelPreviewVo preViewExcel(MultipartFile file, Integer limit) throws IOException;
 
     /**
      * 【方法重载】
@@ -106,4 +141,30 @@ public interface QuestionService extends IService<Question> {
      * @return Excel导入完成！成功导入 %d [工程导入] / %d [题目总数] 道题目
      */
     String importBatchQuestions(List<QuestionImportVo> questionImportVoList) throws IOException;
-}
\ No newline at end of file
+
+    /**
+     * 批量题目导入（集合操作）
+     *   按批次查重和批量插入，返回每一行的导入结果
+     * @param questionImportVoList
+     * @return 导入结果（成功数、失败明细）
+     */
+    QuestionImportResultVo customBulkImportQuestions(List<QuestionImportVo> questionImportVoList);
+
+    /**
+     * 导入一批已经校验过的题目（Excel导入任务的写入阶段调用）
+     *   一次查重 + 一个事务批量插入，失败时逐题保存
+     * @param questionImportVoList 本批题目
+     * @param rowNumbers 每道题目在Excel中的行号，失败明细中使用
+     * @param importedKeys 本次导入中已经出现过的 类型:标题，跨批次查重
+     * @return 本批导入结果
+     */
+    QuestionImportResultVo customImportChunk(List<QuestionImportVo> questionImportVoList, List<Integer> rowNumbers, Set<String> importedKeys);
+
+    /**
+     * 导出题目（包含选项和答案）到Excel
+     *   按id游标分页查询，流式写入输出流，导出的列和导入模板一致
+     * @param questionQueryVo 筛选条件（分类、难度、题型、关键词）
+     * @param out 输出流
+     */
+    void customExportQuestions(QuestionQueryVo questionQueryVo, OutputStream out) throws IOException;
+}
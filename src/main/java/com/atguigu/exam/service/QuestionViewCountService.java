@@ -0,0 +1,31 @@
+package com.atguigu.exam.service;
+
+import com.atguigu.exam.common.CacheConstants;
+
+/**
+ * 浏览次数统计服务接口（题目、视频）
+ *   浏览次数先在本地内存中累加，定时合并成一次redis管道写入热门排行的计数桶
+ */
+public interface QuestionViewCountService {
+
+    /**
+     * 记录一次题目浏览（只累加本地计数器，不访问redis）
+     * @param questionId 题目id
+     */
+    default void increment(Long questionId) {
+        increment(CacheConstants.TRENDING_QUESTION, questionId);
+    }
+
+    /**
+     * 记录一次浏览（只累加本地计数器，不访问redis）
+     * @param type 排行类型，见 CacheConstants.TRENDING_QUESTION / TRENDING_VIDEO
+     * @param id 题目id或视频id
+     */
+    void increment(String type, Long id);
+
+    /**
+     * 把本地累加的浏览次数写入redis热门排行
+     *   定时执行，缓冲的元素数超过上限和应用关闭时也会执行
+     */
+    void flush();
+}
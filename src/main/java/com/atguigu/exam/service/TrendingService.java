@@ -0,0 +1,41 @@
+package com.atguigu.exam.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 热门排行服务接口
+ *   按小时分桶累计浏览次数，按时间衰减合并最近N小时的计数桶生成排行
+ *   type区分排行的业务类型，见 CacheConstants.TRENDING_QUESTION / TRENDING_VIDEO
+ */
+public interface TrendingService {
+
+    /**
+     * 累加当前小时计数桶中的浏览次数（一次管道写入）
+     * @param type 排行类型
+     * @param deltas id -> 增加的浏览次数
+     */
+    void record(String type, Map<Long, Long> deltas);
+
+    /**
+     * 查询排行前N的id（按衰减后的分数从高到低）
+     * @param type 排行类型
+     * @param limit 数量
+     * @return id集合
+     */
+    List<Long> topIds(String type, int limit);
+
+    /**
+     * 立即合并窗口内的计数桶，重新生成排行
+     * @param type 排行类型
+     */
+    void rebuild(String type);
+
+    /**
+     * 从窗口内的所有计数桶和排行中删除指定id（例如题目被删除）
+     * @param type 排行类型
+     * @param ids id集合
+     */
+    void remove(String type, Collection<Long> ids);
+}
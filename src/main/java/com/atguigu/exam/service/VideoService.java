@@ -1,6 +1,7 @@
 package com.atguigu.exam.service;
 
 import com.atguigu.exam.entity.Video;
+import com.atguigu.exam.vo.CursorPageResult;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -26,6 +27,19 @@ public interface VideoService {
      * @return 视频分页结果
      */
     IPage<Video> getPublishedVideos(Integer page, Integer size, Long categoryId, String keyword, HttpServletRequest request);
+
+    /**
+     * 游标分页获取已发布的视频列表（按发布时间倒序，不使用offset）
+     * @param cursor 上一页返回的游标，第一页为空
+     * @param size 每页大小
+     * @param categoryId 分类ID（可选）
+     * @param keyword 搜索关键字（可选）
+     * @param withTotal 是否返回总数（按查询条件缓存的近似值）
+     * @param request HTTP请求（用于获取用户IP）
+     * @return 本页视频和下一页游标
+     */
+    CursorPageResult<Video> getPublishedVideosByCursor(String cursor, Integer size, Long categoryId, String keyword,
+                                                       boolean withTotal, HttpServletRequest request);
     
     /**
      * 获取视频详情（含用户点赞状态）
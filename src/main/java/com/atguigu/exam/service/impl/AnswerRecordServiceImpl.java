@@ -0,0 +1,159 @@
+package com.atguigu.exam.service.impl;
+
+import com.atguigu.exam.config.properties.ExamProperties;
+import com.atguigu.exam.entity.AnswerRecord;
+import com.atguigu.exam.mapper.AnswerRecordMapper;
+import com.atguigu.exam.service.AnswerRecordService;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 答题记录服务实现类
+ *
+ * 写后队列设计：
+ *   交卷线程只把本场考试的答题记录放入队列就返回
+ *   后台写入线程从队列中取出多场考试的答题记录，攒够batchSize行或者等待超过lingerMs后合并成一个批次
+ *   一个批次在一个事务中通过insertBatchSomeColumn多行插入，数据库往返次数 = 总行数 / batchSize
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnswerRecordServiceImpl extends ServiceImpl<AnswerRecordMapper, AnswerRecord> implements AnswerRecordService {
+
+    private final ExamProperties examProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    private BlockingQueue<PendingAnswers> queue;
+    private Thread writerThread;
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void startWriter() {
+        queue = new ArrayBlockingQueue<>(examProperties.getAnswerQueueCapacity());
+        writerThread = new Thread(this::runWriter, "answer-record-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * 停机前把队列中剩余的答题记录全部写完
+     */
+    @PreDestroy
+    public void stopWriter() throws InterruptedException {
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        List<PendingAnswers> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            writeBatch(rest);
+        }
+    }
+
+    @Override
+    public void customSaveBatch(List<AnswerRecord> answerRecords) {
+        if (answerRecords == null || answerRecords.isEmpty()) {
+            return;
+        }
+        int batchSize = examProperties.getAnswerBatchSize();
+        for (int from = 0; from < answerRecords.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, answerRecords.size());
+            baseMapper.insertBatchSomeColumn(answerRecords.subList(from, to));
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> asyncSaveBatch(List<AnswerRecord> answerRecords) {
+        PendingAnswers pending = new PendingAnswers(answerRecords, new CompletableFuture<>());
+        if (answerRecords == null || answerRecords.isEmpty()) {
+            pending.future.complete(null);
+            return pending.future;
+        }
+        if (!running || !queue.offer(pending)) {
+            //队列已满（或正在停机），交卷线程直接写入，形成背压
+            log.warn("答题记录写入队列已满，本次{}条答题记录同步写入！", answerRecords.size());
+            writeBatch(List.of(pending));
+        }
+        return pending.future;
+    }
+
+    private void runWriter() {
+        int batchSize = examProperties.getAnswerBatchSize();
+        long lingerNanos = TimeUnit.MILLISECONDS.toNanos(examProperties.getAnswerBatchLingerMs());
+        List<PendingAnswers> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingAnswers first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                int rows = first.records.size();
+                //攒批：行数够了或者等待时间到了就写
+                long lingerDeadline = System.nanoTime() + lingerNanos;
+                while (rows < batchSize) {
+                    long remaining = lingerDeadline - System.nanoTime();
+                    PendingAnswers next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    rows += next.records.size();
+                }
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("答题记录写入线程异常：{}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 写入一个批次
+     *   整批一个事务，失败后逐场考试重试，避免一场考试的脏数据拖累整个批次
+     */
+    private void writeBatch(List<PendingAnswers> batch) {
+        List<AnswerRecord> all = new ArrayList<>();
+        for (PendingAnswers pending : batch) {
+            all.addAll(pending.records);
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> customSaveBatch(all));
+            batch.forEach(pending -> pending.future.complete(null));
+            log.debug("批量写入答题记录成功，考试数：{}，行数：{}", batch.size(), all.size());
+        } catch (Exception e) {
+            log.warn("批量写入答题记录失败，逐场考试重试！考试数：{}，原因：{}", batch.size(), e.getMessage());
+            for (PendingAnswers pending : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> customSaveBatch(pending.records));
+                    pending.future.complete(null);
+                } catch (Exception ex) {
+                    log.error("考试记录：{} 的答题记录写入失败！原因：{}",
+                            pending.records.get(0).getExamRecordId(), ex.getMessage());
+                    pending.future.completeExceptionally(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * 队列中的一场考试的答题记录
+     */
+    private record PendingAnswers(List<AnswerRecord> records, CompletableFuture<Void> future) {
+    }
+}
@@ -0,0 +1,283 @@
+package com.atguigu.exam.service.impl;
+
+import com.atguigu.exam.common.CacheConstants;
+import com.atguigu.exam.config.properties.PaperProperties;
+import com.atguigu.exam.entity.AnswerRecord;
+import com.atguigu.exam.entity.ExamRecord;
+import com.atguigu.exam.entity.Question;
+import com.atguigu.exam.mapper.ExamRecordMapper;
+import com.atguigu.exam.mapper.QuestionMapper;
+import com.atguigu.exam.service.AnswerRecordService;
+import com.atguigu.exam.service.ExamGradingService;
+import com.atguigu.exam.service.KimiGradingService;
+import com.atguigu.exam.utils.LocalCacheEvictor;
+import com.atguigu.exam.utils.PaperShuffler;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 判卷服务实现类
+ *
+ * 答案编译：
+ *   每张试卷第一次判分时，把 question_answers.answer 编译成按题目id排序的数组，按试卷id缓存
+ *   选择题 "A,C" -> 位掩码 0b101；判断题 TRUE -> 0b01，FALSE -> 0b10
+ *   判分时学生答案同样解析成位掩码，只做位运算比较，不创建对象，也不访问数据库
+ *   开启题目打乱时，学生答案是展示顺序的字母，按考试记录id重新计算选项排列，把掩码映射回原始字母后再比较
+ *   编译结果放在有容量上限和过期时间的本地缓存中，试卷或题目修改的事务提交后删除，并广播通知其他实例删除
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExamGradingServiceImpl implements ExamGradingService {
+
+    private static final byte TYPE_CHOICE = 0;
+    private static final byte TYPE_JUDGE = 1;
+    private static final byte TYPE_TEXT = 2;
+
+    private static final int JUDGE_TRUE = 1;
+    private static final int JUDGE_FALSE = 2;
+
+    private final QuestionMapper questionMapper;
+    private final ExamRecordMapper examRecordMapper;
+    private final AnswerRecordService answerRecordService;
+    private final KimiGradingService kimiGradingService;
+    private final PaperProperties paperProperties;
+    private final LocalCacheEvictor localCacheEvictor;
+
+    /**
+     * 已编译的试卷答案 key = 试卷id
+     */
+    private Cache<Long, PaperAnswerKey> answerKeyCache;
+
+    @PostConstruct
+    public void initAnswerKeyCache() {
+        answerKeyCache = Caffeine.newBuilder()
+                .maximumSize(paperProperties.getAnswerKeyCacheSize())
+                .expireAfterWrite(Duration.ofMinutes(paperProperties.getAnswerKeyCacheMinutes()))
+                .build();
+        localCacheEvictor.subscribe(CacheConstants.ANSWER_KEY_EVICT_CHANNEL, answerKeyCache::invalidate);
+    }
+
+    @Override
+    public int gradeObjective(Integer paperId, List<AnswerRecord> answerRecords, boolean shuffled) {
+        if (answerRecords == null || answerRecords.isEmpty()) {
+            return 0;
+        }
+        PaperAnswerKey answerKey = getAnswerKey(Long.valueOf(paperId));
+        int[] scratch = shuffled ? new int[PaperShuffler.MAX_CHOICES] : null;
+        int totalScore = 0;
+        for (AnswerRecord answerRecord : answerRecords) {
+            int index = answerKey.indexOf(answerRecord.getQuestionId());
+            if (index < 0) {
+                //答了不属于这张试卷的题目，不得分
+                answerRecord.setScore(0);
+                answerRecord.setIsCorrect(0);
+                continue;
+            }
+            byte type = answerKey.types[index];
+            if (type == TYPE_TEXT) {
+                continue;
+            }
+            int selected = type == TYPE_CHOICE ? parseChoiceMask(answerRecord.getUserAnswer())
+                    : parseJudgeMask(answerRecord.getUserAnswer());
+            if (shuffled && type == TYPE_CHOICE && answerRecord.getExamRecordId() != null) {
+                selected = PaperShuffler.toCanonicalMask(selected, answerRecord.getExamRecordId(),
+                        answerKey.questionIds[index], answerKey.choiceCounts[index], scratch);
+            }
+            int correct = answerKey.masks[index];
+            int fullScore = answerKey.scores[index];
+            if (selected != 0 && selected == correct) {
+                answerRecord.setIsCorrect(1);
+                answerRecord.setScore(fullScore);
+            } else if (selected != 0 && answerKey.multi[index] && (selected & ~correct) == 0) {
+                //多选题少选且没有错选：部分正确，按选对的比例给分（向下取整）
+                answerRecord.setIsCorrect(2);
+                answerRecord.setScore(fullScore * Integer.bitCount(selected) / Integer.bitCount(correct));
+            } else {
+                answerRecord.setIsCorrect(0);
+                answerRecord.setScore(0);
+            }
+            totalScore += answerRecord.getScore();
+        }
+        return totalScore;
+    }
+
+    @Override
+    public boolean hasSubjective(Integer paperId, List<AnswerRecord> answerRecords) {
+        if (answerRecords == null || answerRecords.isEmpty()) {
+            return false;
+        }
+        PaperAnswerKey answerKey = getAnswerKey(Long.valueOf(paperId));
+        for (AnswerRecord answerRecord : answerRecords) {
+            int index = answerKey.indexOf(answerRecord.getQuestionId());
+            if (index >= 0 && answerKey.types[index] == TYPE_TEXT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public ExamRecord customGradeExam(Long examRecordId) {
+        //1. 校验考试记录
+        ExamRecord examRecord = examRecordMapper.selectById(examRecordId);
+        if (examRecord == null) {
+            throw new RuntimeException("考试记录：%s 不存在，无法批阅！".formatted(examRecordId));
+        }
+        if ("进行中".equals(examRecord.getStatus())) {
+            throw new RuntimeException("考试记录：%s 还没有交卷，无法批阅！".formatted(examRecordId));
+        }
+        //2. 查询答题记录并进行客观题判分
+        List<AnswerRecord> answerRecords = answerRecordService.list(
+                new LambdaQueryWrapper<AnswerRecord>().eq(AnswerRecord::getExamRecordId, examRecordId));
+        int objectiveScore = gradeObjective(examRecord.getExamId(), answerRecords, Boolean.TRUE.equals(examRecord.getShuffled()));
+        //3. 更新答题记录和考试记录
+        if (!answerRecords.isEmpty()) {
+            answerRecordService.updateBatchById(answerRecords);
+        }
+        int subjectiveScore = answerRecords.stream()
+                .filter(answerRecord -> isSubjective(examRecord.getExamId(), answerRecord) && answerRecord.getScore() != null)
+                .mapToInt(AnswerRecord::getScore).sum();
+        examRecord.setScore(objectiveScore + subjectiveScore);
+        boolean subjective = hasSubjective(examRecord.getExamId(), answerRecords);
+        if (!subjective) {
+            examRecord.setStatus("已批阅");
+        }
+        examRecordMapper.updateById(examRecord);
+        log.info("考试记录：{} 客观题判分完成，客观题得分：{}，状态：{}", examRecordId, objectiveScore, examRecord.getStatus());
+        //4. 简答题交给AI批阅流水线，不等待结果
+        if (subjective) {
+            kimiGradingService.submitGradingJob(examRecordId);
+        }
+        examRecord.setAnswerRecords(answerRecords);
+        return examRecord;
+    }
+
+    @Override
+    public void evictAnswerKey(Long paperId) {
+        localCacheEvictor.evictAfterCommit(CacheConstants.ANSWER_KEY_EVICT_CHANNEL, paperId,
+                () -> answerKeyCache.invalidate(paperId));
+    }
+
+    private boolean isSubjective(Integer paperId, AnswerRecord answerRecord) {
+        PaperAnswerKey answerKey = getAnswerKey(Long.valueOf(paperId));
+        int index = answerKey.indexOf(answerRecord.getQuestionId());
+        return index >= 0 && answerKey.types[index] == TYPE_TEXT;
+    }
+
+    private PaperAnswerKey getAnswerKey(Long paperId) {
+        //Caffeine保证同一张试卷并发判分时只编译一次
+        return answerKeyCache.get(paperId, this::compileAnswerKey);
+    }
+
+    /**
+     * 编译试卷答案
+     */
+    private PaperAnswerKey compileAnswerKey(Long paperId) {
+        List<Question> questionList = questionMapper.customQueryQuestionListByPaperId(paperId);
+        questionList.sort(Comparator.comparing(Question::getId));
+        int size = questionList.size();
+        PaperAnswerKey answerKey = new PaperAnswerKey(size);
+        for (int i = 0; i < size; i++) {
+            Question question = questionList.get(i);
+            answerKey.questionIds[i] = question.getId();
+            String answer = question.getAnswer() == null ? null : question.getAnswer().getAnswer();
+            switch (question.getType()) {
+                case "CHOICE" -> {
+                    answerKey.types[i] = TYPE_CHOICE;
+                    answerKey.masks[i] = parseChoiceMask(answer);
+                    answerKey.multi[i] = Boolean.TRUE.equals(question.getMulti()) || Integer.bitCount(answerKey.masks[i]) > 1;
+                    answerKey.choiceCounts[i] = question.getChoices() == null ? 0
+                            : (byte) Math.min(question.getChoices().size(), PaperShuffler.MAX_CHOICES);
+                }
+                case "JUDGE" -> {
+                    answerKey.types[i] = TYPE_JUDGE;
+                    answerKey.masks[i] = parseJudgeMask(answer);
+                }
+                default -> answerKey.types[i] = TYPE_TEXT;
+            }
+            BigDecimal score = question.getPaperScore() != null ? question.getPaperScore()
+                    : BigDecimal.valueOf(question.getScore() == null ? 0 : question.getScore());
+            answerKey.scores[i] = score.setScale(0, RoundingMode.HALF_UP).intValue();
+        }
+        log.debug("试卷：{} 答案编译完成，题目数：{}", paperId, size);
+        return answerKey;
+    }
+
+    /**
+     * 选择题答案解析成位掩码 "A,C" / "AC" / "a c" -> 0b101
+     */
+    static int parseChoiceMask(String answer) {
+        if (answer == null) {
+            return 0;
+        }
+        int mask = 0;
+        for (int i = 0; i < answer.length(); i++) {
+            char c = answer.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                mask |= 1 << (c - 'A');
+            } else if (c >= 'a' && c <= 'z') {
+                mask |= 1 << (c - 'a');
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 判断题答案解析成位掩码 TRUE/T/对/正确/是/√ -> 0b01，FALSE/F/错/错误/否/× -> 0b10
+     */
+    static int parseJudgeMask(String answer) {
+        if (answer == null) {
+            return 0;
+        }
+        for (int i = 0; i < answer.length(); i++) {
+            char c = answer.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            return switch (c) {
+                case 'T', 't', '对', '正', '是', '√', '1' -> JUDGE_TRUE;
+                case 'F', 'f', '错', '否', '×', '0' -> JUDGE_FALSE;
+                default -> 0;
+            };
+        }
+        return 0;
+    }
+
+    /**
+     * 一张试卷编译后的答案，按题目id升序的并列数组
+     */
+    private static final class PaperAnswerKey {
+        private final long[] questionIds;
+        private final byte[] types;
+        private final int[] masks;
+        private final boolean[] multi;
+        private final int[] scores;
+        private final byte[] choiceCounts;
+
+        private PaperAnswerKey(int size) {
+            this.questionIds = new long[size];
+            this.types = new byte[size];
+            this.masks = new int[size];
+            this.multi = new boolean[size];
+            this.scores = new int[size];
+            this.choiceCounts = new byte[size];
+        }
+
+        private int indexOf(Integer questionId) {
+            return questionId == null ? -1 : Arrays.binarySearch(questionIds, questionId.longValue());
+        }
+    }
+}
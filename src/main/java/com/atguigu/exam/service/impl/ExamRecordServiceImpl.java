@@ -1,20 +1,189 @@
 package com.atguigu.exam.service.impl;
 
+import com.atguigu.exam.common.CacheConstants;
+import com.atguigu.exam.config.properties.ExamProperties;
 import com.atguigu.exam.entity.ExamRecord;
+import com.atguigu.exam.entity.Paper;
 import com.atguigu.exam.mapper.ExamRecordMapper;
+import com.atguigu.exam.mapper.PaperMapper;
 import com.atguigu.exam.service.ExamRecordService;
+import com.atguigu.exam.utils.ExcelUtil;
+import com.atguigu.exam.utils.PageCursor;
+import com.atguigu.exam.vo.CursorPageResult;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.ObjectUtils;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 考试记录Service实现类
  * 实现考试记录相关的业务逻辑
  */
+@Slf4j
 @Service
+@RequiredArgsConstructor
 public class ExamRecordServiceImpl extends ServiceImpl<ExamRecordMapper, ExamRecord> implements ExamRecordService {
-    
 
-} 
\ No newline at end of file
+    /**
+     * 考试状态参数 0/1/2 对应的状态值
+     */
+    private static final String[] STATUS_NAMES = {"进行中", "已完成", "已批阅"};
+
+    private final PaperMapper paperMapper;
+    private final ExamProperties examProperties;
+
+    /**
+     * 游标分页的总数 key = 查询条件
+     */
+    private final Cache<String, Long> countCache = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(Duration.ofSeconds(CacheConstants.LIST_COUNT_CACHE_SECONDS))
+            .build();
+
+    @Override
+    public void customExportExamRecords(Integer paperId, String studentName, Integer status,
+                                        String startDate, String endDate, OutputStream out) throws IOException {
+        int pageSize = examProperties.getExportPageSize();
+        //试卷名称按页补充，试卷数量远小于考试记录数，缓存整个导出过程
+        Map<Long, String> paperNames = new HashMap<>();
+        SXSSFWorkbook workbook = ExcelUtil.createStreamingWorkbook();
+        int rowIndex = 1;
+        try {
+            Sheet sheet = workbook.createSheet("考试记录");
+            ExcelUtil.writeRow(sheet, 0, "考试记录ID", "试卷ID", "试卷名称", "考生姓名", "得分", "状态",
+                    "开始时间", "结束时间", "窗口切换次数");
+            long lastId = 0;
+            while (true) {
+                //id游标分页：where id > lastId order by id limit pageSize，不用offset，每一页的查询代价相同
+                List<ExamRecord> examRecords = list(buildQueryWrapper(paperId, studentName, status, startDate, endDate)
+                        .select(ExamRecord::getId, ExamRecord::getExamId, ExamRecord::getStudentName, ExamRecord::getScore,
+                                ExamRecord::getStatus, ExamRecord::getStartTime, ExamRecord::getEndTime, ExamRecord::getWindowSwitches)
+                        .gt(ExamRecord::getId, lastId)
+                        .orderByAsc(ExamRecord::getId)
+                        .last("limit " + pageSize));
+                if (examRecords.isEmpty()) {
+                    break;
+                }
+                fillPaperNames(examRecords, paperNames);
+                for (ExamRecord examRecord : examRecords) {
+                    Long examId = examRecord.getExamId() == null ? null : examRecord.getExamId().longValue();
+                    ExcelUtil.writeRow(sheet, rowIndex++, examRecord.getId(), examRecord.getExamId(), paperNames.get(examId),
+                            examRecord.getStudentName(), examRecord.getScore(), examRecord.getStatus(),
+                            examRecord.getStartTime(), examRecord.getEndTime(), examRecord.getWindowSwitches());
+                }
+                lastId = examRecords.get(examRecords.size() - 1).getId();
+                if (examRecords.size() < pageSize) {
+                    break;
+                }
+            }
+            ExcelUtil.writeStreamingWorkbook(workbook, out);
+        } finally {
+            //导出中途异常（查询失败、客户端断开）时也删除临时文件
+            ExcelUtil.disposeStreamingWorkbook(workbook);
+        }
+        log.info("导出考试记录完成！导出数量：{}", rowIndex - 1);
+    }
+
+    @Override
+    public Page<ExamRecord> customPageExamRecords(Page<ExamRecord> pageBean, String studentName, Integer status,
+                                                  String startDate, String endDate) {
+        page(pageBean, buildQueryWrapper(null, studentName, status, startDate, endDate)
+                .orderByDesc(ExamRecord::getCreateTime).orderByDesc(ExamRecord::getId));
+        fillPapers(pageBean.getRecords());
+        return pageBean;
+    }
+
+    @Override
+    public CursorPageResult<ExamRecord> customCursorPageExamRecords(String cursor, Integer size, String studentName, Integer status,
+                                                                   String startDate, String endDate, boolean withTotal) {
+        int limit = CursorPageResult.limitSize(size);
+        PageCursor pageCursor = PageCursor.parse(cursor);
+        //1. 从游标位置往后查询 limit + 1 条（多出的一条用来判断是否有下一页），不统计总数
+        LambdaQueryWrapper<ExamRecord> queryWrapper = buildQueryWrapper(null, studentName, status, startDate, endDate);
+        if (pageCursor != null) {
+            Date time = pageCursor.toDate();
+            queryWrapper.and(wrapper -> wrapper.lt(ExamRecord::getCreateTime, time)
+                    .or(orWrapper -> orWrapper.eq(ExamRecord::getCreateTime, time).lt(ExamRecord::getId, pageCursor.id())));
+        }
+        queryWrapper.orderByDesc(ExamRecord::getCreateTime).orderByDesc(ExamRecord::getId).last("limit " + (limit + 1));
+        List<ExamRecord> examRecords = list(queryWrapper);
+        //2. 需要总数时按查询条件缓存，不是每一页都count
+        Long total = withTotal ? countCache.get(String.join(":", String.valueOf(studentName), String.valueOf(status),
+                        String.valueOf(startDate), String.valueOf(endDate)),
+                key -> count(buildQueryWrapper(null, studentName, status, startDate, endDate))) : null;
+        CursorPageResult<ExamRecord> result = CursorPageResult.of(examRecords, limit,
+                examRecord -> PageCursor.encode(examRecord.getCreateTime(), examRecord.getId()), total);
+        fillPapers(result.getRecords());
+        return result;
+    }
+
+    /**
+     * 考试记录的查询条件（试卷、考生姓名、状态、考试开始日期范围）
+     */
+    private LambdaQueryWrapper<ExamRecord> buildQueryWrapper(Integer paperId, String studentName, Integer status,
+                                                             String startDate, String endDate) {
+        String statusName = status != null && status >= 0 && status < STATUS_NAMES.length ? STATUS_NAMES[status] : null;
+        return new LambdaQueryWrapper<ExamRecord>()
+                .eq(paperId != null, ExamRecord::getExamId, paperId)
+                .like(!ObjectUtils.isEmpty(studentName), ExamRecord::getStudentName, studentName)
+                .eq(statusName != null, ExamRecord::getStatus, statusName)
+                .ge(!ObjectUtils.isEmpty(startDate), ExamRecord::getStartTime,
+                        ObjectUtils.isEmpty(startDate) ? null : LocalDate.parse(startDate).atStartOfDay())
+                .lt(!ObjectUtils.isEmpty(endDate), ExamRecord::getStartTime,
+                        ObjectUtils.isEmpty(endDate) ? null : LocalDate.parse(endDate).plusDays(1).atStartOfDay());
+    }
+
+    /**
+     * 给本页考试记录填充试卷（只有id和名称，一次in查询）
+     */
+    private void fillPapers(List<ExamRecord> examRecords) {
+        Map<Long, String> paperNames = new HashMap<>();
+        fillPaperNames(examRecords, paperNames);
+        for (ExamRecord examRecord : examRecords) {
+            if (examRecord.getExamId() == null) {
+                continue;
+            }
+            Paper paper = new Paper();
+            paper.setId(examRecord.getExamId().longValue());
+            paper.setName(paperNames.get(paper.getId()));
+            examRecord.setPaper(paper);
+        }
+    }
+
+    /**
+     * 查询本页中还没有查询过的试卷名称（一次in查询）
+     */
+    private void fillPaperNames(List<ExamRecord> examRecords, Map<Long, String> paperNames) {
+        Set<Long> paperIds = examRecords.stream()
+                .filter(examRecord -> examRecord.getExamId() != null)
+                .map(examRecord -> examRecord.getExamId().longValue())
+                .filter(id -> !paperNames.containsKey(id))
+                .collect(Collectors.toSet());
+        if (paperIds.isEmpty()) {
+            return;
+        }
+        paperMapper.selectList(new LambdaQueryWrapper<Paper>().select(Paper::getId, Paper::getName).in(Paper::getId, paperIds))
+                .forEach(paper -> paperNames.put(paper.getId(), paper.getName()));
+        //已删除的试卷也记录下来，避免每页重复查询
+        paperIds.forEach(id -> paperNames.putIfAbsent(id, null));
+    }
+}
@@ -1,18 +1,386 @@
 package com.atguigu.exam.service.impl;
 
+import com.alibaba.fastjson.JSON;
+import com.atguigu.exam.common.CacheConstants;
+import com.atguigu.exam.config.properties.ExamProperties;
+import com.atguigu.exam.config.properties.PaperProperties;
+import com.atguigu.exam.entity.AnswerRecord;
 import com.atguigu.exam.entity.ExamRecord;
+import com.atguigu.exam.entity.Paper;
 import com.atguigu.exam.mapper.ExamRecordMapper;
+import com.atguigu.exam.service.AnswerRecordService;
+import com.atguigu.exam.service.ExamGradingService;
 import com.atguigu.exam.service.ExamService;
+import com.atguigu.exam.service.KimiGradingService;
+import com.atguigu.exam.service.PaperService;
+import com.atguigu.exam.utils.PaperShuffler;
+import com.atguigu.exam.utils.RedisUtils;
+import com.atguigu.exam.vo.PaperShuffleVo;
+import com.atguigu.exam.vo.StartExamVo;
+import com.atguigu.exam.vo.SubmitAnswerVo;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 /**
  * 考试服务实现类
+ *
+ * 考试会话设计：
+ *   考试进行中的所有数据（答案、切屏次数、截止时间）都保存在redis hash中
+ *   key = exam_record:detail:{考试记录id}
+ *   field: paperId / studentName / startTime / deadline / windowSwitches / shuffled / endTime / answer:{题目id}
+ *   考试过程中的保存只写redis，交卷或超时的时候一次性更新exam_records，answer_record交给写后队列批量插入
+ *   截止时间额外记录在 exam_record:deadline 的zset中，用于扫描超时未交卷的考试
+ *   保存答案、切屏计数用lua脚本在一次调用中检查deadline并写入，会话不存在或已关闭时不写入（不会留下没有过期时间的会话）
+ *   交卷时用lua脚本把deadline改为-1（会话关闭，不能再作答）并读取全部答案，关闭和读取之间不会再有答案写入，
+ *   答题记录写入成功后才删除会话，
+ *   写入失败时按交卷时间重新加入zset，由超时扫描从会话重新落库
+ *   重试依赖会话中的答案：每次关闭和写入失败时会话续期 sessionExtraTtlMinutes，
+ *   连续失败超过该时间没有重试时会话过期，答案只保留在 exam_records.answers 中，需要人工补录答题记录
+ *   写入完成后的回调（删除会话、提交AI批阅）在单独的线程中执行，不占用答题记录的写入线程
  */
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class ExamServiceImpl extends ServiceImpl<ExamRecordMapper, ExamRecord> implements ExamService {
 
-} 
\ No newline at end of file
+    private static final String FIELD_PAPER_ID = "paperId";
+    private static final String FIELD_STUDENT_NAME = "studentName";
+    private static final String FIELD_START_TIME = "startTime";
+    private static final String FIELD_DEADLINE = "deadline";
+    private static final String FIELD_WINDOW_SWITCHES = "windowSwitches";
+    private static final String FIELD_SHUFFLED = "shuffled";
+    private static final String FIELD_END_TIME = "endTime";
+    private static final String FIELD_ANSWER_PREFIX = "answer:";
+
+    /**
+     * 会话进行中且截止时间不早于 ARGV[1] 时写入 ARGV[2..] 的field和值
+     *   返回 -1：会话不存在或已关闭，0：超过截止时间，1：写入成功
+     */
+    private static final RedisScript<Long> SAVE_ANSWERS_SCRIPT = new DefaultRedisScript<>("""
+            local deadline = tonumber(redis.call('HGET', KEYS[1], 'deadline'))
+            if not deadline or deadline < 0 then return -1 end
+            if deadline < tonumber(ARGV[1]) then return 0 end
+            for i = 2, #ARGV, 2 do
+                redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+            end
+            return 1
+            """, Long.class);
+
+    /**
+     * 会话进行中时切屏次数加1，返回累计次数；会话不存在或已关闭时返回 -1
+     */
+    private static final RedisScript<Long> WINDOW_SWITCH_SCRIPT = new DefaultRedisScript<>("""
+            local deadline = tonumber(redis.call('HGET', KEYS[1], 'deadline'))
+            if not deadline or deadline < 0 then return -1 end
+            return redis.call('HINCRBY', KEYS[1], 'windowSwitches', 1)
+            """, Long.class);
+
+    /**
+     * 关闭会话并返回会话的全部内容（会话不存在时返回空）
+     *   第一次关闭时记录交卷时间：超时交卷（ARGV[2] = 1）为截止时间，否则为 ARGV[1]；重试时沿用第一次的交卷时间
+     *   deadline 改为 -1，过期时间改为 ARGV[3] 秒
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLOSE_SESSION_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then return {} end
+            if redis.call('HEXISTS', KEYS[1], 'endTime') == 0 then
+                local deadline = redis.call('HGET', KEYS[1], 'deadline')
+                if ARGV[2] == '1' and deadline and tonumber(deadline) >= 0 then
+                    redis.call('HSET', KEYS[1], 'endTime', deadline)
+                else
+                    redis.call('HSET', KEYS[1], 'endTime', ARGV[1])
+                end
+            end
+            redis.call('HSET', KEYS[1], 'deadline', '-1')
+            redis.call('EXPIRE', KEYS[1], ARGV[3])
+            return redis.call('HGETALL', KEYS[1])
+            """, List.class);
+
+    private final PaperService paperService;
+    private final AnswerRecordService answerRecordService;
+    private final ExamGradingService examGradingService;
+    private final KimiGradingService kimiGradingService;
+    private final RedisUtils redisUtils;
+    private final ExamProperties examProperties;
+    private final PaperProperties paperProperties;
+
+    /**
+     * 答题记录写入完成后的回调线程（删除会话、重新加入zset、提交AI批阅）
+     */
+    private ExecutorService flushCallbackExecutor;
+
+    @PostConstruct
+    public void startFlushCallbackExecutor() {
+        flushCallbackExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "exam-flush-callback");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stopFlushCallbackExecutor() {
+        flushCallbackExecutor.shutdown();
+    }
+
+    @Override
+    public ExamRecord customStartExam(StartExamVo startExamVo) {
+        //1. 查询学生版试卷详情（不含答案，走缓存），没有题目的试卷不能考试
+        Paper paper = paperService.customStudentPaperById(Long.valueOf(startExamVo.getPaperId()));
+        if (ObjectUtils.isEmpty(paper.getQuestions())) {
+            throw new RuntimeException("试卷：%s 中没有题目，无法开始考试！".formatted(paper.getName()));
+        }
+        //2. 创建考试记录（整场考试中唯一的一次插入），是否打乱在开始时确定并记录，之后切换开关不影响判卷
+        boolean shuffled = Boolean.TRUE.equals(paperProperties.getShuffleEnabled());
+        LocalDateTime startTime = LocalDateTime.now();
+        ExamRecord examRecord = new ExamRecord();
+        examRecord.setExamId(startExamVo.getPaperId());
+        examRecord.setStudentName(startExamVo.getStudentName());
+        examRecord.setStartTime(startTime);
+        examRecord.setStatus("进行中");
+        examRecord.setWindowSwitches(0);
+        examRecord.setShuffled(shuffled);
+        save(examRecord);
+
+        //3. 创建redis考试会话
+        int duration = paper.getDuration() == null || paper.getDuration() <= 0
+                ? examProperties.getDefaultDurationMinutes() : paper.getDuration();
+        long startMillis = toMillis(startTime);
+        long deadline = startMillis + duration * 60_000L;
+        Map<String, Object> session = new HashMap<>();
+        session.put(FIELD_PAPER_ID, startExamVo.getPaperId());
+        session.put(FIELD_STUDENT_NAME, startExamVo.getStudentName());
+        session.put(FIELD_START_TIME, startMillis);
+        session.put(FIELD_DEADLINE, deadline);
+        session.put(FIELD_WINDOW_SWITCHES, 0);
+        session.put(FIELD_SHUFFLED, shuffled ? 1 : 0);
+        String sessionKey = sessionKey(examRecord.getId());
+        redisUtils.hSetAll(sessionKey, session);
+        redisUtils.expire(sessionKey, duration * 60L + examProperties.getSessionExtraTtlMinutes() * 60L);
+        redisUtils.zAdd(CacheConstants.EXAM_RECORD_DEADLINE_KEY, String.valueOf(examRecord.getId()), deadline);
+        log.info("考生：{} 开始考试，试卷id：{}，考试记录id：{}，截止时间：{}",
+                startExamVo.getStudentName(), startExamVo.getPaperId(), examRecord.getId(), toLocalDateTime(deadline));
+
+        //4. 开启打乱时生成本场考试的题目和选项顺序（只生成索引，缓存中的试卷不复制）
+        if (shuffled) {
+            examRecord.setShuffle(PaperShuffler.shuffle(examRecord.getId(), paper));
+        }
+        examRecord.setPaper(paper);
+        return examRecord;
+    }
+
+    @Override
+    public void customSaveAnswer(Long examRecordId, SubmitAnswerVo submitAnswerVo) {
+        long result = saveAnswers(examRecordId, List.of(submitAnswerVo), System.currentTimeMillis());
+        if (result == 0) {
+            throw new RuntimeException("考试记录：%s 已经超过截止时间，无法继续作答！".formatted(examRecordId));
+        }
+    }
+
+    @Override
+    public Long customRecordWindowSwitch(Long examRecordId) {
+        Long windowSwitches = redisUtils.executeForLong(WINDOW_SWITCH_SCRIPT, List.of(sessionKey(examRecordId)));
+        if (windowSwitches == null || windowSwitches < 0) {
+            throw new RuntimeException("考试记录：%s 不存在或者考试已经结束！".formatted(examRecordId));
+        }
+        return windowSwitches;
+    }
+
+    @Override
+    public void customSubmitAnswers(Long examRecordId, List<SubmitAnswerVo> answers) {
+        //1. 在截止时间（含宽限时间）内提交的答案合并到会话中，超时提交的答案忽略，以已保存的为准
+        if (!ObjectUtils.isEmpty(answers)) {
+            long result = saveAnswers(examRecordId, answers,
+                    System.currentTimeMillis() - examProperties.getSubmitGraceSeconds() * 1000L);
+            if (result == 0) {
+                log.warn("考试记录：{} 超过截止时间提交，本次提交的答案被忽略！", examRecordId);
+            }
+        }
+        //2. 落库
+        if (!flushSession(examRecordId, false)) {
+            throw new RuntimeException("考试记录：%s 已经交卷，请勿重复提交！".formatted(examRecordId));
+        }
+    }
+
+    @Override
+    public PaperShuffleVo customGetShuffle(Long examRecordId) {
+        Map<Object, Object> session = redisUtils.hGetAll(sessionKey(examRecordId));
+        Object deadline = session == null ? null : session.get(FIELD_DEADLINE);
+        if (deadline == null || ((Number) deadline).longValue() < 0) {
+            throw new RuntimeException("考试记录：%s 不存在或者考试已经结束！".formatted(examRecordId));
+        }
+        if (!(session.get(FIELD_SHUFFLED) instanceof Number shuffled) || shuffled.intValue() != 1) {
+            return null;
+        }
+        //排列只和考试记录id、试卷有关，重新计算和开始考试时返回的相同
+        Paper paper = paperService.customStudentPaperById(((Number) session.get(FIELD_PAPER_ID)).longValue());
+        return PaperShuffler.shuffle(examRecordId, paper);
+    }
+
+    /**
+     * 扫描已经超过截止时间（含宽限时间）仍未交卷的考试，自动交卷
+     */
+    @Scheduled(fixedDelayString = "${exam.timeout-scan-interval-ms:5000}")
+    public void flushTimeoutSessions() {
+        long maxDeadline = System.currentTimeMillis() - examProperties.getSubmitGraceSeconds() * 1000L;
+        Set<Object> timeoutIds = redisUtils.zRangeByScore(CacheConstants.EXAM_RECORD_DEADLINE_KEY, 0, maxDeadline);
+        if (timeoutIds == null || timeoutIds.isEmpty()) {
+            return;
+        }
+        for (Object id : timeoutIds) {
+            try {
+                flushSession(Long.valueOf(id.toString()), true);
+            } catch (Exception e) {
+                log.error("考试记录：{} 超时自动交卷失败，下次扫描重试！原因：{}", id, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 将redis中的考试会话一次性写入数据库
+     *   通过从截止时间zset中删除考试记录id来抢占交卷权，保证交卷和超时扫描（包括多实例）只会有一方落库
+     *   答题记录写入失败时重新加入zset，超时扫描再次调用本方法重试（交卷时间以第一次落库时为准）
+     * @param examRecordId 考试记录id
+     * @param timeout 是否超时自动交卷
+     * @return false 表示已经被其他请求落库
+     */
+    private boolean flushSession(Long examRecordId, boolean timeout) {
+        Long claimed = redisUtils.zRemove(CacheConstants.EXAM_RECORD_DEADLINE_KEY, String.valueOf(examRecordId));
+        if (claimed == null || claimed == 0) {
+            return false;
+        }
+        //0. 关闭会话并读取答案：之后不能再保存答案，会话保留到答题记录写入成功（失败重试需要会话中的答案）
+        String sessionKey = sessionKey(examRecordId);
+        Map<Object, Object> session;
+        try {
+            session = redisUtils.executeForHash(CLOSE_SESSION_SCRIPT, List.of(sessionKey),
+                    System.currentTimeMillis(), timeout ? 1 : 0, examProperties.getSessionExtraTtlMinutes() * 60L);
+        } catch (RuntimeException e) {
+            redisUtils.zAdd(CacheConstants.EXAM_RECORD_DEADLINE_KEY, String.valueOf(examRecordId), System.currentTimeMillis());
+            throw e;
+        }
+        if (session.isEmpty()) {
+            log.error("考试记录：{} 的考试会话已经过期，答案无法落库！", examRecordId);
+            throw new RuntimeException("考试记录：%s 的考试会话已经过期，交卷失败！".formatted(examRecordId));
+        }
+        long endMillis = ((Number) session.get(FIELD_END_TIME)).longValue();
+        try {
+            //1. 解析会话中的答案（按题目id排序，保证落库顺序稳定）
+            List<SubmitAnswerVo> answers = new ArrayList<>();
+            for (Map.Entry<Object, Object> entry : session.entrySet()) {
+                String field = entry.getKey().toString();
+                if (field.startsWith(FIELD_ANSWER_PREFIX)) {
+                    SubmitAnswerVo answer = new SubmitAnswerVo();
+                    answer.setQuestionId(Integer.valueOf(field.substring(FIELD_ANSWER_PREFIX.length())));
+                    answer.setUserAnswer(entry.getValue() == null ? "" : entry.getValue().toString());
+                    answers.add(answer);
+                }
+            }
+            answers.sort(Comparator.comparing(SubmitAnswerVo::getQuestionId));
+
+            //2. 生成答题记录并在内存中完成客观题判分
+            Integer paperId = ((Number) session.get(FIELD_PAPER_ID)).intValue();
+            List<AnswerRecord> answerRecords = new ArrayList<>(answers.size());
+            for (SubmitAnswerVo answer : answers) {
+                answerRecords.add(new AnswerRecord(examRecordId.intValue(), answer.getQuestionId(), answer.getUserAnswer()));
+            }
+            Object shuffled = session.get(FIELD_SHUFFLED);
+            int objectiveScore = examGradingService.gradeObjective(paperId, answerRecords,
+                    shuffled instanceof Number number && number.intValue() == 1);
+
+            //3. 完善考试记录（没有简答题的考试交卷即批阅完成）
+            ExamRecord examRecord = new ExamRecord();
+            examRecord.setId(examRecordId);
+            examRecord.setEndTime(toLocalDateTime(endMillis));
+            examRecord.setScore(objectiveScore);
+            boolean subjective = examGradingService.hasSubjective(paperId, answerRecords);
+            examRecord.setStatus(subjective ? "已完成" : "已批阅");
+            examRecord.setAnswers(JSON.toJSONString(answers));
+            Object windowSwitches = session.get(FIELD_WINDOW_SWITCHES);
+            examRecord.setWindowSwitches(windowSwitches == null ? 0 : ((Number) windowSwitches).intValue());
+
+            //4. 考试记录同步更新（answers字段已经保存了完整答案），答题记录交给写后队列合并批量插入
+            //   答题记录写入成功后删除会话，有简答题的考试自动提交AI批阅
+            updateById(examRecord);
+            answerRecordService.asyncSaveBatch(answerRecords).whenCompleteAsync((unused, ex) -> {
+                if (ex != null) {
+                    //整场考试的答题记录在一个事务中写入，失败时没有残留，会话续期并归还交卷权，由超时扫描重试
+                    log.error("考试记录：{} 的答题记录写入失败，等待超时扫描重试！原因：{}", examRecordId, ex.getMessage());
+                    try {
+                        redisUtils.expire(sessionKey, examProperties.getSessionExtraTtlMinutes() * 60L);
+                        redisUtils.zAdd(CacheConstants.EXAM_RECORD_DEADLINE_KEY, String.valueOf(examRecordId), endMillis);
+                    } catch (Exception e) {
+                        log.error("考试记录：{} 归还交卷权失败，答题记录需要人工补录！", examRecordId, e);
+                    }
+                    return;
+                }
+                try {
+                    redisUtils.delete(sessionKey);
+                } catch (Exception e) {
+                    //会话已经关闭，等待自动过期
+                    log.warn("考试记录：{} 删除考试会话失败！原因：{}", examRecordId, e.getMessage());
+                }
+                if (subjective) {
+                    try {
+                        kimiGradingService.submitGradingJob(examRecordId);
+                    } catch (Exception e) {
+                        log.error("考试记录：{} 提交AI批阅失败，需要重新批阅！原因：{}", examRecordId, e.getMessage());
+                    }
+                }
+            }, flushCallbackExecutor);
+        } catch (RuntimeException e) {
+            //落库失败，归还交卷权，交给超时扫描重试
+            redisUtils.zAdd(CacheConstants.EXAM_RECORD_DEADLINE_KEY, String.valueOf(examRecordId), endMillis);
+            throw e;
+        }
+        log.info("考试记录：{} {}成功，答题记录已进入批量写入队列！", examRecordId, timeout ? "超时自动交卷" : "交卷");
+        return true;
+    }
+
+    /**
+     * 截止时间不早于 minDeadline 时把答案写入会话（检查和写入是一次lua调用）
+     * @return 0 表示已经超过截止时间，答案没有写入
+     */
+    private long saveAnswers(Long examRecordId, List<SubmitAnswerVo> answers, long minDeadline) {
+        Object[] args = new Object[answers.size() * 2 + 1];
+        args[0] = minDeadline;
+        for (int i = 0; i < answers.size(); i++) {
+            SubmitAnswerVo answer = answers.get(i);
+            args[i * 2 + 1] = FIELD_ANSWER_PREFIX + answer.getQuestionId();
+            args[i * 2 + 2] = redisUtils.serializeHashValue(answer.getUserAnswer() == null ? "" : answer.getUserAnswer());
+        }
+        Long result = redisUtils.executeForLong(SAVE_ANSWERS_SCRIPT, List.of(sessionKey(examRecordId)), args);
+        if (result == null || result < 0) {
+            throw new RuntimeException("考试记录：%s 不存在或者考试已经结束！".formatted(examRecordId));
+        }
+        return result;
+    }
+
+    private String sessionKey(Long examRecordId) {
+        return CacheConstants.EXAM_RECORD_DETAIL_KEY + examRecordId;
+    }
+
+    private long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,121 @@
+package com.atguigu.exam.service.impl;
+
+import com.atguigu.exam.common.CacheConstants;
+import com.atguigu.exam.config.properties.GradingProperties;
+import com.atguigu.exam.entity.PaperQuestion;
+import com.atguigu.exam.mapper.PaperQuestionMapper;
+import com.atguigu.exam.service.GradingCacheService;
+import com.atguigu.exam.utils.RedisUtils;
+import com.atguigu.exam.utils.TextUtils;
+import com.atguigu.exam.vo.GradingResultVo;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * AI批阅结果缓存服务实现类
+ *
+ * 两级缓存：
+ *   L1 Caffeine 本实例内存，L2 redis 多实例共享
+ *   key = grading:result:{题目id}:{版本}:{满分}:{归一化答案md5}（TextUtils.normalizeLoose，只合并空白、大小写和全角，保留符号）
+ *   版本保存在redis hash grading:version 中（field = 题目id），本地缓存versionCacheSeconds秒
+ *   升级版本后key整体变化，旧结果不会再被命中，等待过期即可，不需要逐个删除
+ * 命中率通过actuator的 /actuator/metrics/grading.cache.requests 查看（tag result = l1/l2/miss）
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GradingCacheServiceImpl implements GradingCacheService {
+
+    private final RedisUtils redisUtils;
+    private final PaperQuestionMapper paperQuestionMapper;
+    private final GradingProperties gradingProperties;
+    private final MeterRegistry meterRegistry;
+
+    private Cache<String, GradingResultVo> resultCache;
+    private Cache<Long, Long> versionCache;
+    private Counter l1HitCounter;
+    private Counter l2HitCounter;
+    private Counter missCounter;
+
+    @PostConstruct
+    public void init() {
+        resultCache = Caffeine.newBuilder()
+                .maximumSize(gradingProperties.getResultCacheL1Size())
+                .expireAfterWrite(Duration.ofMinutes(gradingProperties.getResultCacheL1Minutes()))
+                .build();
+        versionCache = Caffeine.newBuilder()
+                .maximumSize(gradingProperties.getResultCacheL1Size())
+                .expireAfterWrite(Duration.ofSeconds(gradingProperties.getVersionCacheSeconds()))
+                .build();
+        l1HitCounter = meterRegistry.counter("grading.cache.requests", "result", "l1");
+        l2HitCounter = meterRegistry.counter("grading.cache.requests", "result", "l2");
+        missCounter = meterRegistry.counter("grading.cache.requests", "result", "miss");
+    }
+
+    @Override
+    public GradingResultVo get(Long questionId, int fullScore, String userAnswer) {
+        if (!gradingProperties.getResultCacheEnabled()) {
+            return null;
+        }
+        String key = resultKey(questionId, fullScore, userAnswer);
+        GradingResultVo result = resultCache.getIfPresent(key);
+        if (result != null) {
+            l1HitCounter.increment();
+            return result;
+        }
+        Object cached = redisUtils.get(key);
+        if (cached instanceof GradingResultVo redisResult) {
+            l2HitCounter.increment();
+            resultCache.put(key, redisResult);
+            return redisResult;
+        }
+        missCounter.increment();
+        return null;
+    }
+
+    @Override
+    public void put(Long questionId, int fullScore, String userAnswer, GradingResultVo result) {
+        if (!gradingProperties.getResultCacheEnabled()) {
+            return;
+        }
+        String key = resultKey(questionId, fullScore, userAnswer);
+        resultCache.put(key, result);
+        redisUtils.set(key, result, gradingProperties.getResultCacheTtlHours() * 3600L);
+    }
+
+    @Override
+    public void bumpVersion(Long questionId) {
+        Long version = redisUtils.hIncrement(CacheConstants.GRADING_VERSION_KEY, String.valueOf(questionId), 1);
+        versionCache.put(questionId, version);
+        log.info("题目：{} 的评分标准版本升级为：{}，之前的AI批阅缓存失效", questionId, version);
+    }
+
+    @Override
+    public void bumpPaperVersion(Long paperId) {
+        paperQuestionMapper.selectList(new LambdaQueryWrapper<PaperQuestion>().eq(PaperQuestion::getPaperId, paperId))
+                .forEach(paperQuestion -> bumpVersion(paperQuestion.getQuestionId()));
+    }
+
+    private String resultKey(Long questionId, int fullScore, String userAnswer) {
+        String digest = DigestUtils.md5DigestAsHex(TextUtils.normalizeLoose(userAnswer).getBytes(StandardCharsets.UTF_8));
+        return CacheConstants.GRADING_RESULT_KEY + questionId + ":" + version(questionId) + ":" + fullScore + ":" + digest;
+    }
+
+    private long version(Long questionId) {
+        return versionCache.get(questionId, id -> {
+            Object version = redisUtils.hGet(CacheConstants.GRADING_VERSION_KEY, String.valueOf(id));
+            return version == null ? 0L : ((Number) version).longValue();
+        });
+    }
+}
@@ -0,0 +1,156 @@
+package com.atguigu.exam.service.impl;
+
+import com.atguigu.exam.config.properties.GradingProperties;
+import com.atguigu.exam.entity.AnswerRecord;
+import com.atguigu.exam.entity.Question;
+import com.atguigu.exam.service.KeywordGradingService;
+import com.atguigu.exam.utils.AhoCorasick;
+import com.atguigu.exam.utils.TextUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * 简答题关键词预评分服务实现类
+ *
+ * 评分规则：
+ *   关键词和答案都先归一化（小写、去空白和标点）
+ *   关键词原样出现在答案中（Aho-Corasick一次扫描）记1分
+ *   没有原样出现的关键词，按关键词的二元组（相邻两个字）在答案中出现的比例记部分分，兼容"线程安全"答成"线程是安全的"
+ *   覆盖率 = 关键词得分之和 / 关键词数
+ *   覆盖率 <= preScoreLow 或 >= preScoreHigh 时按覆盖率给分，中间的不确定区间交给AI
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KeywordGradingServiceImpl implements KeywordGradingService {
+
+    private final GradingProperties gradingProperties;
+
+    /**
+     * 已编译的关键词 key = 题目id
+     */
+    private Cache<Long, CompiledKeywords> keywordCache;
+
+    @PostConstruct
+    public void initKeywordCache() {
+        keywordCache = Caffeine.newBuilder()
+                .maximumSize(gradingProperties.getKeywordCacheSize())
+                .expireAfterWrite(Duration.ofMinutes(gradingProperties.getKeywordCacheMinutes()))
+                .build();
+    }
+
+    @Override
+    public boolean preGrade(Question question, AnswerRecord answerRecord, int fullScore) {
+        if (!gradingProperties.getPreScoreEnabled() || question.getAnswer() == null
+                || ObjectUtils.isEmpty(question.getAnswer().getKeywords())) {
+            return false;
+        }
+        CompiledKeywords compiled = getCompiledKeywords(question);
+        if (compiled.keywords().length == 0) {
+            return false;
+        }
+        String answer = TextUtils.normalize(answerRecord.getUserAnswer());
+        double coverage = coverage(compiled, answer);
+        if (coverage > gradingProperties.getPreScoreLow() && coverage < gradingProperties.getPreScoreHigh()) {
+            return false;
+        }
+        int score = (int) Math.round(fullScore * coverage);
+        answerRecord.setScore(score);
+        answerRecord.setIsCorrect(score == fullScore ? 1 : score == 0 ? 0 : 2);
+        answerRecord.setAiCorrection("【关键词评分】关键词覆盖率%d%%".formatted(Math.round(coverage * 100)));
+        log.debug("考试记录：{} 题目：{} 关键词预评分，覆盖率：{}，得分：{}",
+                answerRecord.getExamRecordId(), answerRecord.getQuestionId(), coverage, score);
+        return true;
+    }
+
+    /**
+     * 计算关键词覆盖率
+     */
+    private double coverage(CompiledKeywords compiled, String answer) {
+        String[] keywords = compiled.keywords();
+        boolean[] exact = compiled.automaton().match(answer);
+        Set<Integer> answerBigrams = null;
+        double total = 0;
+        for (int k = 0; k < keywords.length; k++) {
+            if (exact[k]) {
+                total += 1;
+                continue;
+            }
+            int[] keywordBigrams = compiled.bigrams()[k];
+            if (keywordBigrams.length == 0) {
+                continue;
+            }
+            //只有存在未原样命中的关键词时才计算答案的二元组
+            if (answerBigrams == null) {
+                answerBigrams = new HashSet<>(answer.length() * 2);
+                for (int i = 0; i + 1 < answer.length(); i++) {
+                    answerBigrams.add(TextUtils.bigram(answer.charAt(i), answer.charAt(i + 1)));
+                }
+            }
+            int hit = 0;
+            for (int bigram : keywordBigrams) {
+                if (answerBigrams.contains(bigram)) {
+                    hit++;
+                }
+            }
+            total += (double) hit / keywordBigrams.length;
+        }
+        return total / keywords.length;
+    }
+
+    /**
+     * 获取编译后的关键词，关键词被修改过时重新编译
+     */
+    private CompiledKeywords getCompiledKeywords(Question question) {
+        String source = question.getAnswer().getKeywords();
+        CompiledKeywords compiled = keywordCache.getIfPresent(question.getId());
+        if (compiled == null || !compiled.source().equals(source)) {
+            compiled = compile(source);
+            keywordCache.put(question.getId(), compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * 编译关键词：拆分、归一化、去重，构建自动机和每个关键词的汉字二元组
+     *   关键词之间可以用逗号、顿号、分号或空白分隔
+     */
+    private CompiledKeywords compile(String source) {
+        Set<String> keywordSet = new LinkedHashSet<>();
+        for (String keyword : source.split("[,，、;；|\\s]+")) {
+            String normalized = TextUtils.normalize(keyword);
+            if (!normalized.isEmpty()) {
+                keywordSet.add(normalized);
+            }
+        }
+        String[] keywords = keywordSet.toArray(new String[0]);
+        int[][] bigrams = new int[keywords.length][];
+        for (int k = 0; k < keywords.length; k++) {
+            String keyword = keywords[k];
+            //只对汉字关键词做二元组部分匹配，英文单词必须原样出现
+            if (keyword.length() < 3 || !TextUtils.isCjk(keyword.charAt(0))) {
+                bigrams[k] = new int[0];
+                continue;
+            }
+            bigrams[k] = new int[keyword.length() - 1];
+            for (int i = 0; i + 1 < keyword.length(); i++) {
+                bigrams[k][i] = TextUtils.bigram(keyword.charAt(i), keyword.charAt(i + 1));
+            }
+        }
+        return new CompiledKeywords(source, keywords, new AhoCorasick(Arrays.asList(keywords)), bigrams);
+    }
+
+    /**
+     * 一道题编译后的关键词
+     */
+    private record CompiledKeywords(String source, String[] keywords, AhoCorasick automaton, int[][] bigrams) {
+    }
+}
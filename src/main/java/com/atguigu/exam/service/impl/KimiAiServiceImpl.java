@@ -4,20 +4,39 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.atguigu.exam.config.properties.KimiProperties;
+import com.atguigu.exam.config.properties.QuestionProperties;
+import com.atguigu.exam.entity.Question;
+import com.atguigu.exam.mapper.QuestionMapper;
 import com.atguigu.exam.service.KimiAiService;
+import com.atguigu.exam.service.QuestionDuplicateService;
+import com.atguigu.exam.utils.JsonObjectStreamParser;
+import com.atguigu.exam.utils.SimHashIndex;
+import com.atguigu.exam.utils.TextUtils;
+import com.atguigu.exam.utils.TokenBucket;
+import com.atguigu.exam.vo.AiGenerateProgressVo;
 import com.atguigu.exam.vo.AiGenerateRequestVo;
 import com.atguigu.exam.vo.QuestionImportVo;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Kimi AI服务实现类
@@ -29,6 +48,19 @@ import java.util.*;
 public class KimiAiServiceImpl implements KimiAiService {
     private final WebClient webClient;
     private final KimiProperties kimiProperties;
+    private final QuestionMapper questionMapper;
+    private final QuestionDuplicateService questionDuplicateService;
+    private final QuestionProperties questionProperties;
+
+    /**
+     * 所有kimi请求共用的令牌桶
+     */
+    private TokenBucket tokenBucket;
+
+    @PostConstruct
+    public void initTokenBucket() {
+        tokenBucket = new TokenBucket(kimiProperties.getRatePerSecond(), kimiProperties.getBurst());
+    }
 
     /**
      * ai题目信息生成
@@ -37,7 +69,13 @@ public class KimiAiServiceImpl implements KimiAiService {
      */
     @Override
     public List<QuestionImportVo> aiGenerateQuestions(AiGenerateRequestVo request) throws InterruptedException {
-        //1. 校验工作
+        //1. 校验工作：超过单次生成数量的请求拆分成子请求并行生成
+        if (request.getCount() > kimiProperties.getGenerateChunkSize()) {
+            return aiGenerateQuestionsFanOut(request)
+                    .mapNotNull(AiGenerateProgressVo::getQuestion)
+                    .collectList()
+                    .block();
+        }
         //2. 调用方法生成提示词
         String prompt = buildPrompt(request);
         //3. 调用kimi调用方法获取结果
@@ -61,34 +99,16 @@ public class KimiAiServiceImpl implements KimiAiService {
             JSONArray questions = jsonObject.getJSONArray("questions");
             List<QuestionImportVo> questionImportVoList = new ArrayList<>();
             for (int i = 0; i < questions.size(); i++) {
-                //获取对象
-                JSONObject questionJson = questions.getJSONObject(i);
-                QuestionImportVo questionImportVo = new QuestionImportVo();
-                questionImportVo.setTitle(questionJson.getString("title"));
-                questionImportVo.setType(questionJson.getString("type"));
-                questionImportVo.setMulti(questionJson.getBoolean("multi"));
-                questionImportVo.setDifficulty(questionJson.getString("difficulty"));
-                questionImportVo.setScore(questionJson.getInteger("score"));
-                questionImportVo.setAnalysis(questionJson.getString("analysis"));
-                questionImportVo.setCategoryId(request.getCategoryId());
-
-                //选择题处理选项
-                if ("CHOICE".equals(questionImportVo.getType())) {
-                    JSONArray choices = questionJson.getJSONArray("choices");
-                    List<QuestionImportVo.ChoiceImportDto> choiceImportDtoList = new ArrayList<>(choices.size());
-                    for (int i1 = 0; i1 < choices.size(); i1++) {
-                        JSONObject choicesJSONObject = choices.getJSONObject(i1);
-                        QuestionImportVo.ChoiceImportDto choiceImportDto = new QuestionImportVo.ChoiceImportDto();
-                        choiceImportDto.setContent(choicesJSONObject.getString("content"));
-                        choiceImportDto.setIsCorrect(choicesJSONObject.getBoolean("isCorrect"));
-                        choiceImportDto.setSort(choicesJSONObject.getInteger("sort"));
-                        choiceImportDtoList.add(choiceImportDto);
-                    }
-                    questionImportVo.setChoices(choiceImportDtoList);
-                }
-                //答案 [判断题！ TRUE |FALSE  false true  f  t 是 否]
-                questionImportVo.setAnswer(questionJson.getString("answer"));
-                questionImportVoList.add(questionImportVo);
+                questionImportVoList.add(convertToQuestionImportVo(questions.getJSONObject(i), request));
+            }
+            //和题库中的题目、本次生成的其他题目重复的题目丢弃
+            Set<String> titles = new HashSet<>();
+            SimHashIndex generated = new SimHashIndex();
+            int generatedCount = questionImportVoList.size();
+            questionImportVoList.removeIf(questionImportVo -> questionImportVo.getTitle() != null
+                    && isDuplicate(questionImportVo, titles, generated));
+            if (questionImportVoList.size() < generatedCount) {
+                log.debug("ai生成：{} 为标题的题目中有{}道重复题目被丢弃", request.getTopic(), generatedCount - questionImportVoList.size());
             }
             return questionImportVoList;
         }
@@ -96,6 +116,219 @@ public class KimiAiServiceImpl implements KimiAiService {
     }
 
 
+    /**
+     * 流式生成题目
+     *   开启kimi的stream模式，边接收边用JsonObjectStreamParser切分出完整的题目对象，解析完一道推送一道
+     *   流式请求不做重试（重试会导致已经推送的题目重复），只做令牌桶限流
+     * @param request
+     * @return 题目流
+     */
+    @Override
+    public Flux<QuestionImportVo> aiGenerateQuestionsStream(AiGenerateRequestVo request) {
+        String prompt = buildPrompt(request);
+        JsonObjectStreamParser parser = new JsonObjectStreamParser();
+        return callKimiAiStream(prompt)
+                .concatMapIterable(parser::feed)
+                .map(questionJson -> convertToQuestionImportVo(JSONObject.parseObject(questionJson), request));
+    }
+
+    /**
+     * 拆分并行生成题目
+     *   按题目类型均分数量，每种类型再按generateChunkSize拆分成子请求
+     *   子请求通过flatMap(generateConcurrency)并行执行，总耗时取决于最慢的子请求
+     *   在本次生成的题目之间去重，并和题库中已有的题目去重（相似题目索引可用时按标题+选项的相似度，否则按标题）
+     *   某个子请求失败不影响其他子请求，失败数通过进度返回；全部子请求都失败时以错误结束
+     * @param request
+     * @return 每生成一道题推送一次（question不为空），每个子请求结束推送一次进度（question为空）
+     */
+    @Override
+    public Flux<AiGenerateProgressVo> aiGenerateQuestionsFanOut(AiGenerateRequestVo request) {
+        List<AiGenerateRequestVo> chunks = splitRequest(request);
+        FanOutProgress progress = new FanOutProgress(chunks.size());
+        Set<String> titles = ConcurrentHashMap.newKeySet();
+        SimHashIndex generated = new SimHashIndex();
+        log.debug("ai生成：{} 为标题的{}道题目，拆分成{}个子请求", request.getTopic(), request.getCount(), chunks.size());
+        return Flux.fromIterable(chunks)
+                .flatMap(chunk -> aiGenerateQuestionsStream(chunk)
+                        //去重可能需要查询数据库，离开网络线程
+                        .publishOn(Schedulers.boundedElastic())
+                        .filter(questionImportVo -> isNewQuestion(questionImportVo, titles, generated, progress, request.getCount()))
+                        .map(progress::generated)
+                        .concatWith(Mono.fromSupplier(() -> progress.chunkFinished(false)))
+                        .onErrorResume(e -> {
+                            log.warn("ai生成题目子请求失败！类型：{}，数量：{}，原因：{}", chunk.getTypes(), chunk.getCount(), e.getMessage());
+                            AiGenerateProgressVo progressVo = progress.chunkFinished(true);
+                            if (progressVo.getFailedChunks() == progress.totalChunks) {
+                                return Mono.error(new RuntimeException("ai生成题目的%s个子请求全部失败！原因：%s"
+                                        .formatted(progress.totalChunks, e.getMessage())));
+                            }
+                            return Mono.just(progressVo);
+                        }), kimiProperties.getGenerateConcurrency());
+    }
+
+    /**
+     * 拆分生成请求
+     */
+    private List<AiGenerateRequestVo> splitRequest(AiGenerateRequestVo request) {
+        int chunkSize = kimiProperties.getGenerateChunkSize();
+        List<String> types = new ArrayList<>();
+        if (request.getTypes() != null) {
+            for (String type : request.getTypes().split(",")) {
+                if (!type.isBlank()) {
+                    types.add(type.trim());
+                }
+            }
+        }
+        if (types.isEmpty()) {
+            //没有指定类型，交给模型决定
+            types.add(request.getTypes());
+        }
+        List<AiGenerateRequestVo> chunks = new ArrayList<>();
+        int base = request.getCount() / types.size();
+        int remainder = request.getCount() % types.size();
+        for (int i = 0; i < types.size(); i++) {
+            int share = base + (i < remainder ? 1 : 0);
+            for (int from = 0; from < share; from += chunkSize) {
+                AiGenerateRequestVo chunk = new AiGenerateRequestVo();
+                BeanUtils.copyProperties(request, chunk);
+                chunk.setTypes(types.get(i));
+                chunk.setCount(Math.min(chunkSize, share - from));
+                chunks.add(chunk);
+            }
+        }
+        if (chunks.size() > 1) {
+            //提示模型每批侧重不同知识点，减少批次之间的重复
+            for (int i = 0; i < chunks.size(); i++) {
+                AiGenerateRequestVo chunk = chunks.get(i);
+                String hint = "这是第%d批（共%d批）题目，请尽量覆盖该主题下不同的知识点，避免出常见的重复题目".formatted(i + 1, chunks.size());
+                chunk.setRequirements(chunk.getRequirements() == null || chunk.getRequirements().isBlank()
+                        ? hint : chunk.getRequirements() + "；" + hint);
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * 去重，超出计划数量的题目也丢弃
+     *   多个子请求并行过滤，通过原子操作占用名额，保证推送的题目数不超过计划数量
+     */
+    private boolean isNewQuestion(QuestionImportVo questionImportVo, Set<String> titles, SimHashIndex generated,
+                                  FanOutProgress progress, int maxCount) {
+        String title = questionImportVo.getTitle();
+        if (title == null || title.isBlank() || progress.generatedCount.get() >= maxCount) {
+            return false;
+        }
+        if (isDuplicate(questionImportVo, titles, generated)) {
+            progress.duplicateCount.incrementAndGet();
+            return false;
+        }
+        return progress.reserve(maxCount);
+    }
+
+    /**
+     * 是否和本次已生成的题目或题库中的题目重复
+     *   相似题目索引可用时：标题 + 选项的SimHash指纹和本次已生成的题目、题库中同类型的题目比较（都在内存中，不查询数据库）
+     *   不可用时：归一化标题和本次已生成的题目比较，再查询数据库中是否有相同标题
+     */
+    private boolean isDuplicate(QuestionImportVo questionImportVo, Set<String> titles, SimHashIndex generated) {
+        String title = questionImportVo.getTitle();
+        if (!questionDuplicateService.isReady()) {
+            return !titles.add(TextUtils.normalize(title))
+                    || questionMapper.exists(new LambdaQueryWrapper<Question>().eq(Question::getTitle, title.trim()));
+        }
+        List<String> choices = questionImportVo.getChoices() == null ? null
+                : questionImportVo.getChoices().stream().map(QuestionImportVo.ChoiceImportDto::getContent).toList();
+        long fingerprint = SimHashIndex.fingerprint(title, choices);
+        //多个子请求并行过滤
+        synchronized (generated) {
+            if (!titles.add(TextUtils.normalize(title))
+                    || generated.findNearest(fingerprint, questionProperties.getDuplicateMaxDistance(), null) != null
+                    || questionDuplicateService.findDuplicate(questionImportVo.getType(), title, choices) != null) {
+                return true;
+            }
+            generated.put(generated.size(), fingerprint);
+            return false;
+        }
+    }
+
+    /**
+     * 拆分生成的进度计数
+     */
+    private static class FanOutProgress {
+        private final int totalChunks;
+        private final AtomicInteger finishedChunks = new AtomicInteger();
+        private final AtomicInteger failedChunks = new AtomicInteger();
+        private final AtomicInteger generatedCount = new AtomicInteger();
+        private final AtomicInteger duplicateCount = new AtomicInteger();
+
+        private FanOutProgress(int totalChunks) {
+            this.totalChunks = totalChunks;
+        }
+
+        /**
+         * 占用一个生成名额，已经达到计划数量时返回false
+         */
+        private boolean reserve(int maxCount) {
+            return generatedCount.getAndUpdate(count -> count < maxCount ? count + 1 : count) < maxCount;
+        }
+
+        private AiGenerateProgressVo generated(QuestionImportVo questionImportVo) {
+            AiGenerateProgressVo progressVo = snapshot();
+            progressVo.setQuestion(questionImportVo);
+            return progressVo;
+        }
+
+        private AiGenerateProgressVo chunkFinished(boolean failed) {
+            if (failed) {
+                failedChunks.incrementAndGet();
+            }
+            finishedChunks.incrementAndGet();
+            return snapshot();
+        }
+
+        private AiGenerateProgressVo snapshot() {
+            AiGenerateProgressVo progressVo = new AiGenerateProgressVo();
+            progressVo.setTotalChunks(totalChunks);
+            progressVo.setFinishedChunks(finishedChunks.get());
+            progressVo.setFailedChunks(failedChunks.get());
+            progressVo.setGeneratedCount(generatedCount.get());
+            progressVo.setDuplicateCount(duplicateCount.get());
+            return progressVo;
+        }
+    }
+
+    /**
+     * 把ai返回的一道题的json转换成QuestionImportVo
+     */
+    private QuestionImportVo convertToQuestionImportVo(JSONObject questionJson, AiGenerateRequestVo request) {
+        QuestionImportVo questionImportVo = new QuestionImportVo();
+        questionImportVo.setTitle(questionJson.getString("title"));
+        questionImportVo.setType(questionJson.getString("type"));
+        questionImportVo.setMulti(questionJson.getBoolean("multi"));
+        questionImportVo.setDifficulty(questionJson.getString("difficulty"));
+        questionImportVo.setScore(questionJson.getInteger("score"));
+        questionImportVo.setAnalysis(questionJson.getString("analysis"));
+        questionImportVo.setCategoryId(request.getCategoryId());
+
+        //选择题处理选项
+        if ("CHOICE".equals(questionImportVo.getType())) {
+            JSONArray choices = questionJson.getJSONArray("choices");
+            List<QuestionImportVo.ChoiceImportDto> choiceImportDtoList = new ArrayList<>(choices == null ? 0 : choices.size());
+            for (int i = 0; choices != null && i < choices.size(); i++) {
+                JSONObject choicesJSONObject = choices.getJSONObject(i);
+                QuestionImportVo.ChoiceImportDto choiceImportDto = new QuestionImportVo.ChoiceImportDto();
+                choiceImportDto.setContent(choicesJSONObject.getString("content"));
+                choiceImportDto.setIsCorrect(choicesJSONObject.getBoolean("isCorrect"));
+                choiceImportDto.setSort(choicesJSONObject.getInteger("sort"));
+                choiceImportDtoList.add(choiceImportDto);
+            }
+            questionImportVo.setChoices(choiceImportDtoList);
+        }
+        //答案 [判断题！ TRUE |FALSE  false true  f  t 是 否]
+        questionImportVo.setAnswer(questionJson.getString("answer"));
+        return questionImportVo;
+    }
+
     /**
      * 构建发送给AI的提示词
      */
@@ -200,76 +433,123 @@ public class KimiAiServiceImpl implements KimiAiService {
 
 
 
+    /**
+     * 同步调用kimi模型（题目生成使用），内部复用非阻塞调用的限流和重试
+     * @param prompt
+     * @return 返回生成题目json 结果 / choices / message / content
+     */
+    public String callKimiAi(String prompt) throws InterruptedException {
+        return callKimiAiAsync(prompt).block();
+    }
+
     /**
      *
-     * 进行失败重试 给3次机会！！！
+     * 进行失败重试 给maxRetries次机会！！！
      *    kimi失败场景
-     *      假失败 -》 调用成功 1. 结果格式不对  2. 速率限制 -> try
+     *      假失败 -》 调用成功 1. 结果格式不对  2. 速率限制 -> 抛出异常重试
      *        |
-     *      真失败 -》 抛出异常 -> catch
-     * 封装调用kimi模型，最终返结果
+     *      真失败 -》 网络异常、超时 -> 重试
+     *    每次尝试（包括重试）之前都要先从令牌桶拿到令牌，等待通过Mono.delay实现，不阻塞线程
      * @param prompt
-     * @return 返回生成题目json 结果 / choices / message / content
+     * @return 模型返回的content
      */
+    @Override
+    public Mono<String> callKimiAiAsync(String prompt) {
+        //请求体的内容 https://platform.moonshot.cn/docs/api/chat#%E8%AF%B7%E6%B1%82%E5%86%85%E5%AE%B9
+        Map<String,String> userMap = new HashMap<>();
+        userMap.put("role","user");
+        userMap.put("content",prompt); //提示词
+        List<Map> messagesList = new ArrayList<>();
+        messagesList.add(userMap);
 
-    public String callKimiAi(String prompt) throws InterruptedException {
+        Map<String,Object> requestBody = new HashMap<>();
+        requestBody.put("model",kimiProperties.getModel());
+        requestBody.put("messages",messagesList);
+        requestBody.put("temperature", kimiProperties.getTemperature());
+        requestBody.put("max_tokens", kimiProperties.getMaxTokens());
 
-        int maxTry = 3; //最多重试3次
-        for (int i = 1; i <= 3; i++) {
-            try {
-                //请求体的内容 https://platform.moonshot.cn/docs/api/chat#%E8%AF%B7%E6%B1%82%E5%86%85%E5%AE%B9
-                Map<String,String> userMap = new HashMap<>();
-                userMap.put("role","user");
-                userMap.put("content",prompt); //提示词
-                List<Map> messagesList = new ArrayList<>();
-                messagesList.add(userMap);
-
-                Map<String,Object> requestBody = new HashMap<>();
-                requestBody.put("model",kimiProperties.getModel());
-                requestBody.put("messages",messagesList);
-                requestBody.put("temperature", kimiProperties.getTemperature());
-                requestBody.put("max_tokens", kimiProperties.getMaxTokens());
-
-                //2. 发起网络请求调用
-                Mono<String> stringMono = webClient.post()
+        Mono<String> attempt = tokenBucket.acquire()
+                .then(Mono.defer(() -> webClient.post()
                         .bodyValue(requestBody)
-                        .retrieve() //准备了
+                        .retrieve()
                         .bodyToMono(String.class)
-                        .timeout(Duration.ofSeconds(100));
-
-                //webClient异步请求
-                //同步
-                String result = stringMono.block();
-                //jackson工具！ JsonObject JsonArray
-                JSONObject resultJsonObject = JSONObject.parseObject(result);
-
-                //错误结果：https://platform.moonshot.cn/docs/api/chat#错误说明
-                if (resultJsonObject.containsKey("error")){
-                    throw new RuntimeException("访问错误了，错误信息为:" +
-                            resultJsonObject.getJSONObject("error").getString("message") );
-                }
-                //正确结果：https://platform.moonshot.cn/docs/api/chat#%E8%BF%94%E5%9B%9E%E5%86%85%E5%AE%B9
-                //获取返回内容content
-                // ```json  ```
-                String content = resultJsonObject.getJSONArray("choices").getJSONObject(0).
-                        getJSONObject("message").getString("content");
-                log.debug("调用kimi返回的结果为：{}",content);
-
-                if (content == null || content.isEmpty()){
-                    throw new RuntimeException("调用成功！但是没有返回结果！！");
-                }
-                return content;
-            }catch (Exception e){
-                //打印信息
-                log.debug("第{}次尝试调用失败了！",i);
-                Thread.sleep(1000);
-                //                第几次尝试 i 次！
-                if(i == maxTry){
-                    e.printStackTrace();
-                    throw new RuntimeException("已经重试3次！依然失败！请稍后再试！！");
-                }
-            }
+                        .timeout(Duration.ofSeconds(kimiProperties.getTimeoutSeconds()))))
+                .map(this::parseContent);
+
+        return attempt
+                .retryWhen(Retry.backoff(kimiProperties.getMaxRetries(), Duration.ofMillis(kimiProperties.getRetryBackoffMs()))
+                        .doBeforeRetry(signal -> log.debug("第{}次尝试调用kimi失败了！原因：{}",
+                                signal.totalRetries() + 1, signal.failure().getMessage()))
+                        .onRetryExhaustedThrow((spec, signal) -> new RuntimeException(
+                                "已经重试%s次！依然失败！请稍后再试！！".formatted(signal.totalRetries()), signal.failure())));
+    }
+
+    /**
+     * 流式调用kimi模型
+     *   stream=true 时kimi以SSE返回，每个事件的data为一段增量：choices[0].delta.content，最后一个事件为[DONE]
+     * @param prompt
+     * @return content增量片段
+     */
+    private Flux<String> callKimiAiStream(String prompt) {
+        Map<String,String> userMap = new HashMap<>();
+        userMap.put("role","user");
+        userMap.put("content",prompt);
+        List<Map> messagesList = new ArrayList<>();
+        messagesList.add(userMap);
+
+        Map<String,Object> requestBody = new HashMap<>();
+        requestBody.put("model",kimiProperties.getModel());
+        requestBody.put("messages",messagesList);
+        requestBody.put("temperature", kimiProperties.getTemperature());
+        requestBody.put("max_tokens", kimiProperties.getMaxTokens());
+        requestBody.put("stream", true);
+
+        return tokenBucket.acquire()
+                .thenMany(Flux.defer(() -> webClient.post()
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .bodyValue(requestBody)
+                        .retrieve()
+                        .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {})))
+                //两个增量之间的最长间隔
+                .timeout(Duration.ofSeconds(kimiProperties.getTimeoutSeconds()))
+                .mapNotNull(ServerSentEvent::data)
+                .takeWhile(data -> !"[DONE]".equals(data.trim()))
+                .mapNotNull(data -> {
+                    JSONObject chunk = JSONObject.parseObject(data);
+                    if (chunk.containsKey("error")) {
+                        throw new RuntimeException("访问错误了，错误信息为:" + chunk.getJSONObject("error").getString("message"));
+                    }
+                    JSONArray choices = chunk.getJSONArray("choices");
+                    if (choices == null || choices.isEmpty()) {
+                        return null;
+                    }
+                    JSONObject delta = choices.getJSONObject(0).getJSONObject("delta");
+                    return delta == null ? null : delta.getString("content");
+                });
+    }
+
+    /**
+     * 解析kimi返回结果，获取content
+     */
+    private String parseContent(String result) {
+        //jackson工具！ JsonObject JsonArray
+        JSONObject resultJsonObject = JSONObject.parseObject(result);
+
+        //错误结果：https://platform.moonshot.cn/docs/api/chat#错误说明
+        if (resultJsonObject.containsKey("error")){
+            throw new RuntimeException("访问错误了，错误信息为:" +
+                    resultJsonObject.getJSONObject("error").getString("message") );
+        }
+        //正确结果：https://platform.moonshot.cn/docs/api/chat#%E8%BF%94%E5%9B%9E%E5%86%85%E5%AE%B9
+        //获取返回内容content
+        // ```json  ```
+        String content = resultJsonObject.getJSONArray("choices").getJSONObject(0).
+                getJSONObject("message").getString("content");
+        log.debug("调用kimi返回的结果为：{}",content);
+
+        if (content == null || content.isEmpty()){
+            throw new RuntimeException("调用成功！但是没有返回结果！！");
         }
-        throw new RuntimeException("已经重试3次！依然失败！请稍后再试！！");
+        return content;
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,463 @@
 package com.atguigu.exam.service.impl;
 
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.JSONArray;
+import com.atguigu.exam.config.properties.GradingProperties;
+import com.atguigu.exam.config.properties.KimiProperties;
+import com.atguigu.exam.entity.AnswerRecord;
+import com.atguigu.exam.entity.ExamRecord;
+import com.atguigu.exam.entity.Question;
+import com.atguigu.exam.mapper.ExamRecordMapper;
+import com.atguigu.exam.mapper.QuestionMapper;
+import com.atguigu.exam.service.AnswerRecordService;
+import com.atguigu.exam.service.GradingCacheService;
+import com.atguigu.exam.service.KeywordGradingService;
+import com.atguigu.exam.service.KimiAiService;
 import com.atguigu.exam.service.KimiGradingService;
+import com.atguigu.exam.vo.GradingResultVo;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * projectName: com.atguigu.exam.service.impl
  *
  * @author: 赵伟风
- * description:
+ * description: 简答题AI批阅流水线
+ *   gradeExam 只把考试记录id放入队列就返回，不占用tomcat线程
+ *   后台同时处理最多jobConcurrency场考试，关键词覆盖率明确的答案由KeywordGradingService本地给分
+ *   相同答案之前批阅过的（GradingCacheService）直接复用结果，其余简答题答案按 题目id + 满分 放入批次
+ *   （同一道题在不同试卷中的分值可能不同，满分不同的答案不能放在一个批次里）
+ *   同一道题同一满分的答案（来自不同考生）攒够batchSize份或者等待超过batchLingerMs后合并成一个请求
+ *   批次请求通过flatMap(concurrency)发送，同时在途的kimi请求数不超过concurrency，请求速率由KimiAiService中的令牌桶控制
+ *   批次结果中缺失或者解析失败的答案，降级为单份答案请求
+ *   数据库读写切换到boundedElastic线程池，kimi调用全程非阻塞
  */
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class KimiGradingServiceImpl implements KimiGradingService {
+
+    private final KimiAiService kimiAiService;
+    private final KeywordGradingService keywordGradingService;
+    private final GradingCacheService gradingCacheService;
+    private final QuestionMapper questionMapper;
+    private final ExamRecordMapper examRecordMapper;
+    private final AnswerRecordService answerRecordService;
+    private final GradingProperties gradingProperties;
+    private final KimiProperties kimiProperties;
+
+    /**
+     * 排队中和批阅中的考试记录id，防止重复提交
+     */
+    private final Set<Long> pendingJobs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 正在攒批的批次 key = 题目id + 满分，读写都在batchLock中
+     */
+    private final Map<BatchKey, QuestionBatch> openBatches = new HashMap<>();
+    private final Object batchLock = new Object();
+
+    private Sinks.Many<Long> jobSink;
+    private Sinks.Many<QuestionBatch> batchSink;
+    private Disposable jobWorker;
+    private Disposable batchWorker;
+    private int batchSize;
+
+    @PostConstruct
+    public void startWorker() {
+        //批次大小：每份答案的结果都要写进输出，不能超过max-tokens能容纳的数量
+        batchSize = gradingProperties.getBatchSize();
+        if (kimiProperties.getMaxTokens() != null) {
+            batchSize = Math.min(batchSize, kimiProperties.getMaxTokens() / gradingProperties.getTokensPerAnswer());
+        }
+        batchSize = Math.max(1, batchSize);
+        log.info("AI批阅每个请求最多批阅{}份答案", batchSize);
+
+        batchSink = Sinks.many().unicast().onBackpressureBuffer();
+        batchWorker = batchSink.asFlux()
+                .flatMap(this::sendBatch, gradingProperties.getConcurrency())
+                .subscribe();
+
+        jobSink = Sinks.many().unicast().onBackpressureBuffer(Queues.<Long>get(gradingProperties.getQueueCapacity()).get());
+        jobWorker = jobSink.asFlux()
+                .flatMap(examRecordId -> gradeExamRecord(examRecordId)
+                        .onErrorResume(e -> {
+                            log.error("考试记录：{} AI批阅失败！原因：{}", examRecordId, e.getMessage(), e);
+                            return Mono.empty();
+                        })
+                        .doFinally(signal -> pendingJobs.remove(examRecordId)), gradingProperties.getJobConcurrency())
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stopWorker() {
+        jobWorker.dispose();
+        batchWorker.dispose();
+    }
+
+    @Override
+    public synchronized boolean submitGradingJob(Long examRecordId) {
+        if (!pendingJobs.add(examRecordId)) {
+            return false;
+        }
+        //unicast sink不允许并发emit，方法加锁保证串行
+        Sinks.EmitResult emitResult = jobSink.tryEmitNext(examRecordId);
+        if (emitResult.isFailure()) {
+            pendingJobs.remove(examRecordId);
+            throw new RuntimeException("AI批阅队列已满，考试记录：%s 请稍后重新批阅！".formatted(examRecordId));
+        }
+        log.info("考试记录：{} 已进入AI批阅队列！", examRecordId);
+        return true;
+    }
+
+    @Override
+    public Mono<AnswerRecord> gradeTextAnswer(Question question, AnswerRecord answerRecord) {
+        int fullScore = fullScore(question);
+        //未作答直接0分，不调用AI
+        if (ObjectUtils.isEmpty(answerRecord.getUserAnswer()) || answerRecord.getUserAnswer().isBlank()) {
+            applyResult(answerRecord, 0, fullScore, "未作答");
+            return Mono.just(answerRecord);
+        }
+        //关键词覆盖率明确的答案本地直接给分，不调用AI
+        if (keywordGradingService.preGrade(question, answerRecord, fullScore)) {
+            return Mono.just(answerRecord);
+        }
+        //相同的答案之前已经批阅过，直接复用结果
+        GradingResultVo cached = gradingCacheService.get(question.getId(), fullScore, answerRecord.getUserAnswer());
+        if (cached != null) {
+            answerRecord.setScore(cached.getScore());
+            answerRecord.setIsCorrect(cached.getIsCorrect());
+            answerRecord.setAiCorrection(cached.getAiCorrection());
+            return Mono.just(answerRecord);
+        }
+        if (batchSize <= 1) {
+            return gradeSingle(question, fullScore, answerRecord);
+        }
+        //放入该题目该满分的批次，批次请求完成后通过sink返回结果
+        PendingAnswer pending = new PendingAnswer(answerRecord, Sinks.one());
+        addToBatch(question, fullScore, pending);
+        return pending.result().asMono();
+    }
+
+    /**
+     * 单份答案一个请求
+     */
+    private Mono<AnswerRecord> gradeSingle(Question question, int fullScore, AnswerRecord answerRecord) {
+        String prompt = buildGradingPrompt(question, answerRecord.getUserAnswer(), fullScore);
+        return kimiAiService.callKimiAiAsync(prompt)
+                //缓存写入访问redis，离开网络线程
+                .publishOn(Schedulers.boundedElastic())
+                .map(content -> {
+                    JSONObject result = parseJson(content);
+                    Integer score = result.getInteger("score");
+                    if (score == null) {
+                        throw new RuntimeException("ai批阅结果中没有score，无法解析！数据为：%s".formatted(content));
+                    }
+                    applyResult(answerRecord, score, fullScore, result.getString("comment"));
+                    cacheResult(question, fullScore, answerRecord);
+                    return answerRecord;
+                })
+                .onErrorResume(e -> {
+                    //单题失败不影响其他题，保持未批阅状态，重新批阅时再次尝试
+                    log.error("考试记录：{} 题目：{} AI批阅失败！原因：{}",
+                            answerRecord.getExamRecordId(), answerRecord.getQuestionId(), e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * 答案放入 题目id + 满分 对应的批次
+     *   批次满了立即发送；批次的第一份答案负责在batchLingerMs后发送未满的批次
+     */
+    private void addToBatch(Question question, int fullScore, PendingAnswer pending) {
+        BatchKey key = new BatchKey(question.getId(), fullScore);
+        synchronized (batchLock) {
+            QuestionBatch batch = openBatches.computeIfAbsent(key, k -> new QuestionBatch(question, fullScore, new ArrayList<>()));
+            batch.answers().add(pending);
+            if (batch.answers().size() >= batchSize) {
+                openBatches.remove(key);
+                emitBatch(batch);
+            } else if (batch.answers().size() == 1) {
+                Mono.delay(Duration.ofMillis(gradingProperties.getBatchLingerMs()))
+                        .subscribe(tick -> flushBatch(key, batch));
+            }
+        }
+    }
+
+    private void flushBatch(BatchKey key, QuestionBatch batch) {
+        synchronized (batchLock) {
+            //批次可能已经因为满了被发送
+            if (openBatches.remove(key, batch)) {
+                emitBatch(batch);
+            }
+        }
+    }
+
+    /**
+     * 调用方持有batchLock，保证unicast sink串行emit
+     */
+    private void emitBatch(QuestionBatch batch) {
+        Sinks.EmitResult emitResult = batchSink.tryEmitNext(batch);
+        if (emitResult.isFailure()) {
+            log.error("AI批阅批次提交失败：{}，题目：{}", emitResult, batch.question().getId());
+            batch.answers().forEach(pending -> pending.result().tryEmitEmpty());
+        }
+    }
+
+    /**
+     * 发送一个批次，解析每份答案的结果，缺失的答案降级为单份请求
+     */
+    private Mono<Void> sendBatch(QuestionBatch batch) {
+        Question question = batch.question();
+        int fullScore = batch.fullScore();
+        List<PendingAnswer> answers = batch.answers();
+        if (answers.size() == 1) {
+            return complete(answers.get(0), gradeSingle(question, fullScore, answers.get(0).answerRecord()));
+        }
+        String prompt = buildBatchGradingPrompt(question, answers, fullScore);
+        return kimiAiService.callKimiAiAsync(prompt)
+                .publishOn(Schedulers.boundedElastic())
+                .map(this::parseBatchResult)
+                .onErrorResume(e -> {
+                    log.warn("题目：{} 批量批阅{}份答案失败，降级为逐份批阅！原因：{}", question.getId(), answers.size(), e.getMessage());
+                    return Mono.just(Map.of());
+                })
+                .flatMap(results -> {
+                    List<PendingAnswer> fallback = new ArrayList<>();
+                    for (int i = 0; i < answers.size(); i++) {
+                        PendingAnswer pending = answers.get(i);
+                        JSONObject result = results.get(i + 1);
+                        Integer score = result == null ? null : result.getInteger("score");
+                        if (score == null) {
+                            fallback.add(pending);
+                            continue;
+                        }
+                        applyResult(pending.answerRecord(), score, fullScore, result.getString("comment"));
+                        cacheResult(question, fullScore, pending.answerRecord());
+                        pending.result().tryEmitValue(pending.answerRecord());
+                    }
+                    if (!fallback.isEmpty()) {
+                        log.debug("题目：{} 批量批阅结果中有{}份答案缺失，降级为逐份批阅", question.getId(), fallback.size());
+                    }
+                    //降级请求在当前并发槽位内依次发送，不突破concurrency
+                    return Flux.fromIterable(fallback)
+                            .concatMap(pending -> complete(pending, gradeSingle(question, fullScore, pending.answerRecord())))
+                            .then();
+                })
+                .doFinally(signal -> answers.forEach(pending -> pending.result().tryEmitEmpty()));
+    }
+
+    private Mono<Void> complete(PendingAnswer pending, Mono<AnswerRecord> graded) {
+        return graded.doOnNext(answerRecord -> pending.result().tryEmitValue(answerRecord))
+                .doFinally(signal -> pending.result().tryEmitEmpty())
+                .then();
+    }
+
+    /**
+     * 批阅一场考试的全部简答题
+     */
+    private Mono<Void> gradeExamRecord(Long examRecordId) {
+        return Mono.fromCallable(() -> loadJob(examRecordId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(job -> Flux.fromIterable(job.pendingAnswers())
+                        //一场考试的答案全部放入批次，由批次发送控制并发
+                        .flatMap(answerRecord -> gradeTextAnswer(job.textQuestions().get(answerRecord.getQuestionId()), answerRecord))
+                        .collectList()
+                        .flatMap(graded -> Mono.fromRunnable(() -> saveResult(job, graded))
+                                .subscribeOn(Schedulers.boundedElastic())))
+                .then();
+    }
+
+    /**
+     * 查询考试记录、答题记录和试卷中的简答题
+     * @return 没有需要批阅的简答题时返回null
+     */
+    private GradingJob loadJob(Long examRecordId) {
+        ExamRecord examRecord = examRecordMapper.selectById(examRecordId);
+        if (examRecord == null || "进行中".equals(examRecord.getStatus())) {
+            log.warn("考试记录：{} 不存在或者还没有交卷，跳过AI批阅！", examRecordId);
+            return null;
+        }
+        List<AnswerRecord> answerRecords = answerRecordService.list(
+                new LambdaQueryWrapper<AnswerRecord>().eq(AnswerRecord::getExamRecordId, examRecordId));
+        Map<Integer, Question> textQuestions = new HashMap<>();
+        for (Question question : questionMapper.customQueryQuestionListByPaperId(Long.valueOf(examRecord.getExamId()))) {
+            if ("TEXT".equals(question.getType())) {
+                textQuestions.put(question.getId().intValue(), question);
+            }
+        }
+        List<AnswerRecord> pendingAnswers = answerRecords.stream()
+                .filter(answerRecord -> textQuestions.containsKey(answerRecord.getQuestionId()) && answerRecord.getAiCorrection() == null)
+                .toList();
+        return new GradingJob(examRecord, answerRecords, pendingAnswers, textQuestions);
+    }
+
+    /**
+     * 保存批阅结果，所有简答题都批阅完成后考试状态改为已批阅
+     */
+    private void saveResult(GradingJob job, List<AnswerRecord> graded) {
+        if (!graded.isEmpty()) {
+            answerRecordService.updateBatchById(graded);
+        }
+        int totalScore = job.answerRecords().stream()
+                .filter(answerRecord -> answerRecord.getScore() != null)
+                .mapToInt(AnswerRecord::getScore).sum();
+        boolean finished = graded.size() == job.pendingAnswers().size();
+        ExamRecord examRecord = new ExamRecord();
+        examRecord.setId(job.examRecord().getId());
+        examRecord.setScore(totalScore);
+        if (finished) {
+            examRecord.setStatus("已批阅");
+        }
+        examRecordMapper.updateById(examRecord);
+        log.info("考试记录：{} AI批阅{}，简答题：{}/{}，总分：{}", examRecord.getId(), finished ? "完成" : "部分失败",
+                graded.size(), job.pendingAnswers().size(), totalScore);
+    }
+
+    private void cacheResult(Question question, int fullScore, AnswerRecord answerRecord) {
+        try {
+            gradingCacheService.put(question.getId(), fullScore, answerRecord.getUserAnswer(), new GradingResultVo(
+                    answerRecord.getScore(), answerRecord.getIsCorrect(), answerRecord.getAiCorrection()));
+        } catch (Exception e) {
+            //缓存失败不影响批阅结果
+            log.warn("题目：{} AI批阅结果缓存失败！原因：{}", question.getId(), e.getMessage());
+        }
+    }
+
+    private void applyResult(AnswerRecord answerRecord, int score, int fullScore, String comment) {
+        score = Math.max(0, Math.min(fullScore, score));
+        answerRecord.setScore(score);
+        answerRecord.setIsCorrect(score == fullScore ? 1 : score == 0 ? 0 : 2);
+        answerRecord.setAiCorrection(comment == null ? "" : comment);
+    }
+
+    private int fullScore(Question question) {
+        BigDecimal score = question.getPaperScore() != null ? question.getPaperScore()
+                : BigDecimal.valueOf(question.getScore() == null ? 0 : question.getScore());
+        return score.setScale(0, RoundingMode.HALF_UP).intValue();
+    }
+
+    /**
+     * 构建简答题批阅提示词
+     */
+    private String buildGradingPrompt(Question question, String userAnswer, int fullScore) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("你是一名严格公正的阅卷老师，请根据参考答案给学生的简答题作答评分。\n\n");
+        prompt.append("题目：").append(question.getTitle()).append("\n");
+        appendRubric(prompt, question, fullScore);
+        prompt.append("学生答案：").append(userAnswer).append("\n\n");
+        prompt.append("请严格按照以下JSON格式返回，不要包含任何其他文字：\n");
+        prompt.append("```json\n");
+        prompt.append("{\"score\": 得分(0到").append(fullScore).append("之间的整数), \"comment\": \"批改意见，指出得分点和不足\"}\n");
+        prompt.append("```\n");
+        return prompt.toString();
+    }
+
+    /**
+     * 构建同一道题多份答案的批量批阅提示词
+     */
+    private String buildBatchGradingPrompt(Question question, List<PendingAnswer> answers, int fullScore) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("你是一名严格公正的阅卷老师，请根据参考答案和评分关键词，分别给下面").append(answers.size())
+                .append("份学生对同一道简答题的作答评分，每份答案独立评分，互不影响。\n\n");
+        prompt.append("题目：").append(question.getTitle()).append("\n");
+        appendRubric(prompt, question, fullScore);
+        prompt.append("\n学生答案：\n");
+        for (int i = 0; i < answers.size(); i++) {
+            prompt.append("【").append(i + 1).append("】").append(answers.get(i).answerRecord().getUserAnswer()).append("\n");
+        }
+        prompt.append("\n请严格按照以下JSON格式返回，不要包含任何其他文字，results中每份答案一项，index与学生答案编号对应，comment不超过50字：\n");
+        prompt.append("```json\n");
+        prompt.append("{\"results\": [{\"index\": 1, \"score\": 得分(0到").append(fullScore)
+                .append("之间的整数), \"comment\": \"批改意见\"}]}\n");
+        prompt.append("```\n");
+        return prompt.toString();
+    }
+
+    /**
+     * 评分标准：参考答案、评分关键词、满分
+     */
+    private void appendRubric(StringBuilder prompt, Question question, int fullScore) {
+        if (question.getAnswer() != null && !ObjectUtils.isEmpty(question.getAnswer().getAnswer())) {
+            prompt.append("参考答案：").append(question.getAnswer().getAnswer()).append("\n");
+        }
+        if (question.getAnswer() != null && !ObjectUtils.isEmpty(question.getAnswer().getKeywords())) {
+            prompt.append("评分关键词（答出关键词是主要得分点）：").append(question.getAnswer().getKeywords()).append("\n");
+        }
+        prompt.append("满分：").append(fullScore).append("分\n");
+    }
+
+    /**
+     * 解析批量批阅结果
+     * @return key = 答案编号（从1开始）
+     */
+    private Map<Integer, JSONObject> parseBatchResult(String content) {
+        JSONArray results = parseJson(content).getJSONArray("results");
+        if (results == null) {
+            throw new RuntimeException("ai批量批阅结果中没有results，无法解析！数据为：%s".formatted(content));
+        }
+        Map<Integer, JSONObject> resultMap = new HashMap<>();
+        for (int i = 0; i < results.size(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            Integer index = result.getInteger("index");
+            if (index != null) {
+                resultMap.put(index, result);
+            }
+        }
+        return resultMap;
+    }
+
+    /**
+     * 解析ai返回的json，兼容带```json代码块和不带代码块两种格式
+     */
+    private JSONObject parseJson(String content) {
+        int startIndex = content.indexOf('{');
+        int endIndex = content.lastIndexOf('}');
+        if (startIndex != -1 && endIndex != -1 && startIndex < endIndex) {
+            return JSONObject.parseObject(content.substring(startIndex, endIndex + 1));
+        }
+        throw new RuntimeException("ai批阅json数据结构错误，无法正常解析！数据为：%s".formatted(content));
+    }
+
+    /**
+     * 等待批阅的一份答案，result用于把批次结果返回给所在考试的批阅任务
+     */
+    private record PendingAnswer(AnswerRecord answerRecord, Sinks.One<AnswerRecord> result) {
+    }
+
+    /**
+     * 批次key：同一道题在不同试卷中的分值可能不同，满分相同的答案才能合并批阅
+     */
+    private record BatchKey(Long questionId, int fullScore) {
+    }
+
+    /**
+     * 同一道题同一满分的一个批次（question只用于题目、参考答案和关键词，满分以fullScore为准）
+     */
+    private record QuestionBatch(Question question, int fullScore, List<PendingAnswer> answers) {
+    }
+
+    /**
+     * 一场考试的批阅任务
+     */
+    private record GradingJob(ExamRecord examRecord, List<AnswerRecord> answerRecords,
+                              List<AnswerRecord> pendingAnswers, Map<Integer, Question> textQuestions) {
+    }
 }
@@ -1,39 +1,135 @@
 package com.atguigu.exam.service.impl;
 
 
+import com.atguigu.exam.common.CacheConstants;
+import com.atguigu.exam.config.properties.PaperProperties;
 import com.atguigu.exam.entity.Paper;
 import com.atguigu.exam.entity.PaperQuestion;
 import com.atguigu.exam.entity.Question;
+import com.atguigu.exam.entity.QuestionChoice;
 import com.atguigu.exam.mapper.ExamRecordMapper;
 import com.atguigu.exam.mapper.PaperMapper;
 import com.atguigu.exam.mapper.QuestionMapper;
+import com.atguigu.exam.service.ExamGradingService;
 import com.atguigu.exam.service.PaperQuestionService;
 import com.atguigu.exam.service.PaperService;
+import com.atguigu.exam.service.QuestionSamplingService;
 import com.atguigu.exam.service.QuestionService;
+import com.atguigu.exam.utils.LocalCacheEvictor;
+import com.atguigu.exam.utils.PaperAssembler;
+import com.atguigu.exam.utils.PrecompressedJson;
+import com.atguigu.exam.utils.RedisUtils;
+import com.atguigu.exam.utils.TransactionUtils;
+import com.atguigu.exam.vo.AiPaperVo;
+import com.atguigu.exam.vo.PaperAssembleResultVo;
+import com.atguigu.exam.vo.PaperAssembleVo;
 import com.atguigu.exam.vo.PaperVo;
+import com.atguigu.exam.vo.RuleVo;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.ObjectUtils;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 
 /**
  * 试卷服务实现类
+ *
+ * 试卷详情两级缓存：
+ *   L1 Caffeine 本实例内存，L2 redis paper:detail:{试卷id} 多实例共享
+ *   L1未命中时Caffeine对同一试卷的并发请求只执行一次加载，其他请求等待同一个结果
+ *   试卷或试卷中的题目修改后（事务提交后）删除L2，并通过redis频道通知所有实例删除L1
+ *   学生版（不含答案和选项的isCorrect）和完整版一起缓存在L1中，加载时生成一次
+ *   缓存中的试卷对象被所有请求共享，调用方不能修改
+ *
+ * 学生版试卷预压缩JSON：
+ *   试卷发布时把学生版试卷序列化并压缩一次，L1 + redis paper:payload:{试卷id} 缓存，和试卷详情一起失效
+ *   开始考试时直接把压缩好的字节写入响应，不再对试卷进行序列化和压缩
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class PaperServiceImpl extends ServiceImpl<PaperMapper, Paper> implements PaperService {
+
+    /**
+     * 题目难度的取值
+     */
+    private static final Set<String> DIFFICULTIES = Set.of("EASY", "MEDIUM", "HARD");
+
     private final QuestionMapper questionMapper;
     private final ExamRecordMapper examRecordMapper;
     private final PaperQuestionService paperQuestionService;
+    private final ExamGradingService examGradingService;
+    private final RedisUtils redisUtils;
+    private final LocalCacheEvictor localCacheEvictor;
+    private final PaperProperties paperProperties;
+    private final QuestionSamplingService questionSamplingService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private Cache<Long, PaperDetail> paperDetailCache;
+    private Cache<Long, PrecompressedJson> paperPayloadCache;
+
+    /**
+     * 约束组卷的并行求解线程池（有界队列，队列满时拒绝），每个请求最多占用 assembleThreadsPerRequest 个线程
+     */
+    private ExecutorService assembleExecutor;
+    private int assembleThreads;
+    private int assembleThreadsPerRequest;
+
+    @PostConstruct
+    public void initPaperDetailCache() {
+        paperDetailCache = Caffeine.newBuilder()
+                .maximumSize(paperProperties.getDetailCacheL1Size())
+                .expireAfterWrite(Duration.ofMinutes(paperProperties.getDetailCacheL1Minutes()))
+                .build();
+        paperPayloadCache = Caffeine.newBuilder()
+                .maximumSize(paperProperties.getDetailCacheL1Size())
+                .expireAfterWrite(Duration.ofMinutes(paperProperties.getDetailCacheL1Minutes()))
+                .build();
+        localCacheEvictor.subscribe(CacheConstants.PAPER_DETAIL_EVICT_CHANNEL, paperId -> {
+            paperDetailCache.invalidate(paperId);
+            paperPayloadCache.invalidate(paperId);
+        });
+    }
+
+    @PostConstruct
+    public void startAssembleExecutor() {
+        assembleThreads = paperProperties.getAssembleThreads() > 0
+                ? paperProperties.getAssembleThreads() : Runtime.getRuntime().availableProcessors();
+        assembleThreadsPerRequest = paperProperties.getAssembleThreadsPerRequest() > 0
+                ? Math.min(paperProperties.getAssembleThreadsPerRequest(), assembleThreads) : assembleThreads;
+        AtomicInteger counter = new AtomicInteger();
+        assembleExecutor = new ThreadPoolExecutor(assembleThreads, assembleThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(paperProperties.getAssembleQueueCapacity()), runnable -> {
+            Thread thread = new Thread(runnable, "paper-assemble-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void stopAssembleExecutor() {
+        assembleExecutor.shutdownNow();
+    }
+
     /**
      * 根据试卷id试卷详情
      * 试卷对象
@@ -45,6 +141,128 @@ public class PaperServiceImpl extends ServiceImpl<PaperMapper, Paper> implements
      */
     @Override
     public Paper customPaperDetailById(Long id) {
+        return getPaperDetail(id).paper;
+    }
+
+    @Override
+    public Paper customStudentPaperById(Long id) {
+        return getPaperDetail(id).studentPaper;
+    }
+
+    @Override
+    public PrecompressedJson customStudentPaperPayload(Long id) {
+        return paperPayloadCache.get(id, paperId -> {
+            Object cached = redisUtils.get(CacheConstants.PAPER_PAYLOAD_KEY + paperId);
+            if (cached instanceof PrecompressedJson payload) {
+                return payload;
+            }
+            return renderStudentPaperPayload(paperId);
+        });
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    @Override
+    public void customUpdatePaperStatus(Long id, String status) {
+        //1. 校验状态和试卷
+        if (!"DRAFT".equals(status) && !"PUBLISHED".equals(status) && !"STOPPED".equals(status)) {
+            throw new RuntimeException("试卷状态：%s 错误，可选值：DRAFT/PUBLISHED/STOPPED！".formatted(status));
+        }
+        Paper paper = getById(id);
+        if (paper == null) {
+            throw new RuntimeException("指定id:%s试卷已经被删除，无法修改状态！".formatted(id));
+        }
+        if ("PUBLISHED".equals(status) && ObjectUtils.isEmpty(customPaperDetailById(id).getQuestions())) {
+            throw new RuntimeException("试卷：%s 中没有题目，无法发布！".formatted(paper.getName()));
+        }
+        //2. 修改状态，试卷详情中包含状态，删除缓存
+        paper.setStatus(status);
+        updateById(paper);
+        evictPaperDetail(id);
+        //3. 发布：事务提交后生成学生版试卷的预压缩JSON，考试开始时直接使用
+        if ("PUBLISHED".equals(status)) {
+            TransactionUtils.afterCommit(() -> paperPayloadCache.put(id, renderStudentPaperPayload(id)));
+        }
+        log.info("试卷：{} 状态修改为：{}", id, status);
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    @Override
+    public Paper customUpdatePaper(Long id, PaperVo paperVo) {
+        //1. 校验试卷
+        Paper paper = getById(id);
+        if (paper == null) {
+            throw new RuntimeException("指定id:%s试卷已经被删除，无法修改！".formatted(id));
+        }
+        //2. 修改基本信息 名字 描述 时间
+        if (!ObjectUtils.isEmpty(paperVo.getName())) {
+            paper.setName(paperVo.getName());
+        }
+        paper.setDescription(paperVo.getDescription());
+        paper.setDuration(paperVo.getDuration());
+        //3. 传了题目配置，重建中间表并重新计算总题目数和总分数
+        if (paperVo.getQuestions() != null) {
+            paperQuestionService.removeByPaperId(id.intValue());
+            List<PaperQuestion> paperQuestionList = paperVo.getQuestions().entrySet().stream()
+                    .map(entry -> new PaperQuestion(id.intValue(), Long.valueOf(entry.getKey()), entry.getValue()))
+                    .collect(Collectors.toList());
+            paperQuestionService.saveBatch(paperQuestionList);
+            paper.setQuestionCount(paperQuestionList.size());
+            paper.setTotalScore(paperVo.getQuestions().values().stream().reduce(BigDecimal.ZERO, BigDecimal::add));
+        }
+        updateById(paper);
+        //4. 删除缓存的试卷详情和已编译的答案
+        evictPaperDetail(id);
+        examGradingService.evictAnswerKey(id);
+        return paper;
+    }
+
+    @Override
+    public void evictPaperDetail(Long paperId) {
+        localCacheEvictor.evictAfterCommit(CacheConstants.PAPER_DETAIL_EVICT_CHANNEL, paperId, () -> {
+            paperDetailCache.invalidate(paperId);
+            paperPayloadCache.invalidate(paperId);
+            redisUtils.delete(List.of(CacheConstants.PAPER_DETAIL_KEY + paperId, CacheConstants.PAPER_PAYLOAD_KEY + paperId));
+            log.debug("试卷：{} 的详情缓存已删除", paperId);
+        });
+    }
+
+    /**
+     * 两级缓存查询试卷详情（L1 -> L2 -> 数据库）
+     */
+    private PaperDetail getPaperDetail(Long id) {
+        //Caffeine保证同一试卷并发未命中时只加载一次
+        return paperDetailCache.get(id, paperId -> {
+            Object cached = redisUtils.get(CacheConstants.PAPER_DETAIL_KEY + paperId);
+            Paper paper;
+            if (cached instanceof Paper redisPaper) {
+                paper = redisPaper;
+            } else {
+                paper = loadPaperDetail(paperId);
+                redisUtils.set(CacheConstants.PAPER_DETAIL_KEY + paperId, paper, paperProperties.getDetailCacheTtlSeconds());
+            }
+            return new PaperDetail(paper, toStudentPaper(paper));
+        });
+    }
+
+    /**
+     * 学生版试卷序列化并压缩，保存到redis
+     */
+    private PrecompressedJson renderStudentPaperPayload(Long paperId) {
+        try {
+            PrecompressedJson payload = PrecompressedJson.of(objectMapper.writeValueAsBytes(customStudentPaperById(paperId)));
+            redisUtils.set(CacheConstants.PAPER_PAYLOAD_KEY + paperId, payload, paperProperties.getDetailCacheTtlSeconds());
+            log.info("试卷：{} 学生版JSON生成完成，原始大小：{}，压缩后大小：{}", paperId,
+                    payload.getJson().length, payload.getDeflated().length);
+            return payload;
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("试卷：%s 序列化失败！%s".formatted(paperId, e.getMessage()));
+        }
+    }
+
+    /**
+     * 从数据库查询试卷详情
+     */
+    private Paper loadPaperDetail(Long id) {
         //1. 单表java代码进行paper查询
         Paper paper = getById(id);
         //2. 校验paper == null -> 抛异常
@@ -69,6 +287,31 @@ public class PaperServiceImpl extends ServiceImpl<PaperMapper, Paper> implements
         return paper;
     }
 
+    /**
+     * 生成学生版试卷：复制试卷、题目和选项，去掉答案和选项的isCorrect
+     */
+    private Paper toStudentPaper(Paper paper) {
+        Paper studentPaper = new Paper();
+        BeanUtils.copyProperties(paper, studentPaper, "questions");
+        List<Question> studentQuestions = new ArrayList<>(paper.getQuestions().size());
+        for (Question question : paper.getQuestions()) {
+            Question studentQuestion = new Question();
+            BeanUtils.copyProperties(question, studentQuestion, "answer", "choices");
+            if (question.getChoices() != null) {
+                List<QuestionChoice> studentChoices = new ArrayList<>(question.getChoices().size());
+                for (QuestionChoice choice : question.getChoices()) {
+                    QuestionChoice studentChoice = new QuestionChoice();
+                    BeanUtils.copyProperties(choice, studentChoice, "isCorrect");
+                    studentChoices.add(studentChoice);
+                }
+                studentQuestion.setChoices(studentChoices);
+            }
+            studentQuestions.add(studentQuestion);
+        }
+        studentPaper.setQuestions(studentQuestions);
+        return studentPaper;
+    }
+
     @Override
     public Paper customCreatePaper(PaperVo paperVo) {
         //1. 完善试卷内信息 名字 描述 时间  -> 状态 ，总题目数 ， 总分数
@@ -105,6 +348,194 @@ public class PaperServiceImpl extends ServiceImpl<PaperMapper, Paper> implements
         return paper;
     }
 
+    @Transactional(rollbackFor = Exception.class)
+    @Override
+    public Paper customCreatePaperWithAi(AiPaperVo aiPaperVo) {
+        //1. 校验规则
+        if (ObjectUtils.isEmpty(aiPaperVo.getRules())) {
+            throw new RuntimeException("组卷规则为空！组卷失败！");
+        }
+        if (!questionSamplingService.isReady()) {
+            throw new RuntimeException("题目抽样索引正在构建中，请稍后再试！");
+        }
+        //2. 按规则依次抽题，后面的规则排除前面规则已经抽中的题目
+        Map<Integer, BigDecimal> questions = new LinkedHashMap<>();
+        Set<Long> pickedIds = new HashSet<>();
+        for (RuleVo rule : aiPaperVo.getRules()) {
+            if (rule.getCount() == null || rule.getCount() <= 0) {
+                continue;
+            }
+            if (rule.getScore() == null || rule.getScore() <= 0) {
+                throw new RuntimeException("规则（题型：%s）每道题目的分数必须大于0！组卷失败！".formatted(rule.getType()));
+            }
+            String type = rule.getType() == null ? null : rule.getType().name();
+            String difficulty = ObjectUtils.isEmpty(rule.getDifficulty()) ? null : rule.getDifficulty();
+            if (difficulty != null && !DIFFICULTIES.contains(difficulty)) {
+                throw new RuntimeException("规则（题型：%s）的难度：%s 不合法，可选值：EASY/MEDIUM/HARD！组卷失败！"
+                        .formatted(rule.getType(), difficulty));
+            }
+            List<Long> categoryIds = rule.getCategoryIds() == null ? null
+                    : rule.getCategoryIds().stream().map(Long::valueOf).toList();
+            List<Long> ids = questionSamplingService.sample(categoryIds, type, difficulty, rule.getCount(), pickedIds);
+            if (ids.size() < rule.getCount()) {
+                throw new RuntimeException("规则（题型：%s，难度：%s，分类：%s）需要%s道题目，满足条件的题目只有%s道！组卷失败！"
+                        .formatted(type, difficulty, rule.getCategoryIds(), rule.getCount(), ids.size()));
+            }
+            BigDecimal score = BigDecimal.valueOf(rule.getScore());
+            for (Long id : ids) {
+                pickedIds.add(id);
+                questions.put(id.intValue(), score);
+            }
+        }
+        if (questions.isEmpty()) {
+            throw new RuntimeException("组卷规则的题目数量都为0！组卷失败！");
+        }
+        //3. 和手动组卷相同：保存试卷和试卷题目
+        PaperVo paperVo = new PaperVo();
+        paperVo.setName(aiPaperVo.getName());
+        paperVo.setDescription(aiPaperVo.getDescription());
+        paperVo.setDuration(aiPaperVo.getDuration());
+        paperVo.setQuestions(questions);
+        Paper paper = customCreatePaper(paperVo);
+        log.info("按规则组卷完成！试卷id：{}，规则数：{}，题目数：{}", paper.getId(), aiPaperVo.getRules().size(), questions.size());
+        return paper;
+    }
+
+    @Override
+    public PaperAssembleResultVo customAssemblePaper(PaperAssembleVo paperAssembleVo) {
+        //1. 校验组卷目标
+        int questionCount = paperAssembleVo.getQuestionCount() == null ? 0 : paperAssembleVo.getQuestionCount();
+        if (questionCount <= 0 || paperAssembleVo.getTotalScore() == null || paperAssembleVo.getTotalScore() <= 0) {
+            throw new RuntimeException("题目总数和目标总分必须大于0！组卷失败！");
+        }
+        Map<String, Integer> typeCounts = ObjectUtils.isEmpty(paperAssembleVo.getTypeCounts()) ? null : paperAssembleVo.getTypeCounts();
+        if (typeCounts != null) {
+            for (Map.Entry<String, Integer> entry : typeCounts.entrySet()) {
+                if (entry.getValue() == null || entry.getValue() < 0) {
+                    throw new RuntimeException("题型：%s 的题目数：%s 不合法，不能为空或小于0！组卷失败！"
+                            .formatted(entry.getKey(), entry.getValue()));
+                }
+            }
+            int typeTotal = typeCounts.values().stream().mapToInt(Integer::intValue).sum();
+            if (typeTotal != questionCount) {
+                throw new RuntimeException("各题型题目数之和：%s 和题目总数：%s 不一致！组卷失败！".formatted(typeTotal, questionCount));
+            }
+        }
+        Map<String, Integer> difficultyCounts = null;
+        if (!ObjectUtils.isEmpty(paperAssembleVo.getDifficultyRatio())) {
+            for (Map.Entry<String, Integer> entry : paperAssembleVo.getDifficultyRatio().entrySet()) {
+                if (entry.getValue() == null || entry.getValue() < 0) {
+                    throw new RuntimeException("难度：%s 的百分比：%s 不合法，不能为空或小于0！组卷失败！"
+                            .formatted(entry.getKey(), entry.getValue()));
+                }
+            }
+            int percent = paperAssembleVo.getDifficultyRatio().values().stream().mapToInt(Integer::intValue).sum();
+            if (percent != 100) {
+                throw new RuntimeException("难度分布百分比之和：%s 不等于100！组卷失败！".formatted(percent));
+            }
+            difficultyCounts = toDifficultyCounts(paperAssembleVo.getDifficultyRatio(), questionCount);
+        }
+        if (!questionSamplingService.isReady()) {
+            throw new RuntimeException("题目抽样索引正在构建中，请稍后再试！");
+        }
+        //2. 候选题目快照（内存索引，不查询数据库）和预处理
+        long start = System.nanoTime();
+        int budgetMs = paperAssembleVo.getTimeBudgetMs() == null ? paperProperties.getAssembleTimeBudgetMs()
+                : Math.max(1, Math.min(paperAssembleVo.getTimeBudgetMs(), paperProperties.getAssembleMaxTimeBudgetMs()));
+        long budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMs);
+        //请求最多等待到 waitDeadline：求解时间 + 排队时间，排队的任务从开始执行时计算自己的求解时间，但不超过 waitDeadline
+        long waitDeadline = start + budgetNanos + TimeUnit.MILLISECONDS.toNanos(paperProperties.getAssembleQueueWaitMs());
+        PaperAssembler.Pool pool = questionSamplingService.snapshot(paperAssembleVo.getCategoryIds(),
+                typeCounts == null ? null : typeCounts.keySet());
+        PaperAssembler.Problem problem = PaperAssembler.prepare(pool, new PaperAssembler.Target(questionCount,
+                paperAssembleVo.getTotalScore(), typeCounts, difficultyCounts, paperAssembleVo.getCategoryIds()));
+        //3. 每个任务用不同的随机种子求解，取罚分最小的解
+        AtomicInteger bestPenalty = new AtomicInteger(Integer.MAX_VALUE);
+        List<Future<PaperAssembler.Solution>> futures = new ArrayList<>(assembleThreadsPerRequest);
+        try {
+            for (int i = 0; i < assembleThreadsPerRequest; i++) {
+                long seed = ThreadLocalRandom.current().nextLong();
+                futures.add(assembleExecutor.submit(() -> problem.solve(seed,
+                        Math.min(System.nanoTime() + budgetNanos, waitDeadline), bestPenalty)));
+            }
+        } catch (RejectedExecutionException e) {
+            futures.forEach(future -> future.cancel(false));
+            throw new RuntimeException("组卷请求过多，请稍后再试！");
+        }
+        PaperAssembler.Solution best = null;
+        try {
+            for (Future<PaperAssembler.Solution> future : futures) {
+                try {
+                    //任务最晚在 waitDeadline 结束，多等一点检查截止时间的间隔
+                    PaperAssembler.Solution solution = future.get(
+                            Math.max(0, waitDeadline - System.nanoTime()) + TimeUnit.MILLISECONDS.toNanos(100),
+                            TimeUnit.NANOSECONDS);
+                    if (best == null || solution.penalty() < best.penalty()) {
+                        best = solution;
+                    }
+                } catch (TimeoutException e) {
+                    //排队超时还没开始的任务，用已经完成的任务的结果
+                    log.warn("约束组卷任务排队超时，已取消");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("组卷被中断！");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("组卷失败！原因：%s".formatted(e.getCause().getMessage()));
+        } finally {
+            futures.forEach(future -> future.cancel(false));
+        }
+        if (best == null) {
+            throw new RuntimeException("组卷请求过多，排队超时，请稍后再试！");
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        //4. 和手动组卷相同：保存试卷和试卷题目（题目分数使用题目默认分值）
+        Map<Integer, BigDecimal> questions = new LinkedHashMap<>();
+        for (int i = 0; i < best.questionIds().length; i++) {
+            questions.put((int) best.questionIds()[i], BigDecimal.valueOf(best.scores()[i]));
+        }
+        PaperVo paperVo = new PaperVo();
+        paperVo.setName(paperAssembleVo.getName());
+        paperVo.setDescription(paperAssembleVo.getDescription());
+        paperVo.setDuration(paperAssembleVo.getDuration());
+        paperVo.setQuestions(questions);
+        Paper paper = transactionTemplate.execute(status -> customCreatePaper(paperVo));
+        PaperAssembleResultVo result = new PaperAssembleResultVo();
+        result.setPaper(paper);
+        result.setExact(best.penalty() == 0);
+        result.setTotalScore(best.totalScore());
+        result.setTypeCounts(best.typeCounts());
+        result.setDifficultyCounts(best.difficultyCounts());
+        result.setUncoveredCategories(best.uncoveredCategories());
+        result.setElapsedMs(elapsedMs);
+        log.info("约束组卷完成！试卷id：{}，候选题目数：{}，线程数：{}，耗时：{}ms，满足全部目标：{}，总分：{}/{}，难度：{}",
+                paper.getId(), pool.size(), assembleThreadsPerRequest, elapsedMs, result.getExact(), best.totalScore(),
+                paperAssembleVo.getTotalScore(), best.difficultyCounts());
+        return result;
+    }
+
+    /**
+     * 难度百分比换算成题目数（最大余数法，保证各难度题目数之和等于题目总数）
+     */
+    private static Map<String, Integer> toDifficultyCounts(Map<String, Integer> difficultyRatio, int questionCount) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        List<Map.Entry<String, Integer>> remainders = new ArrayList<>();
+        int assigned = 0;
+        for (Map.Entry<String, Integer> entry : difficultyRatio.entrySet()) {
+            int ratio = entry.getValue() == null ? 0 : entry.getValue();
+            int count = ratio * questionCount / 100;
+            counts.put(entry.getKey(), count);
+            remainders.add(Map.entry(entry.getKey(), ratio * questionCount % 100));
+            assigned += count;
+        }
+        remainders.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        for (int i = 0; assigned < questionCount; i++, assigned++) {
+            counts.merge(remainders.get(i % remainders.size()).getKey(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
     /**
      * 获取题目类型的排序顺序
      * @param type 题目类型
@@ -118,4 +549,10 @@ public class PaperServiceImpl extends ServiceImpl<PaperMapper, Paper> implements
             default: return 4;       // 其他类型
         }
     }
+
+    /**
+     * 本地缓存的试卷详情：完整版（管理端、判分）和学生版（考试）
+     */
+    private record PaperDetail(Paper paper, Paper studentPaper) {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,279 @@
+package com.atguigu.exam.service.impl;
+
+import com.atguigu.exam.config.properties.QuestionProperties;
+import com.atguigu.exam.entity.Question;
+import com.atguigu.exam.entity.QuestionChoice;
+import com.atguigu.exam.mapper.QuestionChoiceMapper;
+import com.atguigu.exam.mapper.QuestionMapper;
+import com.atguigu.exam.service.QuestionDuplicateService;
+import com.atguigu.exam.utils.SimHashIndex;
+import com.atguigu.exam.vo.QuestionDuplicateClusterVo;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * 相似题目检测服务实现类
+ *
+ * 每种题型一个SimHashIndex，只在同类型的题目之间查重，每道候选题只比较分段桶里的少量题目
+ * 启动后在后台线程按id游标分页读取题目和选项建索引，建好后整体替换，重建期间变化的题目替换后从数据库重新读取
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QuestionDuplicateServiceImpl implements QuestionDuplicateService {
+
+    private final QuestionMapper questionMapper;
+    private final QuestionChoiceMapper questionChoiceMapper;
+    private final QuestionProperties questionProperties;
+
+    private volatile DuplicateIndex duplicateIndex = new DuplicateIndex();
+    private volatile boolean ready = false;
+    private volatile boolean rebuilding = false;
+
+    /**
+     * 重建期间发生变化的题目id
+     */
+    private final Set<Long> dirtyIds = ConcurrentHashMap.newKeySet();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!Boolean.TRUE.equals(questionProperties.getDuplicateCheckEnabled())) {
+            return;
+        }
+        Thread thread = new Thread(this::rebuild, "question-duplicate-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready && Boolean.TRUE.equals(questionProperties.getDuplicateCheckEnabled());
+    }
+
+    @Override
+    public Long findDuplicate(String type, String title, List<String> choices) {
+        return duplicateIndex.findNearest(type, SimHashIndex.fingerprint(title, choices), maxDistance(null));
+    }
+
+    @Override
+    public void index(Question question) {
+        if (question == null || question.getId() == null) {
+            return;
+        }
+        if (rebuilding) {
+            dirtyIds.add(question.getId());
+        }
+        duplicateIndex.put(question.getId(), question.getType(), fingerprint(question, question.getChoices()));
+    }
+
+    @Override
+    public void indexBatch(List<Question> questions) {
+        questions.forEach(this::index);
+    }
+
+    @Override
+    public void remove(Long questionId) {
+        if (rebuilding) {
+            dirtyIds.add(questionId);
+        }
+        duplicateIndex.remove(questionId);
+    }
+
+    @Override
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        rebuilding = true;
+        dirtyIds.clear();
+        try {
+            DuplicateIndex newIndex = new DuplicateIndex();
+            int pageSize = questionProperties.getSearchRebuildPageSize();
+            long lastId = 0;
+            while (true) {
+                List<Question> questionList = questionMapper.selectList(new LambdaQueryWrapper<Question>()
+                        .select(Question::getId, Question::getType, Question::getTitle)
+                        .gt(Question::getId, lastId)
+                        .orderByAsc(Question::getId)
+                        .last("limit " + pageSize));
+                if (questionList.isEmpty()) {
+                    break;
+                }
+                Map<Long, List<QuestionChoice>> choiceMap = loadChoices(questionList.stream().map(Question::getId).toList());
+                for (Question question : questionList) {
+                    newIndex.put(question.getId(), question.getType(), fingerprint(question, choiceMap.get(question.getId())));
+                }
+                lastId = questionList.get(questionList.size() - 1).getId();
+                if (questionList.size() < pageSize) {
+                    break;
+                }
+            }
+            duplicateIndex = newIndex;
+            ready = true;
+            rebuilding = false;
+            //重建期间变化的题目重新读取
+            for (Long questionId : new ArrayList<>(dirtyIds)) {
+                Question question = questionMapper.selectById(questionId);
+                if (question == null) {
+                    newIndex.remove(questionId);
+                } else {
+                    newIndex.put(questionId, question.getType(), fingerprint(question, loadChoices(List.of(questionId)).get(questionId)));
+                }
+            }
+            log.info("相似题目索引重建完成，题目数：{}，重建期间变化的题目数：{}，耗时：{}ms",
+                    newIndex.types.size(), dirtyIds.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("相似题目索引重建失败，导入时只检测标题完全相同的题目", e);
+        } finally {
+            rebuilding = false;
+            dirtyIds.clear();
+        }
+    }
+
+    @Override
+    public List<QuestionDuplicateClusterVo> findClusters(Integer maxDistance, Integer limit) {
+        //1. 索引中分组（只有题目id）
+        List<List<Long>> clusters = duplicateIndex.clusters(maxDistance(maxDistance));
+        clusters = clusters.subList(0, Math.min(clusters.size(), Math.max(1, limit == null ? 100 : limit)));
+        if (clusters.isEmpty()) {
+            return new ArrayList<>();
+        }
+        //2. 一次in查询分组内题目的基本信息
+        List<Long> ids = clusters.stream().flatMap(List::stream).toList();
+        Map<Long, Question> questionMap = questionMapper.selectList(new LambdaQueryWrapper<Question>()
+                        .select(Question::getId, Question::getType, Question::getCategoryId, Question::getDifficulty,
+                                Question::getTitle, Question::getCreateTime)
+                        .in(Question::getId, ids))
+                .stream().collect(Collectors.toMap(Question::getId, question -> question));
+        return clusters.stream().map(cluster -> {
+            List<Question> questions = cluster.stream().map(questionMap::get).filter(Objects::nonNull).toList();
+            return new QuestionDuplicateClusterVo(questions.size(), questions);
+        }).filter(clusterVo -> clusterVo.getSize() > 1).collect(Collectors.toList());
+    }
+
+    private int maxDistance(Integer maxDistance) {
+        int distance = maxDistance == null ? questionProperties.getDuplicateMaxDistance() : maxDistance;
+        return Math.max(0, Math.min(distance, SimHashIndex.MAX_DISTANCE));
+    }
+
+    private Map<Long, List<QuestionChoice>> loadChoices(List<Long> questionIds) {
+        return questionChoiceMapper.selectList(new LambdaQueryWrapper<QuestionChoice>()
+                        .select(QuestionChoice::getQuestionId, QuestionChoice::getContent)
+                        .in(QuestionChoice::getQuestionId, questionIds))
+                .stream().collect(Collectors.groupingBy(QuestionChoice::getQuestionId));
+    }
+
+    private long fingerprint(Question question, List<QuestionChoice> choices) {
+        return SimHashIndex.fingerprint(question.getTitle(),
+                choices == null ? null : choices.stream().map(QuestionChoice::getContent).toList());
+    }
+
+    /**
+     * 按题型分开的SimHash索引，读写锁保护
+     */
+    private static final class DuplicateIndex {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, SimHashIndex> indexes = new HashMap<>();
+        private final Map<Long, String> types = new HashMap<>();
+
+        private void put(Long questionId, String type, long fingerprint) {
+            lock.writeLock().lock();
+            try {
+                String oldType = types.put(questionId, String.valueOf(type));
+                if (oldType != null && !oldType.equals(String.valueOf(type))) {
+                    indexes.get(oldType).remove(questionId);
+                }
+                indexes.computeIfAbsent(String.valueOf(type), key -> new SimHashIndex()).put(questionId, fingerprint);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void remove(Long questionId) {
+            lock.writeLock().lock();
+            try {
+                String type = types.remove(questionId);
+                if (type != null) {
+                    indexes.get(type).remove(questionId);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private Long findNearest(String type, long fingerprint, int maxDistance) {
+            lock.readLock().lock();
+            try {
+                SimHashIndex index = indexes.get(String.valueOf(type));
+                return index == null ? null : index.findNearest(fingerprint, maxDistance, null);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * 并查集合并相似的题目，返回题目数大于1的分组（组内id升序，分组按题目数倒序）
+         */
+        private List<List<Long>> clusters(int maxDistance) {
+            Map<Long, Long> parents = new HashMap<>();
+            lock.readLock().lock();
+            try {
+                for (SimHashIndex index : indexes.values()) {
+                    index.fingerprints().forEach((id, fingerprint) -> {
+                        for (Long similarId : index.findAll(fingerprint, maxDistance)) {
+                            if (!similarId.equals(id)) {
+                                union(parents, id, similarId);
+                            }
+                        }
+                    });
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            Map<Long, List<Long>> groups = new HashMap<>();
+            for (Long id : parents.keySet()) {
+                groups.computeIfAbsent(find(parents, id), key -> new ArrayList<>()).add(id);
+            }
+            groups.values().forEach(Collections::sort);
+            return groups.values().stream()
+                    .sorted(Comparator.comparingInt((List<Long> group) -> group.size()).reversed()
+                            .thenComparing(group -> group.get(0)))
+                    .collect(Collectors.toList());
+        }
+
+        private static Long find(Map<Long, Long> parents, Long id) {
+            Long root = id;
+            while (true) {
+                Long parent = parents.getOrDefault(root, root);
+                if (parent.equals(root)) {
+                    break;
+                }
+                root = parent;
+            }
+            //路径压缩
+            while (!id.equals(root)) {
+                Long parent = parents.get(id);
+                parents.put(id, root);
+                id = parent;
+            }
+            return root;
+        }
+
+        private static void union(Map<Long, Long> parents, Long first, Long second) {
+            Long firstRoot = find(parents, first);
+            Long secondRoot = find(parents, second);
+            parents.putIfAbsent(firstRoot, firstRoot);
+            parents.putIfAbsent(secondRoot, secondRoot);
+            if (!firstRoot.equals(secondRoot)) {
+                parents.put(Math.max(firstRoot, secondRoot), Math.min(firstRoot, secondRoot));
+            }
+        }
+    }
+}
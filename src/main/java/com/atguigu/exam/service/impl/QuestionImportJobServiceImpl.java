@@ -0,0 +1,347 @@
+package com.atguigu.exam.service.impl;
+
+import com.atguigu.exam.config.properties.QuestionProperties;
+import com.atguigu.exam.service.QuestionImportJobService;
+import com.atguigu.exam.service.QuestionService;
+import com.atguigu.exam.utils.ExcelUtil;
+import com.atguigu.exam.utils.QuestionImportValidator;
+import com.atguigu.exam.vo.QuestionImportJobVo;
+import com.atguigu.exam.vo.QuestionImportResultVo;
+import com.atguigu.exam.vo.QuestionImportVo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Excel题目导入任务服务实现类
+ *
+ * 流水线设计：
+ *   解析阶段：任务线程用ExcelUtil.streamExcel流式读取临时文件，每解析一行放入解析队列
+ *   校验阶段：按QuestionImportValidator的规则校验，通过的放入写入队列，不通过的记录失败明细
+ *   写入阶段：攒够importChunkSize行调用一次customImportChunk（一次查重 + 一个事务批量插入）
+ *   三个阶段并发执行，阶段之间是有界队列，下游慢时上游阻塞，内存占用和文件大小无关
+ *   同时执行的任务数由importJobConcurrency限制，其他任务排队，不影响其他管理员的请求
+ *
+ * 任务进度保存在本机内存中，结束后保留importJobRetentionMinutes分钟
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QuestionImportJobServiceImpl implements QuestionImportJobService {
+
+    /**
+     * 阶段结束标记
+     */
+    private static final ParsedRow END = new ParsedRow(null, -1);
+
+    private final QuestionService questionService;
+    private final QuestionProperties questionProperties;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private ExecutorService jobExecutor;
+    private ExecutorService stageExecutor;
+
+    @PostConstruct
+    public void startExecutors() {
+        int concurrency = questionProperties.getImportJobConcurrency();
+        jobExecutor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), namedThreadFactory("question-import-job-"));
+        //每个运行中的任务占用两个阶段线程，线程数最多为 2 * importJobConcurrency
+        stageExecutor = Executors.newCachedThreadPool(namedThreadFactory("question-import-stage-"));
+    }
+
+    @PreDestroy
+    public void stopExecutors() {
+        jobs.values().forEach(job -> job.abort("服务停止，导入任务终止"));
+        jobExecutor.shutdownNow();
+        stageExecutor.shutdownNow();
+    }
+
+    @Override
+    public String submitExcelImport(MultipartFile file) throws IOException {
+        //1. 数据校验
+        if (file == null || file.isEmpty()) {
+            throw new RuntimeException("导入数据的文件为空！");
+        }
+        String fileName = file.getOriginalFilename();
+        if (fileName == null || (!fileName.endsWith(".xls") && !fileName.endsWith(".xlsx"))) {
+            throw new RuntimeException("导入数据的文件格式错误，必须是 .xls或者.xlsx！");
+        }
+        //2. 请求结束后上传文件会被清理，先保存为临时文件
+        Path tempFile = Files.createTempFile("question-import-", fileName.endsWith(".xlsx") ? ".xlsx" : ".xls");
+        file.transferTo(tempFile);
+        //3. 创建任务并排队
+        ImportJob job = new ImportJob(UUID.randomUUID().toString().replace("-", ""), fileName);
+        jobs.put(job.jobId, job);
+        try {
+            jobExecutor.execute(() -> runJob(job, tempFile));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.jobId);
+            Files.deleteIfExists(tempFile);
+            throw new RuntimeException("导入任务提交失败，服务正在停止！");
+        }
+        log.info("Excel导入任务：{} 已提交，文件名：{}", job.jobId, fileName);
+        return job.jobId;
+    }
+
+    @Override
+    public QuestionImportJobVo getJob(String jobId) {
+        return getImportJob(jobId).toVo();
+    }
+
+    @Override
+    public byte[] generateErrorReport(String jobId) throws IOException {
+        ImportJob job = getImportJob(jobId);
+        List<QuestionImportResultVo.RowResult> failures;
+        synchronized (job.failures) {
+            failures = new ArrayList<>(job.failures);
+        }
+        //校验阶段和写入阶段并发记录失败，按行号排序
+        failures.sort(Comparator.comparing(QuestionImportResultVo.RowResult::getIndex));
+        return ExcelUtil.generateImportErrorReport(failures);
+    }
+
+    /**
+     * 清理已经结束并超过保留时间的任务
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void removeExpiredJobs() {
+        long expireBefore = System.currentTimeMillis()
+                - TimeUnit.MINUTES.toMillis(questionProperties.getImportJobRetentionMinutes());
+        jobs.values().removeIf(job -> job.finishTime != null && job.finishTime.getTime() < expireBefore);
+    }
+
+    private ImportJob getImportJob(String jobId) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new RuntimeException("导入任务：%s 不存在或已过期！".formatted(jobId));
+        }
+        return job;
+    }
+
+    /**
+     * 执行导入任务：启动校验和写入阶段，当前线程执行解析阶段
+     */
+    private void runJob(ImportJob job, Path tempFile) {
+        job.status = "进行中";
+        int capacity = questionProperties.getImportQueueCapacity();
+        BlockingQueue<ParsedRow> parsedQueue = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<ParsedRow> validQueue = new ArrayBlockingQueue<>(capacity);
+        CompletableFuture<Void> validateStage = CompletableFuture.runAsync(() -> validateStage(job, parsedQueue, validQueue), stageExecutor);
+        CompletableFuture<Void> writeStage = CompletableFuture.runAsync(() -> writeStage(job, validQueue), stageExecutor);
+        try {
+            //1. 解析阶段
+            try {
+                ExcelUtil.streamExcel(tempFile.toFile(), job.fileName, (question, rowNum) -> {
+                    job.parsed.incrementAndGet();
+                    if (!put(job, parsedQueue, new ParsedRow(question, rowNum))) {
+                        throw new CancellationException("导入任务已终止");
+                    }
+                });
+            } catch (CancellationException e) {
+                log.warn("Excel导入任务：{} 已终止，停止解析！", job.jobId);
+            } catch (Exception e) {
+                //已经解析出的题目继续校验和写入
+                log.error("Excel导入任务：{} 解析文件失败！原因：{}", job.jobId, e.getMessage());
+                job.error("Excel文件解析失败：" + e.getMessage());
+            }
+            put(job, parsedQueue, END);
+            //2. 等待校验和写入阶段结束
+            CompletableFuture.allOf(validateStage, writeStage).join();
+        } catch (Exception e) {
+            log.error("Excel导入任务：{} 执行失败！原因：{}", job.jobId, e.getMessage(), e);
+            job.abort("导入任务执行失败：" + e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                log.warn("Excel导入任务：{} 临时文件删除失败：{}", job.jobId, tempFile);
+            }
+            job.status = job.message == null ? "已完成" : "失败";
+            job.finishTime = new Date();
+            log.info("Excel导入任务：{} 结束！状态：{}，解析：{}，校验通过：{}，导入：{}，失败：{}", job.jobId, job.status,
+                    job.parsed.get(), job.validated.get(), job.inserted.get(), job.failed.get());
+        }
+    }
+
+    /**
+     * 校验阶段
+     */
+    private void validateStage(ImportJob job, BlockingQueue<ParsedRow> in, BlockingQueue<ParsedRow> out) {
+        try {
+            ParsedRow row;
+            while ((row = take(job, in)) != null && row != END) {
+                String error = QuestionImportValidator.validate(row.question(), row.rowNum());
+                if (error != null) {
+                    job.fail(row.rowNum(), row.question().getTitle(), error);
+                    continue;
+                }
+                job.validated.incrementAndGet();
+                if (!put(job, out, row)) {
+                    return;
+                }
+            }
+            put(job, out, END);
+        } catch (RuntimeException e) {
+            job.abort("题目校验失败：" + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * 写入阶段：每importChunkSize行提交一次
+     */
+    private void writeStage(ImportJob job, BlockingQueue<ParsedRow> in) {
+        int chunkSize = questionProperties.getImportChunkSize();
+        //本次导入中已经出现过的 类型+标题，跨批次查重
+        Set<String> importedKeys = new HashSet<>();
+        List<QuestionImportVo> questions = new ArrayList<>(chunkSize);
+        List<Integer> rowNumbers = new ArrayList<>(chunkSize);
+        try {
+            ParsedRow row;
+            while ((row = take(job, in)) != null) {
+                if (row != END) {
+                    questions.add(row.question());
+                    rowNumbers.add(row.rowNum());
+                }
+                if (questions.size() >= chunkSize || (row == END && !questions.isEmpty())) {
+                    QuestionImportResultVo result = questionService.customImportChunk(questions, rowNumbers, importedKeys);
+                    job.inserted.addAndGet(result.getSuccessCount());
+                    result.getFailures().forEach(failure -> job.fail(failure.getIndex(), failure.getTitle(), failure.getMessage()));
+                    questions = new ArrayList<>(chunkSize);
+                    rowNumbers = new ArrayList<>(chunkSize);
+                }
+                if (row == END) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            job.abort("题目写入失败：" + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * 放入下一阶段的队列，队列满时等待；任务终止时返回false
+     */
+    private static boolean put(ImportJob job, BlockingQueue<ParsedRow> queue, ParsedRow row) {
+        try {
+            while (!job.aborted) {
+                if (queue.offer(row, 1, TimeUnit.SECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.abort("导入任务被中断");
+        }
+        return false;
+    }
+
+    /**
+     * 从上一阶段的队列中取出一行，队列空时等待；任务终止时返回null
+     */
+    private static ParsedRow take(ImportJob job, BlockingQueue<ParsedRow> queue) {
+        try {
+            while (!job.aborted) {
+                ParsedRow row = queue.poll(1, TimeUnit.SECONDS);
+                if (row != null) {
+                    return row;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.abort("导入任务被中断");
+        }
+        return null;
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 解析出的一行题目
+     */
+    private record ParsedRow(QuestionImportVo question, int rowNum) {
+    }
+
+    /**
+     * 一个导入任务的状态，各阶段线程并发更新
+     */
+    private static final class ImportJob {
+        private final String jobId;
+        private final String fileName;
+        private final Date createTime = new Date();
+        private final AtomicInteger parsed = new AtomicInteger();
+        private final AtomicInteger validated = new AtomicInteger();
+        private final AtomicInteger inserted = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final List<QuestionImportResultVo.RowResult> failures = Collections.synchronizedList(new ArrayList<>());
+        private volatile String status = "排队中";
+        private volatile String message;
+        private volatile Date finishTime;
+        /**
+         * 为true时各阶段停止处理
+         */
+        private volatile boolean aborted;
+
+        private ImportJob(String jobId, String fileName) {
+            this.jobId = jobId;
+            this.fileName = fileName;
+        }
+
+        private void fail(int rowNum, String title, String message) {
+            failed.incrementAndGet();
+            failures.add(new QuestionImportResultVo.RowResult(rowNum, title, message));
+        }
+
+        /**
+         * 记录任务失败原因（只保留第一个）
+         */
+        private synchronized void error(String message) {
+            if (this.message == null) {
+                this.message = message;
+            }
+        }
+
+        /**
+         * 任务失败并停止所有阶段
+         */
+        private void abort(String message) {
+            error(message);
+            aborted = true;
+        }
+
+        private QuestionImportJobVo toVo() {
+            QuestionImportJobVo vo = new QuestionImportJobVo();
+            vo.setJobId(jobId);
+            vo.setFileName(fileName);
+            vo.setStatus(status);
+            vo.setParsedCount(parsed.get());
+            vo.setValidatedCount(validated.get());
+            vo.setInsertedCount(inserted.get());
+            vo.setFailedCount(failed.get());
+            vo.setMessage(message);
+            vo.setCreateTime(createTime);
+            vo.setFinishTime(finishTime);
+            return vo;
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.atguigu.exam.service.impl;
+
+import com.atguigu.exam.config.properties.QuestionProperties;
+import com.atguigu.exam.entity.Question;
+import com.atguigu.exam.mapper.QuestionMapper;
+import com.atguigu.exam.service.QuestionSamplingService;
+import com.atguigu.exam.utils.PaperAssembler;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 题目随机抽样服务实现类
+ *
+ * 索引：(分类, 题型, 难度) -> long[] 题目id + int[] 分值，桶的数量 = 分类数 * 3 * 3，一百万道题目约12MB（加上位置表约80MB）
+ * 抽样：满足条件的桶首尾相接看成一个长度为N的虚拟数组，随机生成下标，按桶的前缀和二分定位到具体的id
+ *       抽取数量远小于N时拒绝采样（重复或排除的id重新抽），期望O(k)；接近N时取出全部id做部分洗牌
+ * 更新：位置表记录每道题目所在的桶和下标（id -> 桶序号 << 32 | 下标），新增追加到桶末尾；
+ *       删除按位置表定位后和桶末尾交换再缩短，同时更新被交换题目的位置，新增和删除都是O(1)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QuestionSamplingServiceImpl implements QuestionSamplingService {
+
+    private final QuestionMapper questionMapper;
+    private final QuestionProperties questionProperties;
+
+    private volatile SamplingIndex samplingIndex = new SamplingIndex();
+    private volatile boolean ready = false;
+    private volatile boolean rebuilding = false;
+
+    /**
+     * 重建期间发生变化的题目id
+     */
+    private final Set<Long> dirtyIds = ConcurrentHashMap.newKeySet();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        Thread thread = new Thread(this::rebuild, "question-sampling-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public int count(Collection<Long> categoryIds, String type, String difficulty) {
+        return samplingIndex.count(toSet(categoryIds), type, difficulty);
+    }
+
+    @Override
+    public List<Long> sample(Collection<Long> categoryIds, String type, String difficulty, int count, Set<Long> excludeIds) {
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+        return samplingIndex.sample(toSet(categoryIds), type, difficulty, count,
+                excludeIds == null ? Set.of() : excludeIds);
+    }
+
+    @Override
+    public PaperAssembler.Pool snapshot(Collection<Long> categoryIds, Collection<String> types) {
+        return samplingIndex.snapshot(toSet(categoryIds), types == null || types.isEmpty() ? null : new HashSet<>(types));
+    }
+
+    @Override
+    public void index(Question question) {
+        if (question == null || question.getId() == null) {
+            return;
+        }
+        if (rebuilding) {
+            dirtyIds.add(question.getId());
+        }
+        samplingIndex.remove(question.getId());
+        samplingIndex.add(question);
+    }
+
+    @Override
+    public void indexBatch(List<Question> questions) {
+        if (rebuilding) {
+            questions.forEach(question -> dirtyIds.add(question.getId()));
+        }
+        questions.forEach(samplingIndex::add);
+    }
+
+    @Override
+    public void remove(Long questionId) {
+        if (rebuilding) {
+            dirtyIds.add(questionId);
+        }
+        samplingIndex.remove(questionId);
+    }
+
+    @Override
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        rebuilding = true;
+        dirtyIds.clear();
+        try {
+            SamplingIndex newIndex = new SamplingIndex();
+            int pageSize = questionProperties.getSearchRebuildPageSize();
+            long lastId = 0;
+            while (true) {
+                List<Question> questionList = questionMapper.selectList(new LambdaQueryWrapper<Question>()
+                        .select(Question::getId, Question::getCategoryId, Question::getType, Question::getDifficulty,
+                                Question::getScore)
+                        .gt(Question::getId, lastId)
+                        .orderByAsc(Question::getId)
+                        .last("limit " + pageSize));
+                if (questionList.isEmpty()) {
+                    break;
+                }
+                questionList.forEach(newIndex::add);
+                lastId = questionList.get(questionList.size() - 1).getId();
+                if (questionList.size() < pageSize) {
+                    break;
+                }
+            }
+            samplingIndex = newIndex;
+            ready = true;
+            rebuilding = false;
+            //重建期间变化的题目重新读取
+            for (Long questionId : new ArrayList<>(dirtyIds)) {
+                Question question = questionMapper.selectById(questionId);
+                newIndex.remove(questionId);
+                if (question != null) {
+                    newIndex.add(question);
+                }
+            }
+            log.info("题目抽样索引重建完成，题目数：{}，分桶数：{}，重建期间变化的题目数：{}，耗时：{}ms",
+                    newIndex.size, newIndex.buckets.size(), dirtyIds.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("题目抽样索引重建失败，随机抽题和规则组卷暂不可用", e);
+        } finally {
+            rebuilding = false;
+            dirtyIds.clear();
+        }
+    }
+
+    private static Set<Long> toSet(Collection<Long> categoryIds) {
+        if (categoryIds == null || categoryIds.isEmpty()) {
+            return null;
+        }
+        return categoryIds instanceof Set<Long> set ? set : new HashSet<>(categoryIds);
+    }
+
+    private record BucketKey(long categoryId, String type, String difficulty) {
+
+        private boolean matches(Set<Long> categoryIds, String type, String difficulty) {
+            return (categoryIds == null || categoryIds.contains(categoryId))
+                    && (type == null || type.equals(this.type))
+                    && (difficulty == null || difficulty.equals(this.difficulty));
+        }
+    }
+
+    /**
+     * 一个桶的题目id和分值（无序）
+     */
+    private static final class Bucket {
+        private long[] ids = new long[16];
+        private int[] scores = new int[16];
+        private int size;
+
+        /**
+         * 桶在 SamplingIndex.bucketList 中的序号
+         */
+        private final int ordinal;
+
+        private Bucket(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        /**
+         * 追加到末尾，返回下标
+         */
+        private int add(long id, int score) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1));
+                scores = Arrays.copyOf(scores, ids.length);
+            }
+            ids[size] = id;
+            scores[size] = score;
+            return size++;
+        }
+
+        /**
+         * 删除下标为slot的题目：末尾的题目移到slot，返回是否发生了移动
+         */
+        private boolean removeAt(int slot) {
+            size--;
+            if (slot == size) {
+                return false;
+            }
+            ids[slot] = ids[size];
+            scores[slot] = scores[size];
+            return true;
+        }
+    }
+
+    /**
+     * 分桶索引，读写锁保护（抽样共享读锁，增量更新独占写锁）
+     */
+    private static final class SamplingIndex {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<BucketKey, Bucket> buckets = new HashMap<>();
+        private final List<Bucket> bucketList = new ArrayList<>();
+        /**
+         * 题目id -> 桶序号 << 32 | 桶内下标
+         */
+        private final Map<Long, Long> locations = new HashMap<>();
+        private int size;
+
+        private void add(Question question) {
+            BucketKey key = new BucketKey(question.getCategoryId() == null ? -1 : question.getCategoryId(),
+                    question.getType(), question.getDifficulty());
+            lock.writeLock().lock();
+            try {
+                //重复添加时先删除旧位置，保证一道题目只在一个桶里
+                removeLocked(question.getId());
+                Bucket bucket = buckets.computeIfAbsent(key, k -> {
+                    Bucket created = new Bucket(bucketList.size());
+                    bucketList.add(created);
+                    return created;
+                });
+                int slot = bucket.add(question.getId(), question.getScore() == null ? 0 : question.getScore());
+                locations.put(question.getId(), location(bucket.ordinal, slot));
+                size++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void remove(long questionId) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(questionId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void removeLocked(long questionId) {
+            Long location = locations.remove(questionId);
+            if (location == null) {
+                return;
+            }
+            Bucket bucket = bucketList.get((int) (location >>> 32));
+            int slot = (int) location.longValue();
+            if (bucket.removeAt(slot)) {
+                //原来在末尾的题目移到了slot
+                locations.put(bucket.ids[slot], location(bucket.ordinal, slot));
+            }
+            size--;
+        }
+
+        private static long location(int ordinal, int slot) {
+            return (long) ordinal << 32 | slot;
+        }
+
+        private int count(Set<Long> categoryIds, String type, String difficulty) {
+            lock.readLock().lock();
+            try {
+                int count = 0;
+                for (Map.Entry<BucketKey, Bucket> entry : buckets.entrySet()) {
+                    if (entry.getKey().matches(categoryIds, type, difficulty)) {
+                        count += entry.getValue().size;
+                    }
+                }
+                return count;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private PaperAssembler.Pool snapshot(Set<Long> categoryIds, Set<String> types) {
+            lock.readLock().lock();
+            try {
+                List<Map.Entry<BucketKey, Bucket>> matched = new ArrayList<>();
+                int total = 0;
+                for (Map.Entry<BucketKey, Bucket> entry : buckets.entrySet()) {
+                    BucketKey key = entry.getKey();
+                    if (entry.getValue().size > 0 && key.matches(categoryIds, null, null)
+                            && (types == null || types.contains(key.type()))) {
+                        matched.add(entry);
+                        total += entry.getValue().size;
+                    }
+                }
+                PaperAssembler.Pool pool = new PaperAssembler.Pool(total);
+                for (Map.Entry<BucketKey, Bucket> entry : matched) {
+                    BucketKey key = entry.getKey();
+                    Bucket bucket = entry.getValue();
+                    pool.addAll(key.categoryId(), key.type(), key.difficulty(), bucket.ids, bucket.scores, bucket.size);
+                }
+                return pool;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private List<Long> sample(Set<Long> categoryIds, String type, String difficulty, int count, Set<Long> excludeIds) {
+            lock.readLock().lock();
+            try {
+                //1. 满足条件的桶和前缀和：ends[i] = 前i个桶的题目总数（含第i个）
+                List<Bucket> matched = new ArrayList<>();
+                for (Map.Entry<BucketKey, Bucket> entry : buckets.entrySet()) {
+                    if (entry.getValue().size > 0 && entry.getKey().matches(categoryIds, type, difficulty)) {
+                        matched.add(entry.getValue());
+                    }
+                }
+                int[] ends = new int[matched.size()];
+                int total = 0;
+                for (int i = 0; i < ends.length; i++) {
+                    total += matched.get(i).size;
+                    ends[i] = total;
+                }
+                if (total == 0) {
+                    return new ArrayList<>();
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                //2. 抽取数量（加上需要排除的）不超过一半时拒绝采样，期望最多抽2k次
+                if ((long) (count + excludeIds.size()) * 2 <= total) {
+                    Set<Long> picked = new LinkedHashSet<>(count * 2);
+                    while (picked.size() < count) {
+                        long id = locate(matched, ends, random.nextInt(total));
+                        if (!excludeIds.contains(id)) {
+                            picked.add(id);
+                        }
+                    }
+                    return new ArrayList<>(picked);
+                }
+                //3. 否则取出全部id（去掉排除的），部分Fisher-Yates洗牌取前count个
+                long[] pool = new long[total];
+                int poolSize = 0;
+                for (Bucket bucket : matched) {
+                    for (int i = 0; i < bucket.size; i++) {
+                        if (!excludeIds.contains(bucket.ids[i])) {
+                            pool[poolSize++] = bucket.ids[i];
+                        }
+                    }
+                }
+                int limit = Math.min(count, poolSize);
+                List<Long> result = new ArrayList<>(limit);
+                for (int i = 0; i < limit; i++) {
+                    int j = i + random.nextInt(poolSize - i);
+                    long temp = pool[i];
+                    pool[i] = pool[j];
+                    pool[j] = temp;
+                    result.add(pool[i]);
+                }
+                return result;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * 虚拟下标 -> 题目id：二分找到第一个 ends[i] > index 的桶
+         */
+        private static long locate(List<Bucket> matched, int[] ends, int index) {
+            int low = 0;
+            int high = ends.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ends[mid] > index) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            int start = low == 0 ? 0 : ends[low - 1];
+            return matched.get(low).ids[index - start];
+        }
+    }
+}
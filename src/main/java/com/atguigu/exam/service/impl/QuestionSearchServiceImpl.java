@@ -0,0 +1,450 @@
+package com.atguigu.exam.service.impl;
+
+import com.atguigu.exam.config.properties.QuestionProperties;
+import com.atguigu.exam.entity.Question;
+import com.atguigu.exam.entity.QuestionChoice;
+import com.atguigu.exam.mapper.QuestionChoiceMapper;
+import com.atguigu.exam.mapper.QuestionMapper;
+import com.atguigu.exam.service.QuestionSearchService;
+import com.atguigu.exam.utils.NgramTokenizer;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * 题目全文检索服务实现类
+ *
+ * 倒排索引：
+ *   每道题目分配一个递增的文档号，词 -> 文档号升序的int数组，每个元素 = 文档号 << 3 | 命中字段（标题1、选项2、解析4）
+ *   题目修改时旧文档号标记删除、分配新文档号追加到数组末尾，数组始终有序，不需要重新排序
+ *   标记删除的文档超过 searchCompactDeletedRatio 时定时压缩：去掉已删除的文档，按原顺序重新编号
+ *   题型、难度、分类保存在按文档号下标的数组中，检索时直接过滤
+ *
+ * 检索：
+ *   查询词的倒排数组按长度从短到长求交集（跳跃 + 二分查找），同时按 idf * 字段权重 计算相关度
+ *   用大小为 offset + limit 的小顶堆取出前N个，不对全部命中结果排序
+ *
+ * 重建：
+ *   应用启动后在后台线程按id游标分页读取题目和选项，建好新索引后整体替换，重建期间检索走数据库
+ *   重建期间发生变化的题目记录下来，替换后从数据库重新读取一次，保证不丢失修改
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QuestionSearchServiceImpl implements QuestionSearchService {
+
+    private static final int FIELD_TITLE = 1;
+    private static final int FIELD_CHOICE = 2;
+    private static final int FIELD_ANALYSIS = 4;
+
+    private final QuestionMapper questionMapper;
+    private final QuestionChoiceMapper questionChoiceMapper;
+    private final QuestionProperties questionProperties;
+
+    private volatile SearchIndex searchIndex = new SearchIndex();
+    private volatile boolean ready = false;
+    private volatile boolean rebuilding = false;
+
+    /**
+     * 重建期间发生变化的题目id
+     */
+    private final Set<Long> dirtyIds = ConcurrentHashMap.newKeySet();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!Boolean.TRUE.equals(questionProperties.getSearchIndexEnabled())) {
+            return;
+        }
+        Thread thread = new Thread(this::rebuild, "question-search-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public SearchResult search(String keyword, String type, String difficulty, Long categoryId, long offset, int limit) {
+        return searchIndex.search(NgramTokenizer.queryTokens(keyword), type, difficulty, categoryId, offset, limit);
+    }
+
+    @Override
+    public void index(Question question) {
+        if (question == null || question.getId() == null) {
+            return;
+        }
+        if (rebuilding) {
+            dirtyIds.add(question.getId());
+        }
+        searchIndex.add(toDocument(question, question.getChoices()));
+    }
+
+    @Override
+    public void indexBatch(List<Question> questions) {
+        questions.forEach(this::index);
+    }
+
+    @Override
+    public void remove(Long questionId) {
+        if (rebuilding) {
+            dirtyIds.add(questionId);
+        }
+        searchIndex.remove(questionId);
+    }
+
+    @Override
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        rebuilding = true;
+        dirtyIds.clear();
+        try {
+            SearchIndex newIndex = new SearchIndex();
+            int pageSize = questionProperties.getSearchRebuildPageSize();
+            long lastId = 0;
+            while (true) {
+                //id游标分页读取题目，每页的选项一次in查询
+                List<Question> questionList = questionMapper.selectList(new LambdaQueryWrapper<Question>()
+                        .select(Question::getId, Question::getType, Question::getDifficulty, Question::getCategoryId,
+                                Question::getTitle, Question::getAnalysis)
+                        .gt(Question::getId, lastId)
+                        .orderByAsc(Question::getId)
+                        .last("limit " + pageSize));
+                if (questionList.isEmpty()) {
+                    break;
+                }
+                Map<Long, List<QuestionChoice>> choiceMap = loadChoices(questionList.stream().map(Question::getId).toList());
+                for (Question question : questionList) {
+                    newIndex.add(toDocument(question, choiceMap.get(question.getId())));
+                }
+                lastId = questionList.get(questionList.size() - 1).getId();
+                if (questionList.size() < pageSize) {
+                    break;
+                }
+            }
+            searchIndex = newIndex;
+            ready = true;
+            rebuilding = false;
+            //重建期间变化的题目重新读取
+            for (Long questionId : new ArrayList<>(dirtyIds)) {
+                Question question = questionMapper.selectById(questionId);
+                if (question == null) {
+                    newIndex.remove(questionId);
+                } else {
+                    newIndex.add(toDocument(question, loadChoices(List.of(questionId)).get(questionId)));
+                }
+            }
+            log.info("题目全文索引重建完成，题目数：{}，词数：{}，重建期间变化的题目数：{}，耗时：{}ms",
+                    newIndex.liveCount, newIndex.postings.size(), dirtyIds.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("题目全文索引重建失败，关键字检索继续使用数据库查询", e);
+        } finally {
+            rebuilding = false;
+            dirtyIds.clear();
+        }
+    }
+
+    /**
+     * 标记删除的文档占比超过阈值时压缩索引（和重建互斥，压缩期间持有写锁）
+     */
+    @Scheduled(fixedDelayString = "${question.search-compact-interval-ms:60000}")
+    public synchronized void compactIfNeeded() {
+        SearchIndex index = searchIndex;
+        if (!ready || !index.needsCompact(questionProperties.getSearchCompactDeletedRatio())) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int removed = index.compact();
+        log.info("题目全文索引压缩完成，清理已删除的文档数：{}，题目数：{}，词数：{}，耗时：{}ms",
+                removed, index.liveCount, index.postings.size(), System.currentTimeMillis() - start);
+    }
+
+    private Map<Long, List<QuestionChoice>> loadChoices(List<Long> questionIds) {
+        return questionChoiceMapper.selectList(new LambdaQueryWrapper<QuestionChoice>()
+                        .select(QuestionChoice::getQuestionId, QuestionChoice::getContent)
+                        .in(QuestionChoice::getQuestionId, questionIds))
+                .stream().collect(Collectors.groupingBy(QuestionChoice::getQuestionId));
+    }
+
+    /**
+     * 题目分词：词 -> 命中的字段
+     */
+    private Document toDocument(Question question, List<QuestionChoice> choices) {
+        Map<String, Integer> tokens = new HashMap<>();
+        NgramTokenizer.indexTokens(question.getTitle()).forEach(token -> tokens.merge(token, FIELD_TITLE, (a, b) -> a | b));
+        NgramTokenizer.indexTokens(question.getAnalysis()).forEach(token -> tokens.merge(token, FIELD_ANALYSIS, (a, b) -> a | b));
+        if (choices != null) {
+            for (QuestionChoice choice : choices) {
+                NgramTokenizer.indexTokens(choice.getContent()).forEach(token -> tokens.merge(token, FIELD_CHOICE, (a, b) -> a | b));
+            }
+        }
+        return new Document(question.getId(), question.getType(), question.getDifficulty(), question.getCategoryId(), tokens);
+    }
+
+    private record Document(Long id, String type, String difficulty, Long categoryId, Map<String, Integer> tokens) {
+    }
+
+    private record ScoredDoc(int docNo, double score) {
+    }
+
+    /**
+     * 字段权重：标题3，选项1.5，解析1
+     */
+    private static double weight(int fields) {
+        return ((fields & FIELD_TITLE) != 0 ? 3 : 0) + ((fields & FIELD_CHOICE) != 0 ? 1.5 : 0)
+                + ((fields & FIELD_ANALYSIS) != 0 ? 1 : 0);
+    }
+
+    /**
+     * 倒排索引，读写锁保护（检索共享读锁，增量更新独占写锁）
+     */
+    private static final class SearchIndex {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, PostingList> postings = new HashMap<>();
+        private final Map<Long, Integer> docNos = new HashMap<>();
+        private final BitSet deleted = new BitSet();
+        private long[] questionIds = new long[1024];
+        private String[] types = new String[1024];
+        private String[] difficulties = new String[1024];
+        private long[] categoryIds = new long[1024];
+        private int docCount;
+        private int liveCount;
+
+        private void add(Document document) {
+            lock.writeLock().lock();
+            try {
+                Integer oldDocNo = docNos.get(document.id());
+                if (oldDocNo != null) {
+                    deleted.set(oldDocNo);
+                    liveCount--;
+                }
+                int docNo = docCount++;
+                if (docNo == questionIds.length) {
+                    int capacity = questionIds.length * 2;
+                    questionIds = Arrays.copyOf(questionIds, capacity);
+                    types = Arrays.copyOf(types, capacity);
+                    difficulties = Arrays.copyOf(difficulties, capacity);
+                    categoryIds = Arrays.copyOf(categoryIds, capacity);
+                }
+                questionIds[docNo] = document.id();
+                types[docNo] = document.type() == null ? null : document.type().intern();
+                difficulties[docNo] = document.difficulty() == null ? null : document.difficulty().intern();
+                categoryIds[docNo] = document.categoryId() == null ? -1 : document.categoryId();
+                docNos.put(document.id(), docNo);
+                liveCount++;
+                document.tokens().forEach((token, fields) ->
+                        postings.computeIfAbsent(token, key -> new PostingList()).add(docNo << 3 | fields));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void remove(Long questionId) {
+            lock.writeLock().lock();
+            try {
+                Integer docNo = docNos.remove(questionId);
+                if (docNo != null) {
+                    deleted.set(docNo);
+                    liveCount--;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private boolean needsCompact(double deletedRatio) {
+            lock.readLock().lock();
+            try {
+                int deletedCount = docCount - liveCount;
+                return deletedCount > 0 && deletedCount >= docCount * deletedRatio;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * 压缩：去掉标记删除的文档，未删除的文档按原顺序重新编号（倒排数组仍然有序），去掉空的倒排数组
+         * @return 清理的文档数
+         */
+        private int compact() {
+            lock.writeLock().lock();
+            try {
+                //1. 旧文档号 -> 新文档号，已删除的为-1
+                int[] remap = new int[docCount];
+                int next = 0;
+                for (int docNo = 0; docNo < docCount; docNo++) {
+                    if (deleted.get(docNo)) {
+                        remap[docNo] = -1;
+                        continue;
+                    }
+                    remap[docNo] = next;
+                    questionIds[next] = questionIds[docNo];
+                    types[next] = types[docNo];
+                    difficulties[next] = difficulties[docNo];
+                    categoryIds[next] = categoryIds[docNo];
+                    next++;
+                }
+                Arrays.fill(types, next, docCount, null);
+                Arrays.fill(difficulties, next, docCount, null);
+                //2. 倒排数组原地重写
+                Iterator<PostingList> iterator = postings.values().iterator();
+                while (iterator.hasNext()) {
+                    PostingList list = iterator.next();
+                    list.remap(remap);
+                    if (list.size == 0) {
+                        iterator.remove();
+                    }
+                }
+                docNos.replaceAll((id, docNo) -> remap[docNo]);
+                int removed = docCount - next;
+                docCount = next;
+                deleted.clear();
+                return removed;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private SearchResult search(List<String> tokens, String type, String difficulty, Long categoryId,
+                                    long offset, int limit) {
+            if (tokens.isEmpty() || limit <= 0) {
+                return new SearchResult(0, List.of());
+            }
+            lock.readLock().lock();
+            try {
+                //1. 所有查询词都必须出现，按倒排数组长度从短到长求交集
+                PostingList[] lists = new PostingList[tokens.size()];
+                for (int i = 0; i < lists.length; i++) {
+                    lists[i] = postings.get(tokens.get(i));
+                    if (lists[i] == null) {
+                        return new SearchResult(0, List.of());
+                    }
+                }
+                Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+                double[] idf = new double[lists.length];
+                for (int i = 0; i < lists.length; i++) {
+                    idf[i] = Math.log(1 + (double) Math.max(liveCount, 1) / lists[i].size);
+                }
+                //2. 小顶堆保留前 offset + limit 个结果
+                int topN = (int) Math.min(offset + limit, Integer.MAX_VALUE);
+                Comparator<ScoredDoc> order = Comparator.comparingDouble(ScoredDoc::score).thenComparingInt(ScoredDoc::docNo);
+                PriorityQueue<ScoredDoc> heap = new PriorityQueue<>(order);
+                int[] cursors = new int[lists.length];
+                long total = 0;
+                PostingList first = lists[0];
+                candidates:
+                for (int p = 0; p < first.size; p++) {
+                    int entry = first.data[p];
+                    int docNo = entry >>> 3;
+                    if (deleted.get(docNo)
+                            || (type != null && !type.equals(types[docNo]))
+                            || (difficulty != null && !difficulty.equals(difficulties[docNo]))
+                            || (categoryId != null && categoryId != categoryIds[docNo])) {
+                        continue;
+                    }
+                    double score = idf[0] * weight(entry & 7);
+                    for (int i = 1; i < lists.length; i++) {
+                        int position = lists[i].seek(docNo << 3, cursors[i]);
+                        cursors[i] = position;
+                        if (position == lists[i].size) {
+                            break candidates;
+                        }
+                        if (lists[i].data[position] >>> 3 != docNo) {
+                            continue candidates;
+                        }
+                        score += idf[i] * weight(lists[i].data[position] & 7);
+                    }
+                    total++;
+                    ScoredDoc scoredDoc = new ScoredDoc(docNo, score);
+                    if (heap.size() < topN) {
+                        heap.offer(scoredDoc);
+                    } else if (order.compare(scoredDoc, heap.peek()) > 0) {
+                        heap.poll();
+                        heap.offer(scoredDoc);
+                    }
+                }
+                //3. 堆中结果按相关度倒序，取 [offset, offset + limit)
+                List<ScoredDoc> top = new ArrayList<>(heap);
+                top.sort(order.reversed());
+                List<Long> ids = new ArrayList<>(limit);
+                for (int i = (int) Math.min(offset, top.size()); i < top.size(); i++) {
+                    ids.add(questionIds[top.get(i).docNo()]);
+                }
+                return new SearchResult(total, ids);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * 升序的int数组（可追加）
+     */
+    private static final class PostingList {
+        private int[] data = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size + (size >> 1) + 1);
+            }
+            data[size++] = value;
+        }
+
+        /**
+         * 压缩时按新文档号重写，去掉已删除的文档，空闲容量超过1/4时缩小
+         */
+        private void remap(int[] remap) {
+            int newSize = 0;
+            for (int i = 0; i < size; i++) {
+                int docNo = remap[data[i] >>> 3];
+                if (docNo >= 0) {
+                    data[newSize++] = docNo << 3 | (data[i] & 7);
+                }
+            }
+            size = newSize;
+            if (data.length - size > data.length >> 2) {
+                data = Arrays.copyOf(data, Math.max(size, 4));
+            }
+        }
+
+        /**
+         * 从from开始查找第一个大于等于key的下标（先倍增跳跃再二分），没有时返回size
+         */
+        private int seek(int key, int from) {
+            if (from >= size || data[from] >= key) {
+                return from;
+            }
+            int low = from;
+            int step = 1;
+            int high = from + 1;
+            while (high < size && data[high] < key) {
+                low = high;
+                step <<= 1;
+                high = low + step;
+            }
+            high = Math.min(high, size);
+            int left = low + 1;
+            int right = high;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (data[mid] < key) {
+                    left = mid + 1;
+                } else {
+                    right = mid;
+                }
+            }
+            return left;
+        }
+    }
+}
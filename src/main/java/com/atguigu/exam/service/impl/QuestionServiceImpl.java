@@ -1,6 +1,7 @@
 package com.atguigu.exam.service.impl;
 
 import com.atguigu.exam.common.CacheConstants;
+import com.atguigu.exam.config.properties.QuestionProperties;
 import com.atguigu.exam.entity.PaperQuestion;
 import com.atguigu.exam.entity.Question;
 import com.atguigu.exam.entity.QuestionAnswer;
@@ -9,30 +10,62 @@ import com.atguigu.exam.mapper.PaperQuestionMapper;
 import com.atguigu.exam.mapper.QuestionAnswerMapper;
 import com.atguigu.exam.mapper.QuestionChoiceMapper;
 import com.atguigu.exam.mapper.QuestionMapper;
+import com.atguigu.exam.service.ExamGradingService;
+import com.atguigu.exam.service.GradingCacheService;
+import com.atguigu.exam.service.PaperService;
+import com.atguigu.exam.service.QuestionDuplicateService;
+import com.atguigu.exam.service.QuestionSamplingService;
+import com.atguigu.exam.service.QuestionSearchService;
 import com.atguigu.exam.service.QuestionService;
+import com.atguigu.exam.service.QuestionViewCountService;
+import com.atguigu.exam.service.TrendingService;
+import com.atguigu.exam.utils.LocalCacheEvictor;
 import com.atguigu.exam.utils.ExcelUtil;
+import com.atguigu.exam.utils.PageCursor;
 import com.atguigu.exam.utils.RedisUtils;
+import com.atguigu.exam.utils.SimHashIndex;
+import com.atguigu.exam.utils.TransactionUtils;
+import com.atguigu.exam.vo.CursorPageResult;
+import com.atguigu.exam.vo.ExcelPreviewVo;
+import com.atguigu.exam.vo.QuestionImportResultVo;
 import com.atguigu.exam.vo.QuestionImportVo;
 import com.atguigu.exam.vo.QuestionQueryVo;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.ObjectUtils;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.beans.BeanUtils;
-import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.Collectors;
 
 /**
  * 题目Service实现类
  * 实现题目相关的业务逻辑
+ *
+ * 题目详情两级缓存（cache-aside）：
+ *   L1 Caffeine 本实例内存，L2 redis question:detail:{题目id}，redis过期时间加随机抖动
+ *   不存在的题目id缓存空值标记（L1、L2都是短过期时间），被删除的题目反复访问时不再查库
+ *   题目新增、修改、删除后（事务提交后）删除L2，并通过redis频道通知所有实例删除L1
+ *   缓存中的题目对象被所有请求共享，调用方不能修改
  */
 @Slf4j
 @Service
@@ -44,15 +77,79 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
     private final QuestionMapper questionMapper;
     private final RedisUtils redisUtils;
     private final PaperQuestionMapper paperQuestionMapper;
+    private final ExamGradingService examGradingService;
+    private final PaperService paperService;
+    private final GradingCacheService gradingCacheService;
+    private final QuestionProperties questionProperties;
+    private final TransactionTemplate transactionTemplate;
+    private final LocalCacheEvictor localCacheEvictor;
+    private final QuestionViewCountService questionViewCountService;
+    private final TrendingService trendingService;
+    private final QuestionSearchService questionSearchService;
+    private final QuestionDuplicateService questionDuplicateService;
+    private final QuestionSamplingService questionSamplingService;
+
+    /**
+     * L1中不存在的题目的占位对象（Caffeine不能缓存null）
+     */
+    private static final Question NULL_QUESTION = new Question();
+
+    private Cache<Long, Question> questionDetailCache;
+
+    /**
+     * 组装好的热门题目 key = 题目数量
+     */
+    private Cache<Integer, List<Question>> popularQuestionsCache;
+
+    /**
+     * 游标分页的总数 key = 查询条件
+     */
+    private Cache<String, Long> listCountCache;
+
+    @PostConstruct
+    public void initQuestionDetailCache() {
+        long detailNanos = TimeUnit.MINUTES.toNanos(questionProperties.getDetailCacheL1Minutes());
+        long nullNanos = TimeUnit.SECONDS.toNanos(questionProperties.getDetailNullTtlSeconds());
+        questionDetailCache = Caffeine.newBuilder()
+                .maximumSize(questionProperties.getDetailCacheL1Size())
+                .expireAfter(new Expiry<Long, Question>() {
+                    @Override
+                    public long expireAfterCreate(Long key, Question value, long currentTime) {
+                        return value == NULL_QUESTION ? nullNanos : detailNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long key, Question value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long key, Question value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        popularQuestionsCache = Caffeine.newBuilder()
+                .maximumSize(100)
+                .expireAfterWrite(Duration.ofSeconds(questionProperties.getPopularCacheSeconds()))
+                .build();
+        listCountCache = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(Duration.ofSeconds(CacheConstants.LIST_COUNT_CACHE_SECONDS))
+                .build();
+        localCacheEvictor.subscribe(CacheConstants.QUESTION_DETAIL_EVICT_CHANNEL, questionDetailCache::invalidate);
+    }
 
     @Override
     public void customPageJavaService(Page<Question> pageBean, QuestionQueryVo questionPageVo) {
+        //0.有关键字且全文索引可用时走索引（按相关度排序），否则走数据库like查询
+        if (!ObjectUtils.isEmpty(questionPageVo.getKeyword()) && questionSearchService.isReady()) {
+            searchByIndex(pageBean, questionPageVo);
+            fillQuestionChoiceAndAnswer(pageBean.getRecords());
+            return;
+        }
         //1.分页查询题目列表（多条件）
-        LambdaQueryWrapper<Question> lambdaQueryWrapper = new LambdaQueryWrapper<>();
-        lambdaQueryWrapper.eq(!ObjectUtils.isEmpty(questionPageVo.getType()),Question::getType,questionPageVo.getType());
-        lambdaQueryWrapper.eq(!ObjectUtils.isEmpty(questionPageVo.getDifficulty()),Question::getDifficulty,questionPageVo.getDifficulty());
-        lambdaQueryWrapper.eq(!ObjectUtils.isEmpty(questionPageVo.getCategoryId()),Question::getCategoryId,questionPageVo.getCategoryId());
-        lambdaQueryWrapper.like(!ObjectUtils.isEmpty(questionPageVo.getKeyword()),Question::getTitle,questionPageVo.getKeyword());
+        LambdaQueryWrapper<Question> lambdaQueryWrapper = buildQueryWrapper(questionPageVo);
         //时间的倒序排序！！
         lambdaQueryWrapper.orderByDesc(Question::getCreateTime);
         page(pageBean,lambdaQueryWrapper);
@@ -60,17 +157,59 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
         fillQuestionChoiceAndAnswer(pageBean.getRecords());
     }
 
+    /**
+     * 全文索引检索一页题目：索引返回按相关度排序的题目id和总数，再按id查询题目并恢复顺序
+     */
+    private void searchByIndex(Page<Question> pageBean, QuestionQueryVo questionPageVo) {
+        long offset = (Math.max(pageBean.getCurrent(), 1) - 1) * pageBean.getSize();
+        QuestionSearchService.SearchResult searchResult = questionSearchService.search(questionPageVo.getKeyword(),
+                ObjectUtils.isEmpty(questionPageVo.getType()) ? null : questionPageVo.getType(),
+                ObjectUtils.isEmpty(questionPageVo.getDifficulty()) ? null : questionPageVo.getDifficulty(),
+                questionPageVo.getCategoryId(), offset, (int) pageBean.getSize());
+        pageBean.setTotal(searchResult.total());
+        if (searchResult.ids().isEmpty()) {
+            pageBean.setRecords(new ArrayList<>());
+            return;
+        }
+        Map<Long, Question> questionMap = listByIds(searchResult.ids()).stream()
+                .collect(Collectors.toMap(Question::getId, question -> question));
+        pageBean.setRecords(searchResult.ids().stream().map(questionMap::get).filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public CursorPageResult<Question> customCursorPageQuestions(QuestionQueryVo questionQueryVo, String cursor,
+                                                               Integer size, boolean withTotal) {
+        int limit = CursorPageResult.limitSize(size);
+        PageCursor pageCursor = PageCursor.parse(cursor);
+        //1. 从游标位置往后查询 limit + 1 条（多出的一条用来判断是否有下一页），走(create_time, id)索引，不统计总数
+        LambdaQueryWrapper<Question> lambdaQueryWrapper = buildQueryWrapper(questionQueryVo);
+        if (pageCursor != null) {
+            Date time = pageCursor.toDate();
+            lambdaQueryWrapper.and(wrapper -> wrapper.lt(Question::getCreateTime, time)
+                    .or(orWrapper -> orWrapper.eq(Question::getCreateTime, time).lt(Question::getId, pageCursor.id())));
+        }
+        lambdaQueryWrapper.orderByDesc(Question::getCreateTime).orderByDesc(Question::getId).last("limit " + (limit + 1));
+        List<Question> questionList = list(lambdaQueryWrapper);
+        //2. 需要总数时按查询条件缓存，不是每一页都count
+        Long total = withTotal ? listCountCache.get(String.valueOf(questionQueryVo),
+                key -> count(buildQueryWrapper(questionQueryVo))) : null;
+        CursorPageResult<Question> result = CursorPageResult.of(questionList, limit,
+                question -> PageCursor.encode(question.getCreateTime(), question.getId()), total);
+        //3. 本页题目的选项和答案
+        fillQuestionChoiceAndAnswer(result.getRecords());
+        return result;
+    }
+
     @Override
     public Question customDetailQuestion(Long id) {
-        //1.查询题目详情
-        Question question = questionMapper.customGetById(id);
-        if (question == null){
+        //1.查询题目详情（L1 -> L2 -> 数据库，同一题目并发未命中时只加载一次）
+        Question question = questionDetailCache.get(id, this::loadQuestionDetail);
+        if (question == NULL_QUESTION){
             throw  new RuntimeException("题目查询详情失败！原因可能提前被删除！题目id为：" + id);
         }
-        //2.进行热点题目缓存
-        new Thread(() -> {
-            incrementQuestion(question.getId());
-        }).start();
+        //2.累加浏览次数（本地计数，定时批量写入热门题目排行）
+        questionViewCountService.increment(question.getId());
         return question;
     }
 
@@ -125,6 +264,13 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
         }
         // 4.保存答案对象
         questionAnswerMapper.insert(answer);
+        //   该id之前可能被当作不存在的题目缓存了空值
+        evictQuestionDetail(question.getId());
+        TransactionUtils.afterCommit(() -> {
+            questionSearchService.index(question);
+            questionDuplicateService.index(question);
+            questionSamplingService.index(question);
+        });
         // 5.保证方法的一致性！ 需要添加事务
     }
 
@@ -193,7 +339,22 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
         }
         //5. 进行答案的修改
         questionAnswerMapper.updateById(answer);
-        //6. 保证一致性，添加事务
+        //6. 答案可能变化，删除引用了该题目的试卷已编译的答案和试卷详情缓存
+        paperQuestionMapper.selectList(new LambdaQueryWrapper<PaperQuestion>().eq(PaperQuestion::getQuestionId, question.getId()))
+                .forEach(paperQuestion -> {
+                    Long paperId = Long.valueOf(paperQuestion.getPaperId());
+                    examGradingService.evictAnswerKey(paperId);
+                    paperService.evictPaperDetail(paperId);
+                });
+        //   参考答案或关键词可能变化，之前的AI批阅缓存不再适用
+        gradingCacheService.bumpVersion(question.getId());
+        evictQuestionDetail(question.getId());
+        TransactionUtils.afterCommit(() -> {
+            questionSearchService.index(question);
+            questionDuplicateService.index(question);
+            questionSamplingService.index(question);
+        });
+        //7. 保证一致性，添加事务
     }
 
     /**
@@ -223,60 +384,105 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
         //3. 删除子表 答案和选项表
         questionAnswerMapper.delete(new LambdaQueryWrapper<QuestionAnswer>().eq(QuestionAnswer::getQuestionId,id));
         questionChoiceMapper.delete(new LambdaQueryWrapper<QuestionChoice>().eq(QuestionChoice::getQuestionId,id));
+        //4. 删除题目详情缓存，并从热门题目排行和题目内存索引（全文检索、相似题目、随机抽样）中移除
+        evictQuestionDetail(id);
+        TransactionUtils.afterCommit(() -> {
+            trendingService.remove(CacheConstants.TRENDING_QUESTION, List.of(id));
+            questionSearchService.remove(id);
+            questionDuplicateService.remove(id);
+            questionSamplingService.remove(id);
+        });
     }
 
     @Override
     public List<Question> customFindPopularQuestions(Integer size) {
-        //1. 定义热门题目集合（总集合）
-        List<Question> popularQuestions = new ArrayList<>();
-
-        //2. 去zset中获取热门题目，并且添加到总集合中
-        // 获取题目排行，需要获取id和分数！ 分数用于后续的排序处理！
-        Set<ZSetOperations.TypedTuple<Object>> tupleSet = redisUtils.zReverseRangeWithScores(CacheConstants.POPULAR_QUESTIONS_KEY, 0, size - 1);
-        //定义接收id的集合
-        List<Long> idsSet = new ArrayList<>();
-        if (tupleSet != null && tupleSet.size() > 0) {
-            //根据排行榜的积分，倒序进行Id查询！
-            List<Long> idsList = tupleSet.stream().sorted((o1, o2) -> Integer.compare(o2.getScore().intValue(), o1.getScore().intValue()))
-                    .map(o -> Long.valueOf(o.getValue().toString())).collect(Collectors.toList());
-            //复制，用于后面补充！！
-            idsSet.addAll(idsList);
-            log.debug("从redis获取热门题目的id集合，且保证顺序：{}",idsList);
-
-            for (Long id : idsList) {
-                Question question = getById(id);
-                if (question != null){
-                    //防止redis有缓存，但是数据库中没有！ 后续优化，删除题目，应该删除热题榜单中对应的value
+        //首页频繁调用，组装好的热门题目（含选项和答案）按数量缓存几秒
+        int limit = Math.max(1, Math.min(size == null ? CacheConstants.POPULAR_QUESTIONS_COUNT : size,
+                questionProperties.getPopularMaxSize()));
+        return popularQuestionsCache.get(limit, this::loadPopularQuestions);
+    }
+
+    @Override
+    public Integer customRefreshPopularQuestions() {
+        //1. 本地缓冲的浏览次数先写入计数桶，并立即合并排行
+        questionViewCountService.flush();
+        trendingService.rebuild(CacheConstants.TRENDING_QUESTION);
+        //2. 排行中已经被删除的题目一次in查询找出并移除
+        List<Long> ids = trendingService.topIds(CacheConstants.TRENDING_QUESTION, Integer.MAX_VALUE);
+        int total = ids.size();
+        if (total > 0) {
+            Set<Long> existIds = new HashSet<>();
+            //按1000个id一批查询，避免in语句过长
+            for (int from = 0; from < ids.size(); from += 1000) {
+                List<Long> idChunk = ids.subList(from, Math.min(from + 1000, ids.size()));
+                listObjs(new LambdaQueryWrapper<Question>().select(Question::getId).in(Question::getId, idChunk),
+                        id -> existIds.add(Long.valueOf(id.toString())));
+            }
+            List<Long> removed = ids.stream().filter(id -> !existIds.contains(id)).toList();
+            trendingService.remove(CacheConstants.TRENDING_QUESTION, removed);
+            total -= removed.size();
+            log.info("热门题目排行重建完成，排行题目数：{}，移除已删除题目数：{}", total, removed.size());
+        }
+        //3. 删除本实例组装好的热门题目缓存
+        popularQuestionsCache.invalidateAll();
+        return total;
+    }
+
+    @Override
+    public List<Question> customRandomQuestions(Integer count, Long categoryId, String difficulty, String type) {
+        if (!questionSamplingService.isReady()) {
+            throw new RuntimeException("题目抽样索引正在构建中，请稍后再试！");
+        }
+        int limit = Math.max(1, Math.min(count == null ? 10 : count, questionProperties.getRandomMaxSize()));
+        //1. 内存索引中抽取题目id（不查询数据库排序）
+        List<Long> ids = questionSamplingService.sample(categoryId == null ? null : List.of(categoryId),
+                ObjectUtils.isEmpty(type) ? null : type, ObjectUtils.isEmpty(difficulty) ? null : difficulty, limit, null);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        //2. 一次in查询题目，按抽取顺序返回
+        Map<Long, Question> questionMap = listByIds(ids).stream().collect(Collectors.toMap(Question::getId, question -> question));
+        List<Question> questionList = ids.stream().map(questionMap::get).filter(Objects::nonNull).collect(Collectors.toList());
+        //3. 选项和答案
+        fillQuestionChoiceAndAnswer(questionList);
+        return questionList;
+    }
+
+    /**
+     * 组装热门题目：按排行（最近N小时、按时间衰减）取id，一次in查询后按排名重排，不足的数量用最新题目补充
+     */
+    private List<Question> loadPopularQuestions(Integer size) {
+        //1. 排行取出的id已经按分数排好
+        List<Long> ids = trendingService.topIds(CacheConstants.TRENDING_QUESTION, size);
+        List<Question> popularQuestions = new ArrayList<>(size);
+        if (!ids.isEmpty()) {
+            Map<Long, Question> questionMap = listByIds(ids).stream()
+                    .collect(Collectors.toMap(Question::getId, question -> question));
+            for (Long id : ids) {
+                //排行中有但是数据库中已经删除的题目跳过
+                Question question = questionMap.get(id);
+                if (question != null) {
                     popularQuestions.add(question);
                 }
             }
-            log.debug("去redis查询的热门题目，题目数：{},题目内容为：{}",popularQuestions.size(),popularQuestions);
         }
-
-        //3. 检查是否已经满足size
+        //2. 数量不足时，用非热门题目按创建时间倒序补充
         int diff = size - popularQuestions.size();
-        if(diff > 0){
-            //4. 不满足，题目表中 非热门题目 时间倒序 limit 差数量
+        if (diff > 0) {
             LambdaQueryWrapper<Question> lambdaQueryWrapper = new LambdaQueryWrapper<>();
-            lambdaQueryWrapper.notIn(Question::getId,idsSet);
+            lambdaQueryWrapper.notIn(!ids.isEmpty(), Question::getId, ids);
             lambdaQueryWrapper.orderByDesc(Question::getCreateTime);
-            //limit diff;
             lambdaQueryWrapper.last("limit " + diff);
-            List<Question> questionDiffList = list(lambdaQueryWrapper);
-            log.debug("去question表中补充热门题目，题目数：{},题目内容为：{}",questionDiffList.size(),questionDiffList);
-            if (questionDiffList != null && questionDiffList.size() > 0) {
-                // 5. 补充也添加到总集合中
-                popularQuestions.addAll(questionDiffList);
-            }
+            popularQuestions.addAll(list(lambdaQueryWrapper));
         }
-        //6. 总集合一起进行答案和选项填充
+        //3. 总集合一起进行答案和选项填充（各一次in查询）
         fillQuestionChoiceAndAnswer(popularQuestions);
-        //7. 返回即可
-        return popularQuestions;
+        log.debug("热门题目组装完成，题目数：{}，其中排行题目数：{}", popularQuestions.size(), ids.size());
+        return List.copyOf(popularQuestions);
     }
 
     @Override
-    public List<QuestionImportVo> preViewExcel(MultipartFile file) throws IOException {
+    public ExcelPreviewVo preViewExcel(MultipartFile file, Integer limit) throws IOException {
         //数据校验
         if (file == null || file.isEmpty()){
             throw new RuntimeException("预览数据的文件为空！");
@@ -286,10 +492,84 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
         if (!fileName.endsWith(".xls") && !fileName.endsWith(".xlsx")){
             throw new RuntimeException("预览数据的文件格式错误，必须是 .xls或者.xlsx！");
         }
-        //解析数据
-        List<QuestionImportVo> questionImportVoList = ExcelUtil.parseExcel(file);
+        int previewRows = limit == null || limit < 1 ? questionProperties.getPreviewRows()
+                : Math.min(limit, questionProperties.getPreviewMaxRows());
+        //流式解析数据，只保留前previewRows道题目
+        ExcelPreviewVo excelPreviewVo = new ExcelPreviewVo();
+        List<QuestionImportVo> rows = excelPreviewVo.getRows();
+        int total = ExcelUtil.streamExcel(file, (question, rowNum) -> {
+            if (rows.size() < previewRows) {
+                rows.add(question);
+            }
+        });
         //返回结果
-        return questionImportVoList;
+        excelPreviewVo.setTotal(total);
+        return excelPreviewVo;
+    }
+
+    @Override
+    public void customExportQuestions(QuestionQueryVo questionQueryVo, OutputStream out) throws IOException {
+        int pageSize = questionProperties.getExportPageSize();
+        SXSSFWorkbook workbook = ExcelUtil.createStreamingWorkbook();
+        int rowIndex = 1;
+        try {
+            Sheet sheet = workbook.createSheet("题目");
+            //导入模板的列 + 题目id、创建时间
+            String[] headers = Arrays.copyOf(ExcelUtil.QUESTION_HEADERS, ExcelUtil.QUESTION_HEADERS.length + 2);
+            headers[headers.length - 2] = "题目ID";
+            headers[headers.length - 1] = "创建时间";
+            ExcelUtil.writeRow(sheet, 0, (Object[]) headers);
+            long lastId = 0;
+            while (true) {
+                //id游标分页：where id > lastId order by id limit pageSize，不用offset，每一页的查询代价相同
+                List<Question> questionList = list(buildQueryWrapper(questionQueryVo)
+                        .gt(Question::getId, lastId)
+                        .orderByAsc(Question::getId)
+                        .last("limit " + pageSize));
+                if (questionList.isEmpty()) {
+                    break;
+                }
+                //一页题目的选项和答案各一次in查询
+                fillQuestionChoiceAndAnswer(questionList);
+                for (Question question : questionList) {
+                    ExcelUtil.writeRow(sheet, rowIndex++, toExportRow(question));
+                }
+                lastId = questionList.get(questionList.size() - 1).getId();
+                if (questionList.size() < pageSize) {
+                    break;
+                }
+            }
+            ExcelUtil.writeStreamingWorkbook(workbook, out);
+        } finally {
+            //导出中途异常（查询失败、客户端断开）时也删除临时文件
+            ExcelUtil.disposeStreamingWorkbook(workbook);
+        }
+        log.info("导出题目完成！导出数量：{}", rowIndex - 1);
+    }
+
+    /**
+     * 题目转换成导出行，列顺序和导入模板一致
+     */
+    private Object[] toExportRow(Question question) {
+        Object[] row = new Object[ExcelUtil.QUESTION_HEADERS.length + 2];
+        row[0] = question.getTitle();
+        row[1] = question.getType();
+        row[2] = Boolean.TRUE.equals(question.getMulti()) ? "是" : "否";
+        row[3] = question.getCategoryId();
+        row[4] = question.getDifficulty();
+        row[5] = question.getScore();
+        //模板只有A-D四个选项列
+        List<QuestionChoice> choices = question.getChoices();
+        if (choices != null) {
+            for (int i = 0; i < Math.min(4, choices.size()); i++) {
+                row[6 + i] = choices.get(i).getContent();
+            }
+        }
+        row[10] = question.getAnswer() == null ? null : question.getAnswer().getAnswer();
+        row[11] = question.getAnalysis();
+        row[12] = question.getId();
+        row[13] = question.getCreateTime();
+        return row;
     }
 
     /**
@@ -301,27 +581,173 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
      */
     @Override
     public String importBatchQuestions(List<QuestionImportVo> questions) {
+        QuestionImportResultVo result = customBulkImportQuestions(questions);
+        //导入失败的提示
+        result.getFailures().forEach(failure ->
+                log.debug("第{}题：{} 题目导入失败！原因：{}", failure.getIndex(), failure.getTitle(), failure.getMessage()));
+        return String.valueOf(result.getSuccessCount());
+    }
+
+    /**
+     * 批量题目导入（集合操作）
+     * 实现策略：按importChunkSize分批，每批：
+     * 1. vo转换，转换失败的行记录失败
+     * 2. 一次查询查出本批标题中已经存在的(类型, 标题)，和本批内部重复的一起记录失败；
+     *    相似题目索引可用时，和题库或本批前面的题目相似的题目也记录失败
+     * 3. 一个事务中批量插入题目（回填自增id），再批量插入选项和答案
+     * 4. 批量插入失败时，本批逐题保存，保证和逐条导入一样的部分成功语义
+     */
+    @Override
+    public QuestionImportResultVo customBulkImportQuestions(List<QuestionImportVo> questions) {
         //1. 进行数据校验
         if (questions == null || questions.isEmpty()){
             throw new RuntimeException("导入的题目集合为空！");
         }
+        QuestionImportResultVo result = new QuestionImportResultVo();
+        result.setTotal(questions.size());
+        //本次导入中已经出现过的 类型+标题，防止文件内部重复
+        Set<String> importedKeys = new HashSet<>();
+        int chunkSize = questionProperties.getImportChunkSize();
+        for (int from = 0; from < questions.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, questions.size());
+            importChunk(questions, from, to, i -> i + 1, importedKeys, result);
+        }
+        log.info("批量导入题目完成！总数：{}，成功：{}，失败：{}", result.getTotal(), result.getSuccessCount(), result.getFailCount());
+        return result;
+    }
 
-        //3. 循环 + try 调用保存的方法 [部分成功]
-        int successCount = 0;
-        for (int i = 0; i < questions.size(); i++) {
+    @Override
+    public QuestionImportResultVo customImportChunk(List<QuestionImportVo> questions, List<Integer> rowNumbers, Set<String> importedKeys) {
+        QuestionImportResultVo result = new QuestionImportResultVo();
+        result.setTotal(questions.size());
+        importChunk(questions, 0, questions.size(), rowNumbers::get, importedKeys, result);
+        return result;
+    }
+
+    /**
+     * 导入[from, to)范围的题目
+     * @param rowNumber 题目下标 -> 失败明细中的序号
+     */
+    private void importChunk(List<QuestionImportVo> questions, int from, int to, IntUnaryOperator rowNumber,
+                             Set<String> importedKeys, QuestionImportResultVo result) {
+        //1. 转换
+        List<Question> candidates = new ArrayList<>(to - from);
+        List<Integer> candidateIndexes = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            QuestionImportVo questionImportVo = questions.get(i);
             try {
-                //2. 进行vo - question [提取一个方法]
-                Question question =  convertQuestionImportVoToQuestion(questions.get(i));
-                //数据单体保存
-                customSaveQuestion(question);
-                //正确技术统计
-                successCount++;
-            }catch (Exception e){
-                //导入失败的提示
-                log.debug("{}题目导入失败！",questions.get(i).getTitle());
+                candidates.add(convertQuestionImportVoToQuestion(questionImportVo));
+                candidateIndexes.add(i);
+            } catch (Exception e) {
+                result.fail(rowNumber.applyAsInt(i), questionImportVo.getTitle(), "题目数据格式错误：%s".formatted(e.getMessage()));
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        //2. 查重：一次查询本批标题在库中已有的 类型+标题
+        Set<String> titles = candidates.stream().map(Question::getTitle).filter(Objects::nonNull).collect(Collectors.toSet());
+        Set<String> existingKeys = titles.isEmpty() ? Set.of() : baseMapper.selectList(new LambdaQueryWrapper<Question>()
+                        .select(Question::getType, Question::getTitle)
+                        .in(Question::getTitle, titles))
+                .stream().map(question -> question.getType() + ":" + question.getTitle()).collect(Collectors.toSet());
+        //   相似题目（标点、空白、选项顺序不同）：索引可用时和题库比较，再和本批前面的题目比较
+        boolean checkSimilar = questionDuplicateService.isReady();
+        Map<String, SimHashIndex> chunkIndexes = new HashMap<>();
+        List<Question> toInsert = new ArrayList<>(candidates.size());
+        List<Integer> toInsertIndexes = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            Question question = candidates.get(i);
+            String key = question.getType() + ":" + question.getTitle();
+            if (existingKeys.contains(key) || !importedKeys.add(key)) {
+                result.fail(rowNumber.applyAsInt(candidateIndexes.get(i)), question.getTitle(),
+                        "在%s下，存在%s 名称的题目已经存在！保存失败！".formatted(question.getType(), question.getTitle()));
+                continue;
             }
+            if (checkSimilar) {
+                List<String> choices = question.getChoices() == null ? null
+                        : question.getChoices().stream().map(QuestionChoice::getContent).toList();
+                Long duplicateId = questionDuplicateService.findDuplicate(question.getType(), question.getTitle(), choices);
+                if (duplicateId != null) {
+                    result.fail(rowNumber.applyAsInt(candidateIndexes.get(i)), question.getTitle(),
+                            "与题库中的题目（id：%s）相似，疑似重复题目！保存失败！".formatted(duplicateId));
+                    continue;
+                }
+                long fingerprint = SimHashIndex.fingerprint(question.getTitle(), choices);
+                SimHashIndex chunkIndex = chunkIndexes.computeIfAbsent(String.valueOf(question.getType()), type -> new SimHashIndex());
+                Long similar = chunkIndex.findNearest(fingerprint, questionProperties.getDuplicateMaxDistance(), null);
+                if (similar != null) {
+                    result.fail(rowNumber.applyAsInt(candidateIndexes.get(i)), question.getTitle(),
+                            "与本次导入的第%s题相似，疑似重复题目！保存失败！".formatted(rowNumber.applyAsInt(candidateIndexes.get(similar.intValue()))));
+                    continue;
+                }
+                chunkIndex.put(i, fingerprint);
+            }
+            toInsert.add(question);
+            toInsertIndexes.add(candidateIndexes.get(i));
+        }
+        if (toInsert.isEmpty()) {
+            return;
         }
-        return String.valueOf(successCount);
+        //3. 批量插入
+        try {
+            transactionTemplate.executeWithoutResult(status -> bulkInsertQuestions(toInsert));
+            questionSearchService.indexBatch(toInsert);
+            questionDuplicateService.indexBatch(toInsert);
+            questionSamplingService.indexBatch(toInsert);
+            result.setSuccessCount(result.getSuccessCount() + toInsert.size());
+        } catch (Exception e) {
+            //4. 降级逐题保存
+            log.warn("批量插入{}道题目失败，降级为逐题保存！原因：{}", toInsert.size(), e.getMessage());
+            for (int i = 0; i < toInsert.size(); i++) {
+                int index = toInsertIndexes.get(i);
+                try {
+                    Question question = convertQuestionImportVoToQuestion(questions.get(index));
+                    transactionTemplate.executeWithoutResult(status -> customSaveQuestion(question));
+                    result.setSuccessCount(result.getSuccessCount() + 1);
+                } catch (Exception ex) {
+                    result.fail(rowNumber.applyAsInt(index), questions.get(index).getTitle(), ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 批量插入题目、选项和答案（调用方负责事务）
+     */
+    private void bulkInsertQuestions(List<Question> questionList) {
+        //题目插入后自增id回填
+        baseMapper.insertBatchSomeColumn(questionList);
+        List<QuestionChoice> choiceList = new ArrayList<>();
+        List<QuestionAnswer> answerList = new ArrayList<>(questionList.size());
+        for (Question question : questionList) {
+            QuestionAnswer answer = question.getAnswer();
+            answer.setQuestionId(question.getId());
+            if ("CHOICE".equals(question.getType()) && question.getChoices() != null) {
+                //和单题保存一样：选项按顺序排序，根据正确选项拼接答案 A,C
+                List<QuestionChoice> choices = question.getChoices();
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < choices.size(); i++) {
+                    QuestionChoice choice = choices.get(i);
+                    choice.setSort(i);
+                    choice.setQuestionId(question.getId());
+                    choiceList.add(choice);
+                    if (Boolean.TRUE.equals(choice.getIsCorrect())) {
+                        if (sb.length() > 0) {
+                            sb.append(",");
+                        }
+                        sb.append((char) ('A' + i));
+                    }
+                }
+                answer.setAnswer(sb.toString());
+            }
+            answerList.add(answer);
+        }
+        int chunkSize = questionProperties.getImportChunkSize();
+        for (int from = 0; from < choiceList.size(); from += chunkSize) {
+            questionChoiceMapper.insertBatchSomeColumn(choiceList.subList(from, Math.min(from + chunkSize, choiceList.size())));
+        }
+        questionAnswerMapper.insertBatchSomeColumn(answerList);
     }
 
     private Question convertQuestionImportVoToQuestion(QuestionImportVo questionImportVo) {
@@ -362,11 +788,50 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
 
         return question;
     }
-    //定义进行题目访问次数增长的方法
-//异步方法
-    private void incrementQuestion(Long questionId){
-        Double score = redisUtils.zIncrementScore(CacheConstants.POPULAR_QUESTIONS_KEY,questionId,1);
-        log.info("完成{}题目分数累计，累计后分数为：{}",questionId,score);
+    /**
+     * 题目列表的查询条件（分类、难度、题型、标题关键字）
+     */
+    private LambdaQueryWrapper<Question> buildQueryWrapper(QuestionQueryVo questionQueryVo) {
+        LambdaQueryWrapper<Question> lambdaQueryWrapper = new LambdaQueryWrapper<>();
+        lambdaQueryWrapper.eq(!ObjectUtils.isEmpty(questionQueryVo.getType()), Question::getType, questionQueryVo.getType());
+        lambdaQueryWrapper.eq(!ObjectUtils.isEmpty(questionQueryVo.getDifficulty()), Question::getDifficulty, questionQueryVo.getDifficulty());
+        lambdaQueryWrapper.eq(!ObjectUtils.isEmpty(questionQueryVo.getCategoryId()), Question::getCategoryId, questionQueryVo.getCategoryId());
+        lambdaQueryWrapper.like(!ObjectUtils.isEmpty(questionQueryVo.getKeyword()), Question::getTitle, questionQueryVo.getKeyword());
+        return lambdaQueryWrapper;
+    }
+
+    /**
+     * 两级缓存未命中时的加载：先查redis，再查数据库并回写redis
+     *   不存在的题目返回NULL_QUESTION，redis中保存空值标记
+     */
+    private Question loadQuestionDetail(Long questionId) {
+        String key = CacheConstants.QUESTION_DETAIL_KEY + questionId;
+        Object cached = redisUtils.get(key);
+        if (cached instanceof Question question) {
+            return question;
+        }
+        if (CacheConstants.NULL_VALUE.equals(cached)) {
+            return NULL_QUESTION;
+        }
+        Question question = questionMapper.customGetById(questionId);
+        if (question == null) {
+            redisUtils.set(key, CacheConstants.NULL_VALUE, questionProperties.getDetailNullTtlSeconds());
+            return NULL_QUESTION;
+        }
+        long ttl = questionProperties.getDetailCacheTtlSeconds()
+                + ThreadLocalRandom.current().nextLong(questionProperties.getDetailCacheTtlJitterSeconds() + 1);
+        redisUtils.set(key, question, ttl);
+        return question;
+    }
+
+    /**
+     * 删除题目详情缓存（L1、L2，并通知其他实例）
+     */
+    private void evictQuestionDetail(Long questionId) {
+        localCacheEvictor.evictAfterCommit(CacheConstants.QUESTION_DETAIL_EVICT_CHANNEL, questionId, () -> {
+            questionDetailCache.invalidate(questionId);
+            redisUtils.delete(CacheConstants.QUESTION_DETAIL_KEY + questionId);
+        });
     }
 
     private void fillQuestionChoiceAndAnswer(List<Question> questionList) {
@@ -396,7 +861,7 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
             question.setAnswer(answerMap.get(question.getId()));
             //选择题才有选项
             if ("CHOICE".equals(question.getType())){
-                List<QuestionChoice> questionChoices = questionChoiceMap.get(question.getId());
+                List<QuestionChoice> questionChoices = questionChoiceMap.getOrDefault(question.getId(), new ArrayList<>());
                 questionChoices.sort(Comparator.comparingInt(QuestionChoice::getSort));
                 question.setChoices(questionChoices);
             }
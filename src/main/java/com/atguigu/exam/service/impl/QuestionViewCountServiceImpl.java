@@ -0,0 +1,102 @@
+package com.atguigu.exam.service.impl;
+
+import com.atguigu.exam.config.properties.QuestionProperties;
+import com.atguigu.exam.service.QuestionViewCountService;
+import com.atguigu.exam.service.TrendingService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 浏览次数统计服务实现类（题目、视频）
+ *
+ * 每个排行类型一组计数器，每道题（视频）一个LongAdder（分段累加，高并发浏览同一道题时没有竞争），浏览时只做一次内存累加
+ * 定时把所有计数器的增量取出并清零，每个排行类型合并成一次管道执行的ZINCRBY写入当前小时的计数桶
+ *   一个周期内没有浏览的计数器会被移除，和移除同时发生的极少数浏览可能不被统计（热门排行可以接受）
+ *   缓冲的元素数超过上限时由浏览线程立即写入一次，应用关闭时写入剩余的计数
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QuestionViewCountServiceImpl implements QuestionViewCountService {
+
+    private final TrendingService trendingService;
+    private final QuestionProperties questionProperties;
+
+    /**
+     * 本地浏览计数器 key = 排行类型 -> (题目id或视频id -> 计数器)
+     */
+    private final Map<String, Map<Long, LongAdder>> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 同一时间只执行一次写入
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @Override
+    public void increment(String type, Long id) {
+        Map<Long, LongAdder> typeCounters = counters.computeIfAbsent(type, key -> new ConcurrentHashMap<>());
+        typeCounters.computeIfAbsent(id, key -> new LongAdder()).increment();
+        if (typeCounters.size() > questionProperties.getViewBufferMaxSize() && flushLock.tryLock()) {
+            try {
+                doFlush();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${question.view-flush-interval-ms:1000}")
+    @Override
+    public void flush() {
+        flushLock.lock();
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+        log.info("应用关闭，浏览次数已全部写入redis");
+    }
+
+    private void doFlush() {
+        counters.forEach(this::doFlush);
+    }
+
+    private void doFlush(String type, Map<Long, LongAdder> typeCounters) {
+        Map<Long, Long> deltas = new HashMap<>();
+        typeCounters.forEach((id, counter) -> {
+            long delta = counter.sumThenReset();
+            if (delta > 0) {
+                deltas.put(id, delta);
+            } else {
+                //空闲计数器移除，避免map无限增长
+                typeCounters.remove(id, counter);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            trendingService.record(type, deltas);
+            log.debug("浏览次数写入redis，类型：{}，元素数：{}，浏览次数：{}", type, deltas.size(),
+                    deltas.values().stream().mapToLong(Long::longValue).sum());
+        } catch (Exception e) {
+            //写入失败的增量放回计数器，下个周期重试
+            deltas.forEach((id, delta) -> typeCounters.computeIfAbsent(id, key -> new LongAdder()).add(delta));
+            log.error("浏览次数写入redis失败，下次重试，类型：{}，元素数：{}", type, deltas.size(), e);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.atguigu.exam.service.impl;
+
+import com.atguigu.exam.common.CacheConstants;
+import com.atguigu.exam.config.properties.TrendingProperties;
+import com.atguigu.exam.service.TrendingService;
+import com.atguigu.exam.utils.RedisUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 热门排行服务实现类
+ *
+ * 计数桶：trending:{type}:h:{从1970年开始的小时数}，每小时一个zset，写入时设置过期时间为窗口长度 + 1小时，内存有上限
+ * 排行：trending:{type}:window，定时用 ZUNIONSTORE WEIGHTS 合并最近N小时的计数桶，越早的桶权重越低（指数衰减）
+ *   合并后只保留前 maxSize 个元素，查询排行只是一次 ZREVRANGE，复杂度 O(log n + limit)
+ *   多个实例都会定时合并，结果相同，互不影响
+ *   查询时排行不存在（刚启动或没有浏览）立即合并一次，同一类型在一个合并间隔内最多按需合并一次
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TrendingServiceImpl implements TrendingService {
+
+    private static final long HOUR_MILLIS = 3600_000L;
+
+    private final RedisUtils redisUtils;
+    private final TrendingProperties trendingProperties;
+
+    /**
+     * 本实例使用过的排行类型，定时合并时遍历
+     */
+    private final Set<String> types = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 每种排行上次合并的时间
+     */
+    private final Map<String, AtomicLong> lastRebuildTimes = new ConcurrentHashMap<>();
+
+    @Override
+    public void record(String type, Map<Long, Long> deltas) {
+        types.add(type);
+        long ttl = (trendingProperties.getWindowHours() + 1) * 3600L;
+        redisUtils.zIncrementScoreBatch(bucketKey(type, currentHour()), deltas, ttl);
+    }
+
+    @Override
+    public List<Long> topIds(String type, int limit) {
+        types.add(type);
+        Set<Object> members = redisUtils.zReverseRange(windowKey(type), 0, limit - 1);
+        if ((members == null || members.isEmpty()) && claimRebuild(type)) {
+            //排行还没有生成（刚启动或已过期），立即合并一次；窗口内没有浏览时排行为空，不重复合并
+            rebuild(type);
+            members = redisUtils.zReverseRange(windowKey(type), 0, limit - 1);
+        }
+        List<Long> ids = new ArrayList<>(members == null ? 0 : members.size());
+        if (members != null) {
+            members.forEach(member -> ids.add(Long.valueOf(member.toString())));
+        }
+        return ids;
+    }
+
+    @Override
+    public void rebuild(String type) {
+        types.add(type);
+        lastRebuildTime(type).set(System.currentTimeMillis());
+        List<String> bucketKeys = windowBucketKeys(type);
+        double[] weights = new double[bucketKeys.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = Math.pow(trendingProperties.getDecay(), i);
+        }
+        String windowKey = windowKey(type);
+        Long size = redisUtils.zUnionAndStore(windowKey, bucketKeys, weights);
+        if (size != null && size > trendingProperties.getMaxSize()) {
+            //只保留分数最高的 maxSize 个
+            redisUtils.zRemoveRange(windowKey, 0, size - trendingProperties.getMaxSize() - 1);
+        }
+        //排行在下次合并前一直有效，实例全部停止后自动过期
+        redisUtils.expire(windowKey, trendingProperties.getRebuildIntervalMs() / 1000 * 2 + 60);
+        log.debug("热门排行：{} 合并完成，计数桶数：{}，排行元素数：{}", type, bucketKeys.size(), size);
+    }
+
+    @Override
+    public void remove(String type, Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        List<String> keys = windowBucketKeys(type);
+        keys.add(windowKey(type));
+        redisUtils.zRemoveBatch(keys, ids.toArray());
+    }
+
+    /**
+     * 定时合并所有排行
+     */
+    @Scheduled(fixedDelayString = "${trending.rebuild-interval-ms:60000}")
+    public void rebuildAll() {
+        for (String type : types) {
+            try {
+                rebuild(type);
+            } catch (Exception e) {
+                log.error("热门排行：{} 合并失败", type, e);
+            }
+        }
+    }
+
+    /**
+     * 距离上次合并超过合并间隔时抢占按需合并（并发查询只有一个线程合并）
+     */
+    private boolean claimRebuild(String type) {
+        AtomicLong lastRebuildTime = lastRebuildTime(type);
+        long last = lastRebuildTime.get();
+        long now = System.currentTimeMillis();
+        return now - last >= trendingProperties.getRebuildIntervalMs() && lastRebuildTime.compareAndSet(last, now);
+    }
+
+    private AtomicLong lastRebuildTime(String type) {
+        return lastRebuildTimes.computeIfAbsent(type, key -> new AtomicLong());
+    }
+
+    /**
+     * 窗口内的计数桶key，从当前小时开始往前
+     */
+    private List<String> windowBucketKeys(String type) {
+        long hour = currentHour();
+        List<String> keys = new ArrayList<>(trendingProperties.getWindowHours() + 1);
+        for (int i = 0; i < trendingProperties.getWindowHours(); i++) {
+            keys.add(bucketKey(type, hour - i));
+        }
+        return keys;
+    }
+
+    private long currentHour() {
+        return System.currentTimeMillis() / HOUR_MILLIS;
+    }
+
+    private String bucketKey(String type, long hour) {
+        return CacheConstants.TRENDING_KEY_PREFIX + type + ":h:" + hour;
+    }
+
+    private String windowKey(String type) {
+        return CacheConstants.TRENDING_KEY_PREFIX + type + ":window";
+    }
+}
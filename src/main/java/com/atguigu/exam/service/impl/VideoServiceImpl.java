@@ -1,5 +1,7 @@
 package com.atguigu.exam.service.impl;
 
+import com.atguigu.exam.common.CacheConstants;
+import com.atguigu.exam.config.properties.TrendingProperties;
 import com.atguigu.exam.entity.Video;
 import com.atguigu.exam.entity.VideoCategory;
 import com.atguigu.exam.entity.VideoLike;
@@ -9,21 +11,35 @@ import com.atguigu.exam.mapper.VideoLikeMapper;
 import com.atguigu.exam.mapper.VideoMapper;
 import com.atguigu.exam.mapper.VideoViewMapper;
 import com.atguigu.exam.service.FileUploadService;
+import com.atguigu.exam.service.QuestionViewCountService;
+import com.atguigu.exam.service.TrendingService;
 import com.atguigu.exam.service.VideoService;
 import com.atguigu.exam.utils.IpUtils;
+import com.atguigu.exam.utils.PageCursor;
+import com.atguigu.exam.utils.TransactionUtils;
+import com.atguigu.exam.vo.CursorPageResult;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 视频Service实现类
@@ -47,6 +63,36 @@ public class VideoServiceImpl implements VideoService {
     @Autowired
     private FileUploadService fileUploadService;
 
+    @Autowired
+    private TrendingService trendingService;
+
+    @Autowired
+    private QuestionViewCountService viewCountService;
+
+    @Autowired
+    private TrendingProperties trendingProperties;
+
+    /**
+     * 按总观看次数排行的视频id key = 数量，热门排行不足时用于补充
+     */
+    private Cache<Integer, List<Long>> popularFallbackCache;
+
+    @PostConstruct
+    public void initPopularFallbackCache() {
+        popularFallbackCache = Caffeine.newBuilder()
+                .maximumSize(64)
+                .expireAfterWrite(Duration.ofSeconds(trendingProperties.getFallbackCacheSeconds()))
+                .build();
+    }
+
+    /**
+     * 游标分页的总数 key = 查询条件
+     */
+    private final Cache<String, Long> countCache = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(Duration.ofSeconds(CacheConstants.LIST_COUNT_CACHE_SECONDS))
+            .build();
+
     @Override
     public IPage<Video> getPublishedVideos(Integer page, Integer size, Long categoryId, String keyword, HttpServletRequest request) {
         Page<Video> pageObj = new Page<>(page, size);
@@ -66,6 +112,32 @@ public class VideoServiceImpl implements VideoService {
         return result;
     }
 
+    @Override
+    public CursorPageResult<Video> getPublishedVideosByCursor(String cursor, Integer size, Long categoryId, String keyword,
+                                                              boolean withTotal, HttpServletRequest request) {
+        int limit = CursorPageResult.limitSize(size);
+        PageCursor pageCursor = PageCursor.parse(cursor);
+        // 多查询一条用来判断是否有下一页
+        List<Video> videos = videoMapper.getPublishedVideosAfter(categoryId, keyword,
+                pageCursor == null ? null : pageCursor.toLocalDateTime(),
+                pageCursor == null ? null : pageCursor.id(), limit + 1);
+        // 需要总数时按查询条件缓存，不是每一页都count
+        Long total = withTotal ? countCache.get(categoryId + ":" + keyword,
+                key -> videoMapper.countPublishedVideos(categoryId, keyword)) : null;
+        CursorPageResult<Video> result = CursorPageResult.of(videos, limit,
+                video -> PageCursor.encode(video.getCreatedAt(), video.getId()), total);
+
+        // 如果有IP，填充点赞状态
+        if (request != null) {
+            String userIp = IpUtils.getClientIp(request);
+            result.getRecords().forEach(video -> {
+                video.setIsLiked(videoLikeMapper.isLikedByIp(video.getId(), userIp));
+                formatVideoInfo(video);
+            });
+        }
+        return result;
+    }
+
     @Override
     public Video getVideoDetail(Long id, HttpServletRequest request) {
         Video video = videoMapper.selectById(id);
@@ -105,7 +177,25 @@ public class VideoServiceImpl implements VideoService {
 
     @Override
     public List<Video> getPopularVideos(Integer limit) {
-        List<Video> videos = videoMapper.getPopularVideos(limit);
+        // 按最近N小时的观看排行取id，排行不足时用缓存的总观看次数排行补充（不对每个请求全表排序）
+        Set<Long> ids = new LinkedHashSet<>(trendingService.topIds(CacheConstants.TRENDING_VIDEO, limit));
+        if (ids.size() < limit) {
+            // 多取一倍，和排行中的id去重后仍然够数
+            for (Long id : popularFallbackCache.get(limit, size -> videoMapper.getPopularVideos(size * 2).stream()
+                    .map(Video::getId).toList())) {
+                if (ids.size() >= limit) {
+                    break;
+                }
+                ids.add(id);
+            }
+        }
+        // 一次查询后按排名重排
+        List<Video> videos = new ArrayList<>(ids.size());
+        if (!ids.isEmpty()) {
+            Map<Long, Video> videoMap = videoMapper.getPublishedVideosByIds(new ArrayList<>(ids)).stream()
+                    .collect(Collectors.toMap(Video::getId, video -> video));
+            ids.stream().map(videoMap::get).filter(Objects::nonNull).forEach(videos::add);
+        }
         videos.forEach(this::formatVideoInfo);
         return videos;
     }
@@ -137,6 +227,8 @@ public class VideoServiceImpl implements VideoService {
         
         // 增加视频观看次数
         videoMapper.incrementViewCount(videoId);
+        // 事务提交后累加本地浏览计数，定时批量写入热门排行当前小时的计数桶
+        TransactionUtils.afterCommit(() -> viewCountService.increment(CacheConstants.TRENDING_VIDEO, videoId));
     }
 
     @Override
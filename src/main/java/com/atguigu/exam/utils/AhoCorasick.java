@@ -0,0 +1,127 @@
+package com.atguigu.exam.utils;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick多模式匹配自动机
+ *   一次扫描文本即可找出所有命中的关键词，时间复杂度与文本长度成正比，与关键词数量无关
+ *   构建完成后每个节点的转移保存为有序char数组 + 二分查找，匹配过程只分配一个结果数组
+ */
+public class AhoCorasick {
+
+    private final int patternCount;
+    /**
+     * 每个节点的转移字符（升序）和目标节点
+     */
+    private final char[][] keys;
+    private final int[][] targets;
+    /**
+     * 失败指针
+     */
+    private final int[] fail;
+    /**
+     * 以该节点结尾的关键词下标，没有为-1
+     */
+    private final int[] output;
+    /**
+     * 沿失败指针方向最近的有输出的节点，没有为-1
+     */
+    private final int[] dictLink;
+
+    /**
+     * @param patterns 关键词（调用方负责归一化），空串会被忽略
+     */
+    public AhoCorasick(List<String> patterns) {
+        this.patternCount = patterns.size();
+        //1. 构建字典树
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+        trie.add(new HashMap<>());
+        outputs.add(-1);
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            if (pattern == null || pattern.isEmpty()) {
+                continue;
+            }
+            int node = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                Integer next = trie.get(node).get(pattern.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(node).put(pattern.charAt(i), next);
+                    trie.add(new HashMap<>());
+                    outputs.add(-1);
+                }
+                node = next;
+            }
+            outputs.set(node, p);
+        }
+        //2. 压缩成数组
+        int size = trie.size();
+        keys = new char[size][];
+        targets = new int[size][];
+        output = new int[size];
+        for (int node = 0; node < size; node++) {
+            TreeMap<Character, Integer> sorted = new TreeMap<>(trie.get(node));
+            keys[node] = new char[sorted.size()];
+            targets[node] = new int[sorted.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> entry : sorted.entrySet()) {
+                keys[node][i] = entry.getKey();
+                targets[node][i] = entry.getValue();
+                i++;
+            }
+            output[node] = outputs.get(node);
+        }
+        //3. 广度优先计算失败指针和输出链接
+        fail = new int[size];
+        dictLink = new int[size];
+        Arrays.fill(dictLink, -1);
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0]) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = 0; i < keys[node].length; i++) {
+                char c = keys[node][i];
+                int child = targets[node][i];
+                int f = fail[node];
+                int next;
+                while ((next = transition(f, c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = next < 0 || next == child ? 0 : next;
+                dictLink[child] = output[fail[child]] >= 0 ? fail[child] : dictLink[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * 扫描文本
+     * @param text 文本（调用方负责归一化）
+     * @return 下标为关键词下标，true表示文本中出现了该关键词
+     */
+    public boolean[] match(String text) {
+        boolean[] found = new boolean[patternCount];
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = transition(node, c)) < 0 && node != 0) {
+                node = fail[node];
+            }
+            node = next < 0 ? 0 : next;
+            for (int hit = output[node] >= 0 ? node : dictLink[node]; hit >= 0; hit = dictLink[hit]) {
+                found[output[hit]] = true;
+            }
+        }
+        return found;
+    }
+
+    private int transition(int node, char c) {
+        int index = Arrays.binarySearch(keys[node], c);
+        return index < 0 ? -1 : targets[node][index];
+    }
+}
@@ -1,15 +1,50 @@
 package com.atguigu.exam.utils;
 
+import com.atguigu.exam.vo.QuestionImportResultVo;
 import com.atguigu.exam.vo.QuestionImportVo;
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.MissingRecordAwareHSSFListener;
+import org.apache.poi.hssf.eventusermodel.dummyrecord.LastCellOfRowDummyRecord;
+import org.apache.poi.hssf.record.*;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.ObjIntConsumer;
 
 /**
  * Excel文件处理工具类
@@ -17,6 +52,26 @@ import java.util.List;
  */
 public class ExcelUtil {
     
+    /**
+     * 模板列数：题目内容|题目类型|是否多选|分类ID|难度|分值|选项A|选项B|选项C|选项D|正确答案|解析
+     */
+    private static final int COLUMN_COUNT = 12;
+
+    /**
+     * 题目导入模板的标题行，题目导出时使用相同的列，导出的文件可以直接重新导入
+     */
+    public static final String[] QUESTION_HEADERS = {
+        "题目内容", "题目类型", "是否多选", "分类ID", "难度", "分值",
+        "选项A", "选项B", "选项C", "选项D", "正确答案", "解析"
+    };
+
+    /**
+     * 流式导出时内存中保留的行数，超出的行写入临时文件
+     */
+    private static final int STREAMING_WINDOW_SIZE = 100;
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     /**
      * 解析Excel文件并转换为题目导入DTO列表
      * 
@@ -29,130 +84,285 @@ public class ExcelUtil {
      */
     public static List<QuestionImportVo> parseExcel(MultipartFile file) throws IOException {
         List<QuestionImportVo> questions = new ArrayList<>();
-        
-        // 获取文件输入流
-        InputStream inputStream = file.getInputStream();
-        Workbook workbook = null;
-        
+        streamExcel(file, (question, rowNum) -> questions.add(question));
+        return questions;
+    }
+
+    /**
+     * 流式解析Excel文件（上传文件）
+     *   上传文件先落到临时文件，POI事件模式直接读取文件，解析完成后删除
+     * @param file Excel文件
+     * @param consumer 每解析出一道题回调一次，参数2为Excel中的行号（从1开始，第1行为标题行）
+     * @return 解析出的题目数量
+     * @throws IOException 文件读取异常
+     */
+    public static int streamExcel(MultipartFile file, ObjIntConsumer<QuestionImportVo> consumer) throws IOException {
+        String fileName = file.getOriginalFilename();
+        Path tempFile = Files.createTempFile("question-import-", fileName != null && fileName.endsWith(".xlsx") ? ".xlsx" : ".xls");
         try {
-            // 根据文件扩展名选择对应的工作簿类型
-            String fileName = file.getOriginalFilename();
-            if (fileName != null && fileName.endsWith(".xlsx")) {
-                workbook = new XSSFWorkbook(inputStream); // Excel 2007+
-            } else {
-                workbook = new HSSFWorkbook(inputStream); // Excel 97-2003
+            try (InputStream inputStream = file.getInputStream()) {
+                Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
             }
-            
-            // 获取第一个工作表
-            Sheet sheet = workbook.getSheetAt(0);
-            
-            // 从第二行开始读取数据（第一行是标题）
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row == null) continue;
-                
-                QuestionImportVo question = new QuestionImportVo();
-                
-                // 读取基本信息
-                question.setTitle(getCellValue(row.getCell(0))); // 题目内容
-                question.setType(getCellValue(row.getCell(1))); // 题目类型
-                question.setMulti("是".equals(getCellValue(row.getCell(2))) || "true".equalsIgnoreCase(getCellValue(row.getCell(2)))); // 是否多选
-                
-                // 分类ID
-                String categoryIdStr = getCellValue(row.getCell(3));
-                if (categoryIdStr != null && !categoryIdStr.isEmpty()) {
-                    try {
-                        question.setCategoryId(Long.parseLong(categoryIdStr));
-                    } catch (NumberFormatException e) {
-                        question.setCategoryId(1L); // 默认分类
-                    }
-                }
-                
-                question.setDifficulty(getCellValue(row.getCell(4))); // 难度
-                
-                // 分值
-                String scoreStr = getCellValue(row.getCell(5));
-                if (scoreStr != null && !scoreStr.isEmpty()) {
-                    try {
-                        question.setScore(Integer.parseInt(scoreStr));
-                    } catch (NumberFormatException e) {
-                        question.setScore(5); // 默认分值
-                    }
+            return streamExcel(tempFile.toFile(), fileName, consumer);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * 流式解析Excel文件
+     *   .xlsx 使用XSSFReader + SAX逐行读取sheet xml，.xls 使用HSSFEventFactory逐条读取记录
+     *   不构建工作簿对象，内存占用只和一行的大小有关（.xlsx的共享字符串表除外），与行数无关
+     *   只解析第一个工作表，跳过第一行标题行，题目内容或题目类型为空的行忽略
+     * @param file Excel文件
+     * @param fileName 原始文件名，根据扩展名选择解析方式
+     * @param consumer 每解析出一道题回调一次，参数2为Excel中的行号（从1开始，第1行为标题行）
+     * @return 解析出的题目数量
+     * @throws IOException 文件读取或格式异常
+     */
+    public static int streamExcel(File file, String fileName, ObjIntConsumer<QuestionImportVo> consumer) throws IOException {
+        RowCollector collector = new RowCollector(consumer);
+        if (fileName != null && fileName.endsWith(".xlsx")) {
+            readXlsx(file, collector); // Excel 2007+
+        } else {
+            readXls(file, collector); // Excel 97-2003
+        }
+        return collector.count;
+    }
+
+    /**
+     * .xlsx：SAX解析第一个工作表
+     */
+    private static void readXlsx(File file, RowCollector collector) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader xmlReader = XMLHelper.newXMLReader();
+                xmlReader.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings,
+                        new XSSFSheetXMLHandler.SheetContentsHandler() {
+                            @Override
+                            public void startRow(int rowNum) {
+                                collector.startRow(rowNum);
+                            }
+
+                            @Override
+                            public void endRow(int rowNum) {
+                                collector.endRow();
+                            }
+
+                            @Override
+                            public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+                                collector.cell(new CellReference(cellReference).getCol(), formattedValue);
+                            }
+                        }, new DataFormatter(), false));
+                xmlReader.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Excel文件格式错误，无法解析！" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * .xls：事件模式解析第一个工作表
+     */
+    private static void readXls(File file, RowCollector collector) throws IOException {
+        try (POIFSFileSystem fs = new POIFSFileSystem(file, true)) {
+            HSSFRequest request = new HSSFRequest();
+            request.addListenerForAllRecords(new MissingRecordAwareHSSFListener(new XlsListener(collector)));
+            new HSSFEventFactory().processWorkbookEvents(request, fs);
+        }
+    }
+
+    /**
+     * .xls记录监听器，把记录转换成行和单元格
+     */
+    private static class XlsListener implements HSSFListener {
+        private final RowCollector collector;
+        private final FormatTrackingHSSFListener formatListener = new FormatTrackingHSSFListener(this);
+        private SSTRecord sstRecord;
+        private int sheetIndex = -1;
+        private int currentRow = -1;
+        /**
+         * 公式单元格的结果是字符串时，值在紧跟的StringRecord中
+         */
+        private int pendingStringColumn = -1;
+
+        private XlsListener(RowCollector collector) {
+            this.collector = collector;
+        }
+
+        @Override
+        public void processRecord(org.apache.poi.hssf.record.Record record) {
+            //数字格式需要FormatTrackingHSSFListener先记录格式
+            formatListener.processRecordInternally(record);
+            if (record instanceof BOFRecord bof) {
+                if (bof.getType() == BOFRecord.TYPE_WORKSHEET) {
+                    sheetIndex++;
                 }
-                
-                // 处理选择题选项
-                if ("CHOICE".equals(question.getType())) {
-                    List<QuestionImportVo.ChoiceImportDto> choices = new ArrayList<>();
-                    String correctAnswer = getCellValue(row.getCell(10)); // 正确答案列
-                    
-                    // 读取选项A-D
-                    for (int j = 0; j < 4; j++) {
-                        String optionContent = getCellValue(row.getCell(6 + j));
-                        if (optionContent != null && !optionContent.trim().isEmpty()) {
-                            QuestionImportVo.ChoiceImportDto choice = new QuestionImportVo.ChoiceImportDto();
-                            choice.setContent(optionContent);
-                            choice.setSort(j + 1);
-                            
-                            // 判断是否为正确答案
-                            char optionLabel = (char) ('A' + j);
-                            boolean isCorrect = correctAnswer != null && correctAnswer.contains(String.valueOf(optionLabel));
-                            choice.setIsCorrect(isCorrect);
-                            
-                            choices.add(choice);
-                        }
-                    }
-                    question.setChoices(choices);
+                return;
+            }
+            if (record instanceof SSTRecord sst) {
+                sstRecord = sst;
+                return;
+            }
+            //只处理第一个工作表
+            if (sheetIndex != 0) {
+                return;
+            }
+            if (record instanceof LabelSSTRecord label) {
+                cell(label.getRow(), label.getColumn(), sstRecord.getString(label.getSSTIndex()).getString());
+            } else if (record instanceof LabelRecord label) {
+                cell(label.getRow(), label.getColumn(), label.getValue());
+            } else if (record instanceof NumberRecord number) {
+                cell(number.getRow(), number.getColumn(), formatListener.formatNumberDateCell(number));
+            } else if (record instanceof BoolErrRecord boolErr) {
+                cell(boolErr.getRow(), boolErr.getColumn(), boolErr.isBoolean() ? String.valueOf(boolErr.getBooleanValue()) : null);
+            } else if (record instanceof FormulaRecord formula) {
+                if (formula.hasCachedResultString()) {
+                    startRowIfNeeded(formula.getRow());
+                    pendingStringColumn = formula.getColumn();
                 } else {
-                    // 判断题和简答题直接设置答案
-                    question.setAnswer(getCellValue(row.getCell(10)));
+                    cell(formula.getRow(), formula.getColumn(), formatListener.formatNumberDateCell(formula));
                 }
-                
-                question.setAnalysis(getCellValue(row.getCell(11))); // 解析
-                
-                // 验证必填字段
-                if (question.getTitle() != null && !question.getTitle().trim().isEmpty() &&
-                    question.getType() != null && !question.getType().trim().isEmpty()) {
-                    questions.add(question);
+            } else if (record instanceof StringRecord string && pendingStringColumn >= 0) {
+                collector.cell(pendingStringColumn, string.getString());
+                pendingStringColumn = -1;
+            } else if (record instanceof LastCellOfRowDummyRecord) {
+                if (currentRow >= 0) {
+                    collector.endRow();
+                    currentRow = -1;
                 }
             }
-            
-        } finally {
-            if (workbook != null) {
-                workbook.close();
+        }
+
+        private void cell(int row, int column, String value) {
+            startRowIfNeeded(row);
+            collector.cell(column, value);
+        }
+
+        private void startRowIfNeeded(int row) {
+            if (currentRow != row) {
+                if (currentRow >= 0) {
+                    collector.endRow();
+                }
+                currentRow = row;
+                collector.startRow(row);
             }
-            inputStream.close();
         }
-        
-        return questions;
     }
-    
+
     /**
-     * 获取单元格的字符串值
-     * @param cell 单元格
-     * @return 字符串值
+     * 行收集器：只保留当前行的单元格，行结束时转换成题目并回调
      */
-    private static String getCellValue(Cell cell) {
-        if (cell == null) {
-            return null;
+    private static class RowCollector {
+        private final ObjIntConsumer<QuestionImportVo> consumer;
+        private final String[] cells = new String[COLUMN_COUNT];
+        private int rowNum = -1;
+        private int count;
+
+        private RowCollector(ObjIntConsumer<QuestionImportVo> consumer) {
+            this.consumer = consumer;
         }
-        
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue().trim();
-            case NUMERIC:
-                // 如果是数字，转换为字符串
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    return cell.getDateCellValue().toString();
-                } else {
-                    return String.valueOf((long) cell.getNumericCellValue());
+
+        private void startRow(int rowNum) {
+            this.rowNum = rowNum;
+            Arrays.fill(cells, null);
+        }
+
+        private void cell(int column, String value) {
+            if (column < COLUMN_COUNT) {
+                cells[column] = value == null ? null : value.trim();
+            }
+        }
+
+        private void endRow() {
+            // 从第二行开始读取数据（第一行是标题）
+            if (rowNum < 1) {
+                return;
+            }
+            QuestionImportVo question = toQuestionImportVo(cells);
+            if (question != null) {
+                count++;
+                consumer.accept(question, rowNum + 1);
+            }
+        }
+    }
+
+    /**
+     * 一行单元格转换成题目导入DTO
+     * @return 题目内容或题目类型为空时返回null
+     */
+    private static QuestionImportVo toQuestionImportVo(String[] cells) {
+        QuestionImportVo question = new QuestionImportVo();
+
+        // 读取基本信息
+        question.setTitle(cells[0]); // 题目内容
+        question.setType(cells[1]); // 题目类型
+        question.setMulti("是".equals(cells[2]) || "true".equalsIgnoreCase(cells[2])); // 是否多选
+
+        // 分类ID
+        String categoryIdStr = cells[3];
+        if (categoryIdStr != null && !categoryIdStr.isEmpty()) {
+            try {
+                question.setCategoryId(Long.parseLong(categoryIdStr));
+            } catch (NumberFormatException e) {
+                question.setCategoryId(1L); // 默认分类
+            }
+        }
+
+        question.setDifficulty(cells[4]); // 难度
+
+        // 分值
+        String scoreStr = cells[5];
+        if (scoreStr != null && !scoreStr.isEmpty()) {
+            try {
+                question.setScore(Integer.parseInt(scoreStr));
+            } catch (NumberFormatException e) {
+                question.setScore(5); // 默认分值
+            }
+        }
+
+        // 处理选择题选项
+        if ("CHOICE".equals(question.getType())) {
+            List<QuestionImportVo.ChoiceImportDto> choices = new ArrayList<>();
+            String correctAnswer = cells[10]; // 正确答案列
+
+            // 读取选项A-D
+            for (int j = 0; j < 4; j++) {
+                String optionContent = cells[6 + j];
+                if (optionContent != null && !optionContent.trim().isEmpty()) {
+                    QuestionImportVo.ChoiceImportDto choice = new QuestionImportVo.ChoiceImportDto();
+                    choice.setContent(optionContent);
+                    choice.setSort(j + 1);
+
+                    // 判断是否为正确答案
+                    char optionLabel = (char) ('A' + j);
+                    boolean isCorrect = correctAnswer != null && correctAnswer.contains(String.valueOf(optionLabel));
+                    choice.setIsCorrect(isCorrect);
+
+                    choices.add(choice);
                 }
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            case FORMULA:
-                return cell.getCellFormula();
-            default:
-                return null;
+            }
+            question.setChoices(choices);
+        } else {
+            // 判断题和简答题直接设置答案
+            question.setAnswer(cells[10]);
         }
+
+        question.setAnalysis(cells[11]); // 解析
+
+        // 验证必填字段
+        if (question.getTitle() != null && !question.getTitle().trim().isEmpty() &&
+            question.getType() != null && !question.getType().trim().isEmpty()) {
+            return question;
+        }
+        return null;
     }
     
     /**
@@ -165,10 +375,7 @@ public class ExcelUtil {
         
         // 创建标题行
         Row headerRow = sheet.createRow(0);
-        String[] headers = {
-            "题目内容", "题目类型", "是否多选", "分类ID", "难度", "分值",
-            "选项A", "选项B", "选项C", "选项D", "正确答案", "解析"
-        };
+        String[] headers = QUESTION_HEADERS;
         
         for (int i = 0; i < headers.length; i++) {
             Cell cell = headerRow.createCell(i);
@@ -201,4 +408,91 @@ public class ExcelUtil {
             return out.toByteArray();
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * 创建流式写入的工作簿
+     *   SXSSFWorkbook内存中只保留最近STREAMING_WINDOW_SIZE行，写出的行压缩后存入临时文件，导出行数再多堆内存也不变
+     *   使用完后必须在finally中调用 {@link #disposeStreamingWorkbook} 删除临时文件（中途异常时也要删除）
+     * @return 工作簿
+     */
+    public static SXSSFWorkbook createStreamingWorkbook() {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(STREAMING_WINDOW_SIZE);
+        workbook.setCompressTempFiles(true);
+        return workbook;
+    }
+
+    /**
+     * 写入一行数据
+     *   数字写为数值单元格，时间格式化为 yyyy-MM-dd HH:mm:ss，null不创建单元格
+     * @param sheet 工作表
+     * @param rowIndex 行号（从0开始）
+     * @param values 各列的值
+     */
+    public static void writeRow(Sheet sheet, int rowIndex, Object... values) {
+        Row row = sheet.createRow(rowIndex);
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                continue;
+            }
+            Cell cell = row.createCell(i);
+            if (value instanceof Number number) {
+                cell.setCellValue(number.doubleValue());
+            } else if (value instanceof Date date) {
+                cell.setCellValue(DATE_TIME_FORMATTER.format(date.toInstant().atZone(ZoneId.systemDefault())));
+            } else if (value instanceof TemporalAccessor temporal) {
+                cell.setCellValue(DATE_TIME_FORMATTER.format(temporal));
+            } else {
+                cell.setCellValue(value.toString());
+            }
+        }
+    }
+
+    /**
+     * 输出流式工作簿
+     * @param workbook 工作簿
+     * @param out 输出流（不关闭）
+     * @throws IOException 写入异常
+     */
+    public static void writeStreamingWorkbook(SXSSFWorkbook workbook, OutputStream out) throws IOException {
+        workbook.write(out);
+    }
+
+    /**
+     * 删除流式工作簿写出的临时文件并关闭工作簿
+     * @param workbook 工作簿
+     * @throws IOException 关闭异常
+     */
+    public static void disposeStreamingWorkbook(SXSSFWorkbook workbook) throws IOException {
+        workbook.dispose();
+        workbook.close();
+    }
+
+    /**
+     * 生成导入失败明细Excel文件的字节数组
+     *   使用流式工作簿，失败行很多时也不会占用大量内存
+     * @param failures 失败明细
+     * @return Excel文件字节数组
+     * @throws IOException 写入异常
+     */
+    public static byte[] generateImportErrorReport(List<QuestionImportResultVo.RowResult> failures) throws IOException {
+        SXSSFWorkbook workbook = createStreamingWorkbook();
+        try {
+            Sheet sheet = workbook.createSheet("导入失败明细");
+            writeRow(sheet, 0, "行号", "题目内容", "失败原因");
+            int rowIndex = 1;
+            for (QuestionImportResultVo.RowResult failure : failures) {
+                writeRow(sheet, rowIndex++, failure.getIndex(), failure.getTitle(), failure.getMessage());
+            }
+            sheet.setColumnWidth(0, 8 * 256);
+            sheet.setColumnWidth(1, 60 * 256);
+            sheet.setColumnWidth(2, 60 * 256);
+            try (java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream()) {
+                writeStreamingWorkbook(workbook, out);
+                return out.toByteArray();
+            }
+        } finally {
+            disposeStreamingWorkbook(workbook);
+        }
+    }
+}
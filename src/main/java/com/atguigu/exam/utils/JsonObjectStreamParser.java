@@ -0,0 +1,84 @@
+package com.atguigu.exam.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 增量JSON对象解析器
+ *   用于解析流式返回的 {"questions":[{...},{...}]} 或 [{...},{...}]
+ *   每次喂入一段文本，返回这段文本中新完成的数组元素对象（原始json字符串）
+ *   只跟踪括号层级、字符串和转义，不构建语法树，数组外的文字（例如```json代码块标记）会被忽略
+ *   非线程安全，一个流使用一个实例
+ */
+public class JsonObjectStreamParser {
+
+    /**
+     * 当前所在的容器栈，'{' 或 '['
+     */
+    private final StringBuilder containers = new StringBuilder();
+    /**
+     * 正在收集的对象
+     */
+    private final StringBuilder current = new StringBuilder();
+    /**
+     * 正在收集的对象开始时的容器深度，-1表示没有在收集
+     */
+    private int captureDepth = -1;
+    private boolean inString;
+    private boolean escaped;
+
+    /**
+     * 喂入一段文本
+     * @param chunk 文本片段
+     * @return 本次新完成的对象，没有返回空集合
+     */
+    public List<String> feed(String chunk) {
+        List<String> completed = new ArrayList<>();
+        if (chunk == null) {
+            return completed;
+        }
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            if (captureDepth >= 0) {
+                current.append(c);
+            }
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"' -> inString = containers.length() > 0;
+                case '{', '[' -> {
+                    //父容器是数组的对象就是要收集的元素，元素内部嵌套的对象不单独收集
+                    if (c == '{' && captureDepth < 0 && containers.length() > 0
+                            && containers.charAt(containers.length() - 1) == '[') {
+                        captureDepth = containers.length();
+                        current.setLength(0);
+                        current.append(c);
+                    }
+                    containers.append(c);
+                }
+                case '}', ']' -> {
+                    if (containers.length() == 0) {
+                        continue;
+                    }
+                    containers.setLength(containers.length() - 1);
+                    if (captureDepth >= 0 && containers.length() == captureDepth) {
+                        completed.add(current.toString());
+                        current.setLength(0);
+                        captureDepth = -1;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return completed;
+    }
+}
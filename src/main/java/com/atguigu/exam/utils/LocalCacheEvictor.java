@@ -0,0 +1,61 @@
+package com.atguigu.exam.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+/**
+ * 本地缓存（L1）失效工具类
+ *
+ * 多实例部署时每个实例都有自己的L1，数据修改后：
+ *   在事务中修改时等事务提交后再删除，避免其他请求在提交前把旧数据重新加载进缓存
+ *   删除本实例的缓存后通过redis频道广播id（消息为id），其他实例收到后删除自己的L1
+ *   广播失败或漏收时，其他实例的L1等待过期时间兜底
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LocalCacheEvictor {
+
+    private final RedisUtils redisUtils;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 订阅失效频道，收到广播的id时执行删除（本实例的广播也会收到，重复删除没有影响）
+     * @param channel 频道
+     * @param evict 删除本实例缓存的操作，参数为id
+     */
+    public void subscribe(String channel, Consumer<Long> evict) {
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                Object id = redisUtils.deserialize(message.getBody());
+                if (id instanceof Number number) {
+                    evict.accept(number.longValue());
+                }
+            } catch (Exception e) {
+                log.error("本地缓存失效通知处理失败！频道：{}", channel, e);
+            }
+        }, new ChannelTopic(channel));
+    }
+
+    /**
+     * 删除缓存并广播：在事务中调用时等事务提交后执行（回滚时不执行），否则立即执行
+     * @param channel 频道
+     * @param id 数据id
+     * @param evict 删除本实例缓存（以及共享的L2）的操作
+     */
+    public void evictAfterCommit(String channel, Long id, Runnable evict) {
+        TransactionUtils.afterCommit(() -> {
+            evict.run();
+            try {
+                redisUtils.publish(channel, id);
+            } catch (Exception e) {
+                log.error("本地缓存失效广播失败，其他实例等待缓存过期！频道：{}，id：{}", channel, id, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,94 @@
+package com.atguigu.exam.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * n-gram分词工具类（不依赖词典）
+ *
+ *   连续的中日韩文字：索引时生成单字 + 相邻两字（bigram），查询时只用bigram（只有一个字时用单字）
+ *     "面向对象" -> 索引：面 向 对 象 面向 向对 对象；查询：面向 向对 对象（全部命中 ≈ 包含这个词）
+ *   连续的字母数字（转小写）：索引时生成长度1、2的前缀 + 所有三字母片段（trigram，不足3个字母时为整个单词），
+ *     查询时长度不少于3用trigram（全部命中 ≈ 包含这个片段），更短的用整个片段（匹配短单词和单词前缀）
+ *     "HashMap" -> 索引：h ha has ash shm hma map；查询 "HashM"：has ash shm
+ *     和 like '%kw%' 相比，只有长度为1、2且不在单词开头的片段（如 "as"）查不到
+ *   其他字符（空格、标点）作为分隔
+ */
+public final class NgramTokenizer {
+
+    private NgramTokenizer() {
+    }
+
+    /**
+     * 索引分词，去重
+     */
+    public static Set<String> indexTokens(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        tokenize(text, tokens, true);
+        return tokens;
+    }
+
+    /**
+     * 查询分词，去重
+     */
+    public static List<String> queryTokens(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        tokenize(text, tokens, false);
+        return new ArrayList<>(tokens);
+    }
+
+    private static void tokenize(String text, Set<String> tokens, boolean index) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (isCjk(c)) {
+                int start = i;
+                while (i < length && isCjk(text.charAt(i))) {
+                    i++;
+                }
+                if (i - start == 1 || index) {
+                    for (int j = start; j < i; j++) {
+                        tokens.add(String.valueOf(text.charAt(j)));
+                    }
+                }
+                for (int j = start; j + 1 < i; j++) {
+                    tokens.add(text.substring(j, j + 2));
+                }
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = i;
+                while (i < length && Character.isLetterOrDigit(text.charAt(i)) && !isCjk(text.charAt(i))) {
+                    i++;
+                }
+                String word = text.substring(start, i).toLowerCase();
+                if (word.length() < 3) {
+                    tokens.add(word);
+                    if (index && word.length() == 2) {
+                        tokens.add(word.substring(0, 1));
+                    }
+                    continue;
+                }
+                if (index) {
+                    tokens.add(word.substring(0, 1));
+                    tokens.add(word.substring(0, 2));
+                }
+                for (int j = 0; j + 3 <= word.length(); j++) {
+                    tokens.add(word.substring(j, j + 3));
+                }
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+}
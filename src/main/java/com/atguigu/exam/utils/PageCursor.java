@@ -0,0 +1,47 @@
+package com.atguigu.exam.utils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * 游标分页的游标：上一页最后一条记录的 (创建时间, id)
+ *   格式：{创建时间毫秒数}_{id}，例如 1718000000000_123
+ *   查询下一页：create_time < time or (create_time = time and id < id) order by create_time desc, id desc
+ * @param time 创建时间（毫秒）
+ * @param id 记录id
+ */
+public record PageCursor(long time, long id) {
+
+    /**
+     * 解析游标，空字符串表示第一页返回null
+     */
+    public static PageCursor parse(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        int index = cursor.indexOf('_');
+        try {
+            return new PageCursor(Long.parseLong(cursor.substring(0, index)), Long.parseLong(cursor.substring(index + 1)));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("分页游标：%s 格式错误！".formatted(cursor));
+        }
+    }
+
+    public static String encode(Date time, Long id) {
+        return (time == null ? 0 : time.getTime()) + "_" + id;
+    }
+
+    public static String encode(LocalDateTime time, Long id) {
+        return (time == null ? 0 : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()) + "_" + id;
+    }
+
+    public Date toDate() {
+        return new Date(time);
+    }
+
+    public LocalDateTime toLocalDateTime() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,492 @@
+package com.atguigu.exam.utils;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 组卷求解工具类（约束组卷：题目数、题型数量、总分、难度分布、分类覆盖）
+ *
+ * 候选题目按列保存（id、分值、题型、难度、分类各一个数组），50万道题目只占几MB，求解时不查询数据库
+ * 求解：随机初始化满足题型数量的一张试卷，然后不断把试卷中的一道题换成同题型的另一道题，
+ *   罚分 = 10 * |总分 - 目标总分| + 3 * Σ|各难度题目数 - 目标数| + 5 * 未覆盖的分类数，
+ *   换题后罚分不增加就接受（允许平移，避免卡在平台上），罚分为0或到达截止时间时结束
+ *   换题候选：
+ *     定向：按 (题型, 缺少的难度, 恰好补齐总分差的分值) 从预建的索引中取一道题，大多数情况下一步修正总分和难度
+ *     分类：有未覆盖的分类时，从该分类中取一道题替换同题型的某道题
+ *     随机：同题型任意一道题，跳出定向换题走不通的局面
+ * 并行：调用方用不同的随机种子在多个线程上同时求解，取罚分最小的结果，任意线程满足全部目标时其他线程提前结束
+ */
+public final class PaperAssembler {
+
+    private static final int SCORE_WEIGHT = 10;
+    private static final int DIFFICULTY_WEIGHT = 3;
+    private static final int CATEGORY_WEIGHT = 5;
+
+    private PaperAssembler() {
+    }
+
+    /**
+     * 候选题目池（按列保存，只追加）
+     */
+    public static final class Pool {
+        private long[] ids;
+        private int[] scores;
+        private byte[] types;
+        private byte[] difficulties;
+        private int[] categories;
+        private int size;
+        private final List<String> typeNames = new ArrayList<>();
+        private final List<String> difficultyNames = new ArrayList<>();
+        private final List<Long> categoryIds = new ArrayList<>();
+        private final Map<Long, Integer> categoryIndexes = new HashMap<>();
+
+        public Pool(int capacity) {
+            capacity = Math.max(capacity, 16);
+            ids = new long[capacity];
+            scores = new int[capacity];
+            types = new byte[capacity];
+            difficulties = new byte[capacity];
+            categories = new int[capacity];
+        }
+
+        /**
+         * 追加同一 (分类, 题型, 难度) 的一批题目，分值不大于0的题目跳过
+         */
+        public void addAll(long categoryId, String type, String difficulty, long[] bucketIds, int[] bucketScores, int count) {
+            if (size + count > ids.length) {
+                int capacity = Math.max(size + count, ids.length * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+                types = Arrays.copyOf(types, capacity);
+                difficulties = Arrays.copyOf(difficulties, capacity);
+                categories = Arrays.copyOf(categories, capacity);
+            }
+            byte typeCode = code(typeNames, String.valueOf(type));
+            byte difficultyCode = code(difficultyNames, String.valueOf(difficulty));
+            int categoryIndex = categoryIndexes.computeIfAbsent(categoryId, key -> {
+                categoryIds.add(key);
+                return categoryIds.size() - 1;
+            });
+            for (int i = 0; i < count; i++) {
+                if (bucketScores[i] <= 0) {
+                    continue;
+                }
+                ids[size] = bucketIds[i];
+                scores[size] = bucketScores[i];
+                types[size] = typeCode;
+                difficulties[size] = difficultyCode;
+                categories[size] = categoryIndex;
+                size++;
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private static byte code(List<String> names, String name) {
+            int index = names.indexOf(name);
+            if (index < 0) {
+                names.add(name);
+                index = names.size() - 1;
+            }
+            return (byte) index;
+        }
+    }
+
+    /**
+     * 组卷目标
+     * @param questionCount 题目总数
+     * @param totalScore 目标总分
+     * @param typeCounts 题型 -> 题目数（必须满足），为空时不限制题型
+     * @param difficultyCounts 难度 -> 目标题目数，为空时不限制难度
+     * @param coverCategoryIds 需要覆盖的分类（每个分类至少一道题），为空时不要求
+     */
+    public record Target(int questionCount, int totalScore, Map<String, Integer> typeCounts,
+                         Map<String, Integer> difficultyCounts, Collection<Long> coverCategoryIds) {
+    }
+
+    /**
+     * 组卷结果
+     * @param questionIds 题目id（按题型分组）
+     * @param scores 题目分值，和questionIds一一对应
+     * @param penalty 罚分，0表示所有目标都满足
+     * @param totalScore 实际总分
+     * @param typeCounts 实际各题型题目数
+     * @param difficultyCounts 实际各难度题目数
+     * @param uncoveredCategories 未覆盖的分类数
+     */
+    public record Solution(long[] questionIds, int[] scores, int penalty, int totalScore, Map<String, Integer> typeCounts,
+                           Map<String, Integer> difficultyCounts, int uncoveredCategories) {
+    }
+
+    /**
+     * 预处理候选池：按题型分组、建定向换题索引，校验题目数是否足够
+     * @throws RuntimeException 某个题型的候选题目不足
+     */
+    public static Problem prepare(Pool pool, Target target) {
+        return new Problem(pool, target);
+    }
+
+    /**
+     * 预处理后的组卷问题（只读，多个线程共享）
+     */
+    public static final class Problem {
+        private final Pool pool;
+        private final int questionCount;
+        private final int totalScore;
+        private final List<String> groupNames = new ArrayList<>();
+        private final int[] groupOf;
+        private final int[][] groupMembers;
+        private final int[] slotGroups;
+        private final int[] groupStarts;
+        private final boolean hasDifficultyTarget;
+        private final int[] difficultyTargets;
+        private final int missingDifficultyPenalty;
+        private final boolean[] requiredCategories;
+        private final int missingCategories;
+        private final int[][] categoryMembers;
+        private final int[] requiredCategoryList;
+        private final Map<Long, int[]> targetedMembers;
+        private final int minScore;
+        private final int maxScore;
+        private final int penaltyFloor;
+
+        private Problem(Pool pool, Target target) {
+            this.pool = pool;
+            this.questionCount = target.questionCount();
+            this.totalScore = target.totalScore();
+            int size = pool.size;
+            //1. 题型分组：指定了题型数量时每个题型一组，否则全部题目一组
+            List<Integer> groupCounts = new ArrayList<>();
+            groupOf = new int[size];
+            if (target.typeCounts() == null || target.typeCounts().isEmpty()) {
+                groupNames.add(null);
+                groupCounts.add(questionCount);
+            } else {
+                target.typeCounts().forEach((type, count) -> {
+                    if (count != null && count > 0) {
+                        groupNames.add(type);
+                        groupCounts.add(count);
+                    }
+                });
+                int[] typeToGroup = new int[pool.typeNames.size()];
+                for (int t = 0; t < typeToGroup.length; t++) {
+                    typeToGroup[t] = groupNames.indexOf(pool.typeNames.get(t));
+                }
+                for (int i = 0; i < size; i++) {
+                    groupOf[i] = typeToGroup[pool.types[i]];
+                }
+            }
+            int groupCount = groupNames.size();
+            int[] memberCounts = new int[groupCount];
+            for (int i = 0; i < size; i++) {
+                if (groupOf[i] >= 0) {
+                    memberCounts[groupOf[i]]++;
+                }
+            }
+            groupMembers = new int[groupCount][];
+            for (int g = 0; g < groupCount; g++) {
+                if (memberCounts[g] < groupCounts.get(g)) {
+                    throw new RuntimeException("%s可用题目只有%s道，不足%s道！组卷失败！".formatted(
+                            groupNames.get(g) == null ? "" : "题型：%s ".formatted(groupNames.get(g)),
+                            memberCounts[g], groupCounts.get(g)));
+                }
+                groupMembers[g] = new int[memberCounts[g]];
+            }
+            int[] fill = new int[groupCount];
+            for (int i = 0; i < size; i++) {
+                if (groupOf[i] >= 0) {
+                    groupMembers[groupOf[i]][fill[groupOf[i]]++] = i;
+                }
+            }
+            slotGroups = new int[questionCount];
+            groupStarts = new int[groupCount + 1];
+            for (int g = 0, slot = 0; g < groupCount; g++) {
+                groupStarts[g] = slot;
+                for (int k = 0; k < groupCounts.get(g); k++) {
+                    slotGroups[slot++] = g;
+                }
+                groupStarts[g + 1] = slot;
+            }
+            //2. 难度目标：候选池中没有的难度只能计入固定罚分
+            hasDifficultyTarget = target.difficultyCounts() != null && !target.difficultyCounts().isEmpty();
+            difficultyTargets = new int[pool.difficultyNames.size()];
+            int missing = 0;
+            if (hasDifficultyTarget) {
+                for (Map.Entry<String, Integer> entry : target.difficultyCounts().entrySet()) {
+                    int index = pool.difficultyNames.indexOf(entry.getKey());
+                    if (index < 0) {
+                        missing += entry.getValue();
+                    } else {
+                        difficultyTargets[index] = entry.getValue();
+                    }
+                }
+            }
+            missingDifficultyPenalty = missing * DIFFICULTY_WEIGHT;
+            //3. 分类覆盖
+            requiredCategories = new boolean[pool.categoryIds.size()];
+            int missingCategoryCount = 0;
+            List<Integer> required = new ArrayList<>();
+            if (target.coverCategoryIds() != null) {
+                for (Long categoryId : new LinkedHashSet<>(target.coverCategoryIds())) {
+                    Integer index = pool.categoryIndexes.get(categoryId);
+                    if (index == null) {
+                        missingCategoryCount++;
+                    } else {
+                        requiredCategories[index] = true;
+                        required.add(index);
+                    }
+                }
+            }
+            missingCategories = missingCategoryCount;
+            //候选池中没有的难度和分类无论怎么换题都无法满足，罚分降到这个值就结束
+            penaltyFloor = missingDifficultyPenalty + CATEGORY_WEIGHT * missingCategories;
+            requiredCategoryList = required.stream().mapToInt(Integer::intValue).toArray();
+            categoryMembers = new int[requiredCategories.length][];
+            if (!required.isEmpty()) {
+                int[] categoryCounts = new int[requiredCategories.length];
+                for (int i = 0; i < size; i++) {
+                    if (requiredCategories[pool.categories[i]] && groupOf[i] >= 0) {
+                        categoryCounts[pool.categories[i]]++;
+                    }
+                }
+                for (int index : requiredCategoryList) {
+                    categoryMembers[index] = new int[categoryCounts[index]];
+                    categoryCounts[index] = 0;
+                }
+                for (int i = 0; i < size; i++) {
+                    int category = pool.categories[i];
+                    if (requiredCategories[category] && groupOf[i] >= 0) {
+                        categoryMembers[category][categoryCounts[category]++] = i;
+                    }
+                }
+            }
+            //4. 定向换题索引：(题型分组, 难度, 分值) -> 候选题目
+            Map<Long, int[]> counts = new HashMap<>();
+            int min = Integer.MAX_VALUE;
+            int max = 0;
+            for (int i = 0; i < size; i++) {
+                if (groupOf[i] >= 0) {
+                    counts.computeIfAbsent(targetedKey(groupOf[i], pool.difficulties[i], pool.scores[i]), key -> new int[1])[0]++;
+                    min = Math.min(min, pool.scores[i]);
+                    max = Math.max(max, pool.scores[i]);
+                }
+            }
+            minScore = min;
+            maxScore = max;
+            targetedMembers = new HashMap<>(counts.size() * 2);
+            counts.forEach((key, count) -> targetedMembers.put(key, new int[count[0]]));
+            counts.values().forEach(count -> count[0] = 0);
+            for (int i = 0; i < size; i++) {
+                if (groupOf[i] >= 0) {
+                    long key = targetedKey(groupOf[i], pool.difficulties[i], pool.scores[i]);
+                    targetedMembers.get(key)[counts.get(key)[0]++] = i;
+                }
+            }
+        }
+
+        private static long targetedKey(int group, int difficulty, int score) {
+            return ((long) group << 40) | ((long) difficulty << 32) | (score & 0xFFFFFFFFL);
+        }
+
+        /**
+         * 单线程求解
+         * @param seed 随机种子（每个线程不同）
+         * @param deadlineNanos 截止时间（System.nanoTime()）
+         * @param bestPenalty 所有线程当前最小罚分，降到无法再降低时提前结束
+         * @return 本线程找到的最优解
+         */
+        public Solution solve(long seed, long deadlineNanos, AtomicInteger bestPenalty) {
+            SplittableRandom random = new SplittableRandom(seed);
+            State state = new State(random);
+            long iterations = 0;
+            while (state.penalty > penaltyFloor) {
+                if ((++iterations & 1023) == 0
+                        && (System.nanoTime() >= deadlineNanos || bestPenalty.get() <= penaltyFloor)) {
+                    break;
+                }
+                state.tryMove(random);
+                if ((iterations & 1023) == 0) {
+                    bestPenalty.accumulateAndGet(state.penalty, Math::min);
+                }
+            }
+            bestPenalty.accumulateAndGet(state.penalty, Math::min);
+            return state.toSolution();
+        }
+
+        /**
+         * 一个线程的求解状态
+         */
+        private final class State {
+            private final int[] selected = new int[questionCount];
+            private final boolean[] chosen = new boolean[pool.size];
+            private final int[] difficultyCounts = new int[pool.difficultyNames.size()];
+            private final int[] categoryCounts = new int[pool.categoryIds.size()];
+            private int sum;
+            private int uncovered;
+            private int penalty;
+
+            private State(SplittableRandom random) {
+                //每个题型随机选出需要的题目数（抽取比例高时部分洗牌，否则拒绝采样）
+                for (int g = 0; g < groupMembers.length; g++) {
+                    int[] members = groupMembers[g];
+                    int need = groupStarts[g + 1] - groupStarts[g];
+                    if (need * 2 > members.length) {
+                        int[] copy = members.clone();
+                        for (int k = 0; k < need; k++) {
+                            int j = k + random.nextInt(copy.length - k);
+                            int temp = copy[k];
+                            copy[k] = copy[j];
+                            copy[j] = temp;
+                            place(groupStarts[g] + k, copy[k]);
+                        }
+                    } else {
+                        for (int k = 0; k < need; k++) {
+                            int candidate;
+                            do {
+                                candidate = members[random.nextInt(members.length)];
+                            } while (chosen[candidate]);
+                            place(groupStarts[g] + k, candidate);
+                        }
+                    }
+                }
+                for (int index : requiredCategoryList) {
+                    if (categoryCounts[index] == 0) {
+                        uncovered++;
+                    }
+                }
+                penalty = SCORE_WEIGHT * Math.abs(sum - totalScore) + difficultyPenalty()
+                        + CATEGORY_WEIGHT * (uncovered + missingCategories);
+            }
+
+            private void place(int slot, int candidate) {
+                selected[slot] = candidate;
+                chosen[candidate] = true;
+                sum += pool.scores[candidate];
+                difficultyCounts[pool.difficulties[candidate]]++;
+                categoryCounts[pool.categories[candidate]]++;
+            }
+
+            private int difficultyPenalty() {
+                if (!hasDifficultyTarget) {
+                    return 0;
+                }
+                int penalty = missingDifficultyPenalty;
+                for (int d = 0; d < difficultyCounts.length; d++) {
+                    penalty += DIFFICULTY_WEIGHT * Math.abs(difficultyCounts[d] - difficultyTargets[d]);
+                }
+                return penalty;
+            }
+
+            private void tryMove(SplittableRandom random) {
+                int slot;
+                int candidate;
+                double choice = random.nextDouble();
+                if (uncovered > 0 && choice < 0.2) {
+                    //分类换题：未覆盖分类中的一道题换掉同题型的某道题
+                    int category = requiredCategoryList[random.nextInt(requiredCategoryList.length)];
+                    int[] members = categoryMembers[category];
+                    if (categoryCounts[category] > 0 || members.length == 0) {
+                        return;
+                    }
+                    candidate = members[random.nextInt(members.length)];
+                    int group = groupOf[candidate];
+                    slot = groupStarts[group] + random.nextInt(groupStarts[group + 1] - groupStarts[group]);
+                } else {
+                    slot = random.nextInt(questionCount);
+                    int group = slotGroups[slot];
+                    int old = selected[slot];
+                    int[] members = null;
+                    if (choice < 0.7) {
+                        //定向换题：补齐总分差，难度超出目标时换成缺少的难度
+                        int score = Math.max(minScore, Math.min(maxScore, pool.scores[old] - (sum - totalScore)));
+                        members = targetedMembers.get(targetedKey(group, targetDifficulty(pool.difficulties[old], random), score));
+                    }
+                    if (members == null) {
+                        members = groupMembers[group];
+                    }
+                    candidate = members[random.nextInt(members.length)];
+                }
+                if (chosen[candidate]) {
+                    return;
+                }
+                int delta = delta(selected[slot], candidate);
+                if (delta <= 0) {
+                    apply(slot, candidate, delta);
+                }
+            }
+
+            /**
+             * 换题后希望的难度：当前难度超过目标时随机选一个不足的难度，否则保持不变
+             */
+            private int targetDifficulty(int difficulty, SplittableRandom random) {
+                if (!hasDifficultyTarget || difficultyCounts[difficulty] <= difficultyTargets[difficulty]) {
+                    return difficulty;
+                }
+                int start = random.nextInt(difficultyCounts.length);
+                for (int k = 0; k < difficultyCounts.length; k++) {
+                    int d = (start + k) % difficultyCounts.length;
+                    if (difficultyCounts[d] < difficultyTargets[d]) {
+                        return d;
+                    }
+                }
+                return difficulty;
+            }
+
+            private int delta(int old, int candidate) {
+                int newSum = sum - pool.scores[old] + pool.scores[candidate];
+                int delta = SCORE_WEIGHT * (Math.abs(newSum - totalScore) - Math.abs(sum - totalScore));
+                int oldDifficulty = pool.difficulties[old];
+                int newDifficulty = pool.difficulties[candidate];
+                if (hasDifficultyTarget && oldDifficulty != newDifficulty) {
+                    delta += DIFFICULTY_WEIGHT * (Math.abs(difficultyCounts[oldDifficulty] - 1 - difficultyTargets[oldDifficulty])
+                            - Math.abs(difficultyCounts[oldDifficulty] - difficultyTargets[oldDifficulty])
+                            + Math.abs(difficultyCounts[newDifficulty] + 1 - difficultyTargets[newDifficulty])
+                            - Math.abs(difficultyCounts[newDifficulty] - difficultyTargets[newDifficulty]));
+                }
+                int oldCategory = pool.categories[old];
+                int newCategory = pool.categories[candidate];
+                if (oldCategory != newCategory) {
+                    if (requiredCategories[oldCategory] && categoryCounts[oldCategory] == 1) {
+                        delta += CATEGORY_WEIGHT;
+                    }
+                    if (requiredCategories[newCategory] && categoryCounts[newCategory] == 0) {
+                        delta -= CATEGORY_WEIGHT;
+                    }
+                }
+                return delta;
+            }
+
+            private void apply(int slot, int candidate, int delta) {
+                int old = selected[slot];
+                chosen[old] = false;
+                sum -= pool.scores[old];
+                difficultyCounts[pool.difficulties[old]]--;
+                if (--categoryCounts[pool.categories[old]] == 0 && requiredCategories[pool.categories[old]]) {
+                    uncovered++;
+                }
+                if (categoryCounts[pool.categories[candidate]] == 0 && requiredCategories[pool.categories[candidate]]) {
+                    uncovered--;
+                }
+                place(slot, candidate);
+                penalty += delta;
+            }
+
+            private Solution toSolution() {
+                long[] ids = new long[questionCount];
+                int[] scores = new int[questionCount];
+                Map<String, Integer> typeCounts = new LinkedHashMap<>();
+                Map<String, Integer> difficulties = new LinkedHashMap<>();
+                for (int slot = 0; slot < questionCount; slot++) {
+                    int candidate = selected[slot];
+                    ids[slot] = pool.ids[candidate];
+                    scores[slot] = pool.scores[candidate];
+                    typeCounts.merge(pool.typeNames.get(pool.types[candidate]), 1, Integer::sum);
+                    difficulties.merge(pool.difficultyNames.get(pool.difficulties[candidate]), 1, Integer::sum);
+                }
+                return new Solution(ids, scores, penalty, sum, typeCounts, difficulties, uncovered + missingCategories);
+            }
+        }
+    }
+}
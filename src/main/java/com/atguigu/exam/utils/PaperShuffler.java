@@ -0,0 +1,123 @@
+package com.atguigu.exam.utils;
+
+import com.atguigu.exam.entity.Paper;
+import com.atguigu.exam.entity.Question;
+import com.atguigu.exam.vo.PaperShuffleVo;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 试卷打乱工具类
+ *
+ * 按考试记录id确定性地生成题目和选项的排列（splitmix64 + Fisher-Yates），同一条考试记录任何时候计算结果都相同：
+ *   开始考试时生成排列索引返回给前端，缓存中的试卷对象不复制、不修改
+ *   判卷时按同样的种子重新计算选项排列，把学生选择的展示字母映射回原始选项字母
+ * 选项排列只和考试记录id、题目id、选项数有关，与题目顺序无关，判卷时不需要整张试卷的排列
+ */
+public final class PaperShuffler {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * 选项掩码最多支持的选项数（A-Z）
+     */
+    public static final int MAX_CHOICES = 26;
+
+    private PaperShuffler() {
+    }
+
+    /**
+     * 生成一条考试记录的试卷打乱索引
+     * @param examRecordId 考试记录id
+     * @param paper 学生版试卷（题目已按题型排序）
+     * @return 题目和选项的展示顺序
+     */
+    public static PaperShuffleVo shuffle(long examRecordId, Paper paper) {
+        List<Question> questions = paper.getQuestions();
+        int size = questions == null ? 0 : questions.size();
+        int[] questionOrder = new int[size];
+        for (int i = 0; i < size; i++) {
+            questionOrder[i] = i;
+        }
+        //同一题型内部打乱，题型分组的先后顺序不变
+        long state = mix64(examRecordId);
+        int start = 0;
+        while (start < size) {
+            int end = start + 1;
+            while (end < size && Objects.equals(questions.get(end).getType(), questions.get(start).getType())) {
+                end++;
+            }
+            state = shuffle(questionOrder, start, end, state);
+            start = end;
+        }
+        Map<Long, int[]> choiceOrders = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Question question = questions.get(i);
+            int count = question.getChoices() == null ? 0 : Math.min(question.getChoices().size(), MAX_CHOICES);
+            if (count > 1) {
+                int[] order = new int[count];
+                choiceOrder(examRecordId, question.getId(), order, count);
+                choiceOrders.put(question.getId(), order);
+            }
+        }
+        PaperShuffleVo shuffleVo = new PaperShuffleVo();
+        shuffleVo.setQuestionOrder(questionOrder);
+        shuffleVo.setChoiceOrders(choiceOrders);
+        return shuffleVo;
+    }
+
+    /**
+     * 计算一道题的选项展示顺序，写入order的前count个位置
+     */
+    public static void choiceOrder(long examRecordId, long questionId, int[] order, int count) {
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        shuffle(order, 0, count, mix64(examRecordId * GOLDEN_GAMMA + questionId));
+    }
+
+    /**
+     * 学生选择的展示字母掩码映射回原始选项字母掩码
+     *   展示的第i个选项是原始的第order[i]个选项，超出选项数的字母原样保留（判为错选）
+     * @param displayedMask 学生答案（展示字母）的掩码
+     * @param choiceCount 题目的选项数
+     * @param scratch 计算选项排列用的临时数组（长度不小于MAX_CHOICES），同一次判卷中复用
+     * @return 原始选项字母的掩码
+     */
+    public static int toCanonicalMask(int displayedMask, long examRecordId, long questionId, int choiceCount, int[] scratch) {
+        if (displayedMask == 0 || choiceCount <= 1) {
+            return displayedMask;
+        }
+        choiceOrder(examRecordId, questionId, scratch, choiceCount);
+        int mask = displayedMask & ~((1 << choiceCount) - 1);
+        for (int i = 0; i < choiceCount; i++) {
+            if ((displayedMask & (1 << i)) != 0) {
+                mask |= 1 << scratch[i];
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Fisher-Yates 打乱 [from, to) 区间，返回新的随机数状态
+     */
+    private static long shuffle(int[] array, int from, int to, long state) {
+        for (int i = to - 1; i > from; i--) {
+            state += GOLDEN_GAMMA;
+            int j = from + (int) Long.remainderUnsigned(mix64(state), i - from + 1);
+            int tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+        return state;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
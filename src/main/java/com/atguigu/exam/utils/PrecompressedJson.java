@@ -0,0 +1,199 @@
+package com.atguigu.exam.utils;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 预先序列化、预先压缩的JSON片段
+ *
+ * 压缩方式：
+ *   json 以 SYNC_FLUSH 结束的raw deflate数据（没有结束块），单独压缩，不引用前面的数据
+ *   输出时 gzip头 + deflate(前缀) + deflated + deflate(后缀，结束块) + crc32 + 长度，拼成一个标准的gzip
+ *   每个请求只压缩很短的前缀和后缀，json本身不再序列化也不再压缩
+ *   json的crc32在生成时计算一次，输出时和前缀、后缀的crc32按 crc32_combine（GF(2)矩阵运算）合并，
+ *   合并的耗时只和长度的二进制位数有关，不再遍历json
+ */
+@Data
+@NoArgsConstructor
+public class PrecompressedJson implements Serializable {
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * 未压缩的json（UTF-8）
+     */
+    private byte[] json;
+
+    /**
+     * json的raw deflate数据，以SYNC_FLUSH结束
+     */
+    private byte[] deflated;
+
+    /**
+     * json的md5，作为原始数据的ETag（gzip数据的ETag见 etag(boolean)）
+     */
+    private String etag;
+
+    /**
+     * json的crc32
+     */
+    private long crc;
+
+    private static final long serialVersionUID = 1L; // 序列化版本UID
+
+    /**
+     * 压缩json（最高压缩级别，只执行一次）
+     * @param json 未压缩的json
+     * @return 预压缩的json
+     */
+    public static PrecompressedJson of(byte[] json) {
+        PrecompressedJson precompressed = new PrecompressedJson();
+        precompressed.setJson(json);
+        precompressed.setDeflated(deflate(json, Deflater.BEST_COMPRESSION, false));
+        precompressed.setEtag("\"" + DigestUtils.md5DigestAsHex(json) + "\"");
+        precompressed.setCrc(crc32(json));
+        return precompressed;
+    }
+
+    /**
+     * 指定编码的强ETag：gzip压缩数据和原始数据是不同的表示，ETag不能相同（RFC 9110）
+     * @param gzip true gzip压缩数据
+     * @return 原始数据为 "md5"，gzip压缩数据为 "md5-gzip"
+     */
+    public String etag(boolean gzip) {
+        return gzip ? etag.substring(0, etag.length() - 1) + "-gzip\"" : etag;
+    }
+
+    /**
+     * 输出 前缀 + json + 后缀
+     * @param out 输出流
+     * @param prefix 前缀（未压缩）
+     * @param suffix 后缀（未压缩）
+     * @param gzip true 输出gzip压缩数据，false 输出原始数据
+     */
+    public void writeTo(OutputStream out, byte[] prefix, byte[] suffix, boolean gzip) throws IOException {
+        prefix = prefix == null ? EMPTY : prefix;
+        suffix = suffix == null ? EMPTY : suffix;
+        if (!gzip) {
+            out.write(prefix);
+            out.write(json);
+            out.write(suffix);
+            return;
+        }
+        out.write(GZIP_HEADER);
+        if (prefix.length > 0) {
+            out.write(deflate(prefix, Deflater.BEST_SPEED, false));
+        }
+        out.write(deflated);
+        out.write(deflate(suffix, Deflater.BEST_SPEED, true));
+        long value = combine(combine(crc32(prefix), crc, json.length), crc32(suffix), suffix.length);
+        writeIntLE(out, (int) value);
+        writeIntLE(out, prefix.length + json.length + suffix.length);
+    }
+
+    /**
+     * raw deflate压缩
+     * @param finish true 写入结束块，false 以SYNC_FLUSH结束（按字节对齐，后面可以继续拼接其他deflate数据）
+     */
+    private static byte[] deflate(byte[] input, int level, boolean finish) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            if (finish) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int length = deflater.deflate(buffer);
+                    out.write(buffer, 0, length);
+                }
+            } else {
+                int length;
+                do {
+                    length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    out.write(buffer, 0, length);
+                } while (length == buffer.length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static long crc32(byte[] input) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(input);
+        return crc32.getValue();
+    }
+
+    /**
+     * 合并两段数据的crc32（zlib crc32_combine）：crc(A + B) = combine(crc(A), crc(B), B的长度)
+     *   相当于把crc(A)后面补 len2 个0字节，用"补1个0比特"矩阵反复平方得到补 2^k 个0字节的矩阵
+     */
+    static long combine(long crc1, long crc2, long len2) {
+        if (len2 <= 0) {
+            return crc1;
+        }
+        long[] even = new long[32];
+        long[] odd = new long[32];
+        //补1个0比特的运算矩阵（crc32多项式，反射形式）
+        odd[0] = 0xedb88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        //补2个0比特、4个0比特（半个字节）
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+        //从补1个0字节开始，按len2的每个二进制位累加
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((len2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(even, crc1);
+            }
+            len2 >>= 1;
+            if (len2 == 0) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if ((len2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(odd, crc1);
+            }
+            len2 >>= 1;
+        } while (len2 != 0);
+        return crc1 ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(matrix, matrix[n]);
+        }
+    }
+
+    private static void writeIntLE(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+}
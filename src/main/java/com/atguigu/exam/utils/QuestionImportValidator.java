@@ -0,0 +1,57 @@
+package com.atguigu.exam.utils;
+
+import com.atguigu.exam.vo.QuestionImportVo;
+
+/**
+ * 导入题目数据校验工具类
+ * 批量验证接口和Excel导入任务共用同一套校验规则
+ */
+public class QuestionImportValidator {
+
+    /**
+     * 验证单个题目数据
+     * @param question 题目数据
+     * @param index 题目序号（Excel导入时为行号）
+     * @return 错误信息，如果为null表示验证通过
+     */
+    public static String validate(QuestionImportVo question, int index) {
+        // 验证基本字段
+        if (question.getTitle() == null || question.getTitle().trim().isEmpty()) {
+            return String.format("第%d题：题目内容不能为空", index);
+        }
+        
+        if (question.getType() == null || question.getType().trim().isEmpty()) {
+            return String.format("第%d题：题目类型不能为空", index);
+        }
+        
+        if (!"CHOICE".equals(question.getType()) && !"JUDGE".equals(question.getType()) && !"TEXT".equals(question.getType())) {
+            return String.format("第%d题：题目类型必须是CHOICE、JUDGE或TEXT", index);
+        }
+        
+        // 验证选择题特有字段
+        if ("CHOICE".equals(question.getType())) {
+            if (question.getChoices() == null || question.getChoices().isEmpty()) {
+                return String.format("第%d题：选择题必须有选项", index);
+            }
+            
+            if (question.getChoices().size() < 2) {
+                return String.format("第%d题：选择题至少需要2个选项", index);
+            }
+            
+            boolean hasCorrectAnswer = question.getChoices().stream()
+                    .anyMatch(choice -> choice.getIsCorrect() != null && choice.getIsCorrect());
+            
+            if (!hasCorrectAnswer) {
+                return String.format("第%d题：选择题必须有正确答案", index);
+            }
+        } else {
+            // 判断题和简答题需要答案
+            if (question.getAnswer() == null || question.getAnswer().trim().isEmpty()) {
+                return String.format("第%d题：%s必须有答案", index, 
+                    "JUDGE".equals(question.getType()) ? "判断题" : "简答题");
+            }
+        }
+        
+        return null; // 验证通过
+    }
+}
@@ -1,11 +1,19 @@
 package com.atguigu.exam.utils;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -18,6 +26,21 @@ import java.util.concurrent.TimeUnit;
 @Component
 public class RedisUtils {
 
+    /**
+     * lua脚本的参数和返回值：byte[]原样传递，其他参数按字符串传递
+     */
+    private static final RedisSerializer<Object> SCRIPT_SERIALIZER = new RedisSerializer<>() {
+        @Override
+        public byte[] serialize(Object value) {
+            return value instanceof byte[] bytes ? bytes : String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) {
+            return bytes;
+        }
+    };
+
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
@@ -151,6 +174,17 @@ public class RedisUtils {
         redisTemplate.opsForHash().delete(key, hashKey);
     }
 
+    /**
+     * Hash缓存中某个键的值自增
+     * @param key 缓存键
+     * @param hashKey Hash键
+     * @param delta 增量
+     * @return 自增后的值
+     */
+    public Long hIncrement(String key, String hashKey, long delta) {
+        return redisTemplate.opsForHash().increment(key, hashKey, delta);
+    }
+
     /**
      * 判断Hash缓存中是否存在某个键
      * @param key 缓存键
@@ -270,6 +304,82 @@ public class RedisUtils {
         return redisTemplate.opsForZSet().incrementScore(key, value, delta);
     }
 
+    /**
+     * 批量增加有序集合中元素的分数（一次管道执行多条ZINCRBY）
+     * @param key 缓存键
+     * @param deltas 元素 -> 增加的分数
+     */
+    public void zIncrementScoreBatch(String key, Map<?, ? extends Number> deltas) {
+        zIncrementScoreBatch(key, deltas, -1);
+    }
+
+    /**
+     * 批量增加有序集合中元素的分数并设置过期时间（同一次管道执行）
+     * @param key 缓存键
+     * @param deltas 元素 -> 增加的分数
+     * @param timeout 过期时间（秒），小于等于0时不设置
+     */
+    public void zIncrementScoreBatch(String key, Map<?, ? extends Number> deltas, long timeout) {
+        if (deltas == null || deltas.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                ZSetOperations<String, Object> zSetOperations = (ZSetOperations<String, Object>) operations.opsForZSet();
+                deltas.forEach((value, delta) -> zSetOperations.incrementScore(key, value, delta.doubleValue()));
+                if (timeout > 0) {
+                    ((RedisOperations<String, Object>) operations).expire(key, timeout, TimeUnit.SECONDS);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 多个有序集合按权重求并集并保存到目标key（ZUNIONSTORE ... WEIGHTS ... AGGREGATE SUM）
+     * @param destKey 目标键
+     * @param keys 参与合并的键（不存在的键按空集合处理）
+     * @param weights 每个键的分数权重，和keys一一对应
+     * @return 目标集合的元素数
+     */
+    public Long zUnionAndStore(String destKey, List<String> keys, double[] weights) {
+        return redisTemplate.opsForZSet().unionAndStore(keys.get(0), keys.subList(1, keys.size()), destKey,
+                Aggregate.SUM, Weights.of(weights));
+    }
+
+    /**
+     * 按排名范围删除有序集合中的元素（从低到高）
+     * @param key 缓存键
+     * @param start 开始排名
+     * @param end 结束排名
+     * @return 删除的元素数
+     */
+    public Long zRemoveRange(String key, long start, long end) {
+        return redisTemplate.opsForZSet().removeRange(key, start, end);
+    }
+
+    /**
+     * 从多个有序集合中删除元素（同一次管道执行）
+     * @param keys 缓存键
+     * @param values 元素
+     */
+    public void zRemoveBatch(Collection<String> keys, Object... values) {
+        if (keys == null || keys.isEmpty() || values == null || values.length == 0) {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                ZSetOperations<String, Object> zSetOperations = (ZSetOperations<String, Object>) operations.opsForZSet();
+                keys.forEach(key -> zSetOperations.remove(key, values));
+                return null;
+            }
+        });
+    }
+
     /**
      * 获取有序集合中元素的分数
      * @param key 缓存键
@@ -331,4 +441,67 @@ public class RedisUtils {
     public Long zRemove(String key, Object... values) {
         return redisTemplate.opsForZSet().remove(key, values);
     }
-}
\ No newline at end of file
+
+    /**
+     * 发布消息
+     * @param channel 频道
+     * @param message 消息内容
+     */
+    public void publish(String channel, Object message) {
+        redisTemplate.convertAndSend(channel, message);
+    }
+
+    /**
+     * 反序列化收到的消息内容（和value使用相同的序列化方式）
+     * @param body 消息字节
+     * @return 消息内容
+     */
+    public Object deserialize(byte[] body) {
+        return redisTemplate.getValueSerializer().deserialize(body);
+    }
+
+    /**
+     * 序列化hash的值（和hSet使用相同的序列化方式），用于作为lua脚本的参数
+     * @param value hash的值
+     * @return 序列化后的字节
+     */
+    @SuppressWarnings("unchecked")
+    public byte[] serializeHashValue(Object value) {
+        return ((RedisSerializer<Object>) redisTemplate.getHashValueSerializer()).serialize(value);
+    }
+
+    /**
+     * 执行返回整数的lua脚本
+     * @param script 脚本
+     * @param keys 脚本的KEYS
+     * @param args 脚本的ARGV（byte[]原样传递，其他按字符串传递）
+     * @return 脚本返回值
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Long executeForLong(RedisScript<Long> script, List<String> keys, Object... args) {
+        return redisTemplate.execute(script, SCRIPT_SERIALIZER, (RedisSerializer) SCRIPT_SERIALIZER, keys, args);
+    }
+
+    /**
+     * 执行返回 HGETALL 结果的lua脚本，按hash的序列化方式解析成Map
+     * @param script 脚本
+     * @param keys 脚本的KEYS
+     * @param args 脚本的ARGV（byte[]原样传递，其他按字符串传递）
+     * @return hash的全部field和值，key不存在时为空Map
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Map<Object, Object> executeForHash(RedisScript<List> script, List<String> keys, Object... args) {
+        List<?> result = redisTemplate.execute(script, SCRIPT_SERIALIZER, (RedisSerializer) SCRIPT_SERIALIZER, keys, args);
+        Map<Object, Object> map = new LinkedHashMap<>();
+        if (result == null) {
+            return map;
+        }
+        RedisSerializer<?> hashKeySerializer = redisTemplate.getHashKeySerializer();
+        RedisSerializer<?> hashValueSerializer = redisTemplate.getHashValueSerializer();
+        for (int i = 0; i + 1 < result.size(); i += 2) {
+            map.put(hashKeySerializer.deserialize((byte[]) result.get(i)),
+                    hashValueSerializer.deserialize((byte[]) result.get(i + 1)));
+        }
+        return map;
+    }
+}
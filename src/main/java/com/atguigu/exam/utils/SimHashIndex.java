@@ -0,0 +1,178 @@
+package com.atguigu.exam.utils;
+
+import java.util.*;
+
+/**
+ * SimHash相似文本索引（非线程安全，调用方负责加锁）
+ *
+ * 指纹：文本归一化（去标点空白、全角转半角、小写）后切成3字符片段，每个片段哈希成64位，
+ *       按位累加（该位为1加1，为0减1），累加值大于0的位为1。内容相近的文本指纹只有少数位不同
+ * 查找：64位指纹分成4段，每段16位建一个 段值 -> id 的桶。海明距离不超过3的两个指纹至少有一段完全相同（抽屉原理），
+ *       所以只需要比较4个桶里的候选，不需要和全部指纹比较
+ */
+public class SimHashIndex {
+
+    /**
+     * 支持的最大海明距离（分段数 - 1）
+     */
+    public static final int MAX_DISTANCE = 3;
+
+    private static final int BANDS = MAX_DISTANCE + 1;
+    private static final int BAND_BITS = Long.SIZE / BANDS;
+    private static final int SHINGLE_LENGTH = 3;
+
+    private final Map<Long, Long> fingerprints = new HashMap<>();
+    private final List<Map<Integer, List<Long>>> bands = new ArrayList<>(BANDS);
+
+    public SimHashIndex() {
+        for (int i = 0; i < BANDS; i++) {
+            bands.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * 题目指纹：标题 + 选项内容（选项按内容排序，选项顺序不同视为同一道题）
+     * @param title 题目标题
+     * @param choices 选项内容，可以为空
+     * @return 64位指纹，没有有效字符时返回0
+     */
+    public static long fingerprint(String title, Collection<String> choices) {
+        StringBuilder sb = new StringBuilder(TextUtils.normalize(title));
+        if (choices != null) {
+            choices.stream().map(TextUtils::normalize).sorted().forEach(sb::append);
+        }
+        String text = sb.toString();
+        if (text.isEmpty()) {
+            return 0;
+        }
+        if (text.length() <= SHINGLE_LENGTH) {
+            return hash(text);
+        }
+        int[] weights = new int[Long.SIZE];
+        for (int i = 0; i + SHINGLE_LENGTH <= text.length(); i++) {
+            long hash = hash(text.substring(i, i + SHINGLE_LENGTH));
+            for (int bit = 0; bit < Long.SIZE; bit++) {
+                weights[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+            }
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * 两个指纹的海明距离
+     */
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    /**
+     * 添加或替换id的指纹
+     */
+    public void put(long id, long fingerprint) {
+        remove(id);
+        fingerprints.put(id, fingerprint);
+        for (int band = 0; band < BANDS; band++) {
+            bands.get(band).computeIfAbsent(bandValue(fingerprint, band), key -> new ArrayList<>(1)).add(id);
+        }
+    }
+
+    /**
+     * 删除id的指纹
+     */
+    public void remove(long id) {
+        Long fingerprint = fingerprints.remove(id);
+        if (fingerprint == null) {
+            return;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            int value = bandValue(fingerprint, band);
+            List<Long> ids = bands.get(band).get(value);
+            ids.remove(Long.valueOf(id));
+            if (ids.isEmpty()) {
+                bands.get(band).remove(value);
+            }
+        }
+    }
+
+    /**
+     * 查找距离最近的相似指纹
+     * @param fingerprint 指纹
+     * @param maxDistance 最大海明距离（超过MAX_DISTANCE按MAX_DISTANCE）
+     * @param excludeId 排除的id（修改题目时排除自己），没有时传null
+     * @return 距离最近的id，没有时返回null
+     */
+    public Long findNearest(long fingerprint, int maxDistance, Long excludeId) {
+        int limit = Math.min(maxDistance, MAX_DISTANCE);
+        Long nearest = null;
+        int nearestDistance = Integer.MAX_VALUE;
+        for (int band = 0; band < BANDS; band++) {
+            List<Long> ids = bands.get(band).get(bandValue(fingerprint, band));
+            if (ids == null) {
+                continue;
+            }
+            for (Long id : ids) {
+                int distance = distance(fingerprint, fingerprints.get(id));
+                if (distance <= limit && distance < nearestDistance && !id.equals(excludeId)) {
+                    nearest = id;
+                    nearestDistance = distance;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * 查找所有相似指纹的id（包含指纹完全相同的自己）
+     */
+    public Set<Long> findAll(long fingerprint, int maxDistance) {
+        int limit = Math.min(maxDistance, MAX_DISTANCE);
+        Set<Long> result = new HashSet<>();
+        for (int band = 0; band < BANDS; band++) {
+            List<Long> ids = bands.get(band).get(bandValue(fingerprint, band));
+            if (ids == null) {
+                continue;
+            }
+            for (Long id : ids) {
+                if (distance(fingerprint, fingerprints.get(id)) <= limit) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 所有 id -> 指纹（只读）
+     */
+    public Map<Long, Long> fingerprints() {
+        return Collections.unmodifiableMap(fingerprints);
+    }
+
+    public int size() {
+        return fingerprints.size();
+    }
+
+    private static int bandValue(long fingerprint, int band) {
+        return (int) ((fingerprint >>> (band * BAND_BITS)) & ((1L << BAND_BITS) - 1));
+    }
+
+    /**
+     * 片段的64位哈希（FNV-1a + splitmix64的混合步骤，让每一位都均匀分布）
+     */
+    private static long hash(String text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,76 @@
+package com.atguigu.exam.utils;
+
+/**
+ * 文本工具类
+ * 用于答案、题目文本的归一化和分词
+ */
+public class TextUtils {
+
+    /**
+     * 文本归一化：英文转小写，全角转半角，去掉空白和标点，只保留字母、数字和汉字
+     * @param text 原始文本
+     * @return 归一化后的文本，text为null时返回空字符串
+     */
+    public static String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            //全角字符转半角
+            if (c >= '！' && c <= '～') {
+                c = (char) (c - 0xFEE0);
+            }
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 宽松归一化（用于批阅结果缓存）：英文转小写，全角转半角，去掉首尾空白，连续空白合并为一个空格
+     *   保留标点、符号、正负号和小数点，"-1" 和 "1"、"3.14" 和 "314" 归一化后不同
+     * @param text 原始文本
+     * @return 归一化后的文本，text为null时返回空字符串
+     */
+    public static String normalizeLoose(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            //全角字符转半角，全角空格按空白处理
+            if (c >= '！' && c <= '～') {
+                c = (char) (c - 0xFEE0);
+            }
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+            sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 是否是汉字（CJK统一表意文字）
+     */
+    public static boolean isCjk(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+    /**
+     * 把相邻两个字符编码成一个int，作为二元组（bigram）的key
+     */
+    public static int bigram(char first, char second) {
+        return (first << 16) | second;
+    }
+}
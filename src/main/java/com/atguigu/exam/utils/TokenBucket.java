@@ -0,0 +1,52 @@
+package com.atguigu.exam.utils;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * 令牌桶限流器
+ *   按固定速率补充令牌，最多积攒burst个令牌
+ *   令牌不足时不阻塞线程，而是预约下一个令牌并返回需要等待的时间，由调用方用Mono.delay延迟执行
+ */
+public class TokenBucket {
+
+    private final double nanosPerToken;
+    private final double maxTokens;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("令牌桶速率和容量必须大于0！");
+        }
+        this.nanosPerToken = 1_000_000_000d / ratePerSecond;
+        this.maxTokens = burst;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 预约一个令牌
+     * @return 拿到令牌之前需要等待的纳秒数，0表示立即可用
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        tokens = Math.min(maxTokens, tokens + (now - lastRefillNanos) / nanosPerToken);
+        lastRefillNanos = now;
+        tokens -= 1;
+        //令牌可以透支，透支的部分就是需要等待的时间
+        return tokens >= 0 ? 0 : (long) (-tokens * nanosPerToken);
+    }
+
+    /**
+     * 非阻塞获取一个令牌
+     */
+    public Mono<Void> acquire() {
+        return Mono.defer(() -> {
+            long waitNanos = reserve();
+            return waitNanos == 0 ? Mono.empty() : Mono.delay(Duration.ofNanos(waitNanos)).then();
+        });
+    }
+}
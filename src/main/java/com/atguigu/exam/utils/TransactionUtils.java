@@ -0,0 +1,28 @@
+package com.atguigu.exam.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 事务工具类
+ * 用于把删除缓存、更新内存索引等操作推迟到事务提交之后
+ */
+public class TransactionUtils {
+
+    /**
+     * 在事务中调用时等事务提交后再执行（回滚时不执行），否则立即执行
+     * @param action 要执行的操作
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.atguigu.exam.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * AI生成题目进度Vo - 大批量生成拆分成多个子请求并行执行时推送的进度
+ */
+@Data
+@Schema(description = "AI生成题目进度")
+public class AiGenerateProgressVo implements Serializable {
+
+    @Schema(description = "子请求总数")
+    private Integer totalChunks; // 子请求总数
+
+    @Schema(description = "已完成的子请求数（含失败）")
+    private Integer finishedChunks; // 已完成的子请求数
+
+    @Schema(description = "失败的子请求数")
+    private Integer failedChunks; // 失败的子请求数
+
+    @Schema(description = "已生成的题目数（去重后）")
+    private Integer generatedCount; // 已生成的题目数
+
+    @Schema(description = "因和题库或本次生成的其他题目重复（相似）被丢弃的题目数")
+    private Integer duplicateCount; // 重复题目数
+
+    @Schema(description = "本次新生成的题目，仅进度更新时为空")
+    private QuestionImportVo question; // 新生成的题目
+
+    private static final long serialVersionUID = 1L; // 序列化版本UID
+}
@@ -19,13 +19,13 @@ public class AiGenerateRequestVo {
     @NotBlank(message = "主题不能为空")
     private String topic; // 生成题目的主题，如"Spring框架"
     
-    @Schema(description = "生成题目的数量，范围1-20", 
+    @Schema(description = "生成题目的数量，范围1-200，超过单次生成数量时自动拆分并行生成", 
             example = "5", 
             minimum = "1", 
-            maximum = "20",
+            maximum = "200",
             requiredMode = Schema.RequiredMode.REQUIRED)
     @Min(value = 1, message = "题目数量至少为1")
-    @Max(value = 20, message = "题目数量最多为20")
+    @Max(value = 200, message = "题目数量最多为200")
     private Integer count; // 生成题目数量
     
     @Schema(description = "题目类型，多个用逗号分隔", 
@@ -0,0 +1,60 @@
+package com.atguigu.exam.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页结果封装类
+ *   不使用offset，按上一页最后一条记录的游标继续查询，第N页和第1页的查询代价相同
+ */
+@Data
+@Schema(description = "游标分页结果")
+public class CursorPageResult<T> {
+
+    /**
+     * 单页最多返回的记录数
+     */
+    public static final int MAX_SIZE = 100;
+
+    @Schema(description = "数据列表")
+    private List<T> records; // 数据列表
+
+    @Schema(description = "每页大小")
+    private int size; // 每页大小
+
+    @Schema(description = "是否还有下一页")
+    private boolean hasMore; // 是否还有下一页
+
+    @Schema(description = "下一页的游标，没有下一页时为null", example = "1718000000000_123")
+    private String nextCursor; // 下一页游标
+
+    @Schema(description = "符合条件的记录总数（缓存的近似值），未要求返回总数时为null")
+    private Long total; // 总记录数
+
+    /**
+     * 根据多查询一条的结果生成分页结果
+     * @param rows 查询结果（最多 size + 1 条，多出的一条只用来判断是否有下一页）
+     * @param size 每页大小
+     * @param cursorOf 根据记录生成游标
+     * @param total 总记录数，可以为null
+     */
+    public static <T> CursorPageResult<T> of(List<T> rows, int size, Function<T, String> cursorOf, Long total) {
+        CursorPageResult<T> result = new CursorPageResult<>();
+        result.setHasMore(rows.size() > size);
+        result.setRecords(result.isHasMore() ? rows.subList(0, size) : rows);
+        result.setSize(size);
+        result.setNextCursor(result.isHasMore() ? cursorOf.apply(result.getRecords().get(size - 1)) : null);
+        result.setTotal(total);
+        return result;
+    }
+
+    /**
+     * 每页大小限制在 1 ~ MAX_SIZE
+     */
+    public static int limitSize(Integer size) {
+        return size == null ? 10 : Math.max(1, Math.min(size, MAX_SIZE));
+    }
+}
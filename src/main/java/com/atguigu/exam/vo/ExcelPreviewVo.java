@@ -0,0 +1,22 @@
+package com.atguigu.exam.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Excel预览结果Vo - 只返回前N道题目和文件中的题目总数
+ */
+@Data
+@Schema(description = "Excel预览结果")
+public class ExcelPreviewVo implements Serializable {
+
+    @Schema(description = "文件中解析出的题目总数")
+    private Integer total = 0; // 题目总数
+
+    @Schema(description = "预览的题目（前N道）")
+    private List<QuestionImportVo> rows = new ArrayList<>(); // 预览题目
+}
@@ -0,0 +1,24 @@
+package com.atguigu.exam.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * AI批阅结果Vo - 用于缓存同一道题相同答案的批阅结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GradingResultVo implements Serializable {
+
+    private Integer score; // 得分
+
+    private Integer isCorrect; // 是否正确 (0: 错误, 1: 正确, 2: 部分正确)
+
+    private String aiCorrection; // AI批改意见
+
+    private static final long serialVersionUID = 1L; // 序列化版本UID
+}
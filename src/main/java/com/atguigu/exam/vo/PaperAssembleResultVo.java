@@ -0,0 +1,39 @@
+package com.atguigu.exam.vo;
+
+import com.atguigu.exam.entity.Paper;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * 约束组卷结果Vo - 创建的试卷和各项目标的实际完成情况
+ */
+@Data
+@Schema(description = "约束组卷结果")
+public class PaperAssembleResultVo implements Serializable {
+
+    @Schema(description = "创建的试卷（草稿状态，不包含题目）")
+    private Paper paper; // 创建的试卷
+
+    @Schema(description = "是否满足全部目标（总分、难度分布、分类覆盖）")
+    private Boolean exact; // 是否满足全部目标
+
+    @Schema(description = "实际总分")
+    private Integer totalScore; // 实际总分
+
+    @Schema(description = "实际各题型题目数")
+    private Map<String, Integer> typeCounts; // 各题型题目数
+
+    @Schema(description = "实际各难度题目数")
+    private Map<String, Integer> difficultyCounts; // 各难度题目数
+
+    @Schema(description = "未覆盖的分类数")
+    private Integer uncoveredCategories; // 未覆盖的分类数
+
+    @Schema(description = "组卷耗时（毫秒，不含保存试卷）")
+    private Long elapsedMs; // 组卷耗时
+
+    private static final long serialVersionUID = 1L; // 序列化版本UID
+}
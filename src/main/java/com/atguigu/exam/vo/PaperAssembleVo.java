@@ -0,0 +1,56 @@
+package com.atguigu.exam.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 约束组卷的请求数据传输对象 - 按总分、题型数量、难度分布、分类覆盖自动选题
+ */
+@Data
+@Schema(description = "约束组卷请求参数")
+public class PaperAssembleVo {
+
+    @Schema(description = "试卷名称", 
+            example = "Java综合测试卷", 
+            requiredMode = Schema.RequiredMode.REQUIRED)
+    private String name; // 试卷名称
+
+    @Schema(description = "试卷描述", 
+            example = "本试卷按总分和难度分布自动组卷")
+    private String description; // 试卷描述
+
+    @Schema(description = "考试时长（分钟）", 
+            example = "120", 
+            minimum = "1", 
+            maximum = "600")
+    private Integer duration; // 考试时长
+
+    @Schema(description = "题目总数", 
+            example = "100", 
+            requiredMode = Schema.RequiredMode.REQUIRED)
+    private Integer questionCount; // 题目总数
+
+    @Schema(description = "目标总分（按题目默认分值计算）", 
+            example = "150", 
+            requiredMode = Schema.RequiredMode.REQUIRED)
+    private Integer totalScore; // 目标总分
+
+    @Schema(description = "各题型题目数，Key为题型（CHOICE/JUDGE/TEXT），数量之和必须等于题目总数，为空则不限制题型", 
+            example = "{\"CHOICE\": 60, \"JUDGE\": 20, \"TEXT\": 20}")
+    private Map<String, Integer> typeCounts; // 各题型题目数
+
+    @Schema(description = "难度分布百分比，Key为难度（EASY/MEDIUM/HARD），百分比之和必须为100，为空则不限制难度", 
+            example = "{\"EASY\": 30, \"MEDIUM\": 50, \"HARD\": 20}")
+    private Map<String, Integer> difficultyRatio; // 难度分布百分比
+
+    @Schema(description = "题目分类ID列表，只从这些分类中选题，且每个分类至少一道题，为空则不限制分类", 
+            example = "[1, 2, 3]")
+    private List<Long> categoryIds; // 题目分类ID列表
+
+    @Schema(description = "求解时间上限（毫秒），为空时使用默认配置", 
+            example = "500")
+    private Integer timeBudgetMs; // 求解时间上限
+}
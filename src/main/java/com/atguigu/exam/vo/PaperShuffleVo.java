@@ -0,0 +1,25 @@
+package com.atguigu.exam.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * 试卷打乱索引Vo - 按考试记录生成的题目和选项展示顺序
+ *   试卷本身按原始顺序返回（所有考生共用同一份缓存），前端按索引展示
+ *   学生按展示顺序的字母作答，判卷时映射回原始选项字母
+ */
+@Data
+@Schema(description = "试卷打乱索引")
+public class PaperShuffleVo implements Serializable {
+
+    @Schema(description = "题目展示顺序，第i个位置展示试卷题目列表中的第questionOrder[i]道题（题型分组不变）",
+            example = "[1, 0, 2]")
+    private int[] questionOrder; // 题目展示顺序
+
+    @Schema(description = "选项展示顺序 key = 题目ID，第i个选项（字母A+i）展示原始选项列表中的第order[i]个选项",
+            example = "{\"12\": [2, 0, 3, 1]}")
+    private Map<Long, int[]> choiceOrders; // 选项展示顺序
+}
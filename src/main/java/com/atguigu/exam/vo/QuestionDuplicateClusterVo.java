@@ -0,0 +1,28 @@
+package com.atguigu.exam.vo;
+
+import com.atguigu.exam.entity.Question;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 相似题目分组Vo - 题库中疑似重复的一组题目
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "相似题目分组")
+public class QuestionDuplicateClusterVo implements Serializable {
+
+    @Schema(description = "分组内题目数")
+    private Integer size; // 分组内题目数
+
+    @Schema(description = "分组内题目（按id升序，第一道为最早录入的题目，只包含id、类型、分类、难度、标题）")
+    private List<Question> questions; // 分组内题目
+
+    private static final long serialVersionUID = 1L; // 序列化版本UID
+}
@@ -0,0 +1,47 @@
+package com.atguigu.exam.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Excel导入任务进度Vo - 后台导入任务各阶段的处理数量
+ */
+@Data
+@Schema(description = "Excel导入任务进度")
+public class QuestionImportJobVo implements Serializable {
+
+    @Schema(description = "任务id")
+    private String jobId; // 任务id
+
+    @Schema(description = "导入的文件名")
+    private String fileName; // 文件名
+
+    @Schema(description = "任务状态：排队中、进行中、已完成、失败")
+    private String status; // 任务状态
+
+    @Schema(description = "已解析的题目数")
+    private Integer parsedCount; // 已解析数量
+
+    @Schema(description = "校验通过的题目数")
+    private Integer validatedCount; // 校验通过数量
+
+    @Schema(description = "已导入数据库的题目数")
+    private Integer insertedCount; // 已导入数量
+
+    @Schema(description = "校验或导入失败的题目数")
+    private Integer failedCount; // 失败数量
+
+    @Schema(description = "任务失败原因")
+    private String message; // 失败原因
+
+    @Schema(description = "提交时间")
+    private Date createTime; // 提交时间
+
+    @Schema(description = "结束时间")
+    private Date finishTime; // 结束时间
+
+    private static final long serialVersionUID = 1L; // 序列化版本UID
+}
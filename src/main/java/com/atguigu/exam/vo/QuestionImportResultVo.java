@@ -0,0 +1,64 @@
+package com.atguigu.exam.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 题目批量导入结果Vo - 返回每一行的导入结果
+ */
+@Data
+@Schema(description = "题目批量导入结果")
+public class QuestionImportResultVo implements Serializable {
+
+    @Schema(description = "题目总数")
+    private Integer total = 0; // 题目总数
+
+    @Schema(description = "成功导入数量")
+    private Integer successCount = 0; // 成功导入数量
+
+    @Schema(description = "导入失败数量")
+    private Integer failCount = 0; // 导入失败数量
+
+    @Schema(description = "导入失败的题目明细")
+    private List<RowResult> failures = new ArrayList<>(); // 失败明细
+
+    /**
+     * 记录一行导入失败
+     * @param index 题目序号（从1开始）
+     * @param title 题目标题
+     * @param message 失败原因
+     */
+    public void fail(int index, String title, String message) {
+        failCount++;
+        failures.add(new RowResult(index, title, message));
+    }
+
+    /**
+     * 单行导入结果
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(description = "单行导入结果")
+    public static class RowResult implements Serializable {
+
+        @Schema(description = "题目序号，从1开始")
+        private Integer index; // 题目序号
+
+        @Schema(description = "题目标题")
+        private String title; // 题目标题
+
+        @Schema(description = "失败原因")
+        private String message; // 失败原因
+
+        private static final long serialVersionUID = 1L; // 序列化版本UID
+    }
+
+    private static final long serialVersionUID = 1L; // 序列化版本UID
+}
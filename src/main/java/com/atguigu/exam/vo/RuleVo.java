@@ -22,6 +22,11 @@ public class RuleVo {
             example = "[1, 2, 3]")
     private List<Integer> categoryIds;
 
+    @Schema(description = "题目难度，为空则不限制难度", 
+            example = "MEDIUM", 
+            allowableValues = {"EASY", "MEDIUM", "HARD"})
+    private String difficulty;
+
     @Schema(description = "需要抽取的题目数量", 
             example = "10", 
             minimum = "1")